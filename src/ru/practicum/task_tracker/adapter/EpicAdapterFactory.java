@@ -0,0 +1,62 @@
+package ru.practicum.task_tracker.adapter;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.TypeAdapter;
+import com.google.gson.TypeAdapterFactory;
+import com.google.gson.reflect.TypeToken;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+import ru.practicum.task_tracker.model.Epic;
+import ru.practicum.task_tracker.model.Subtask;
+
+import java.io.IOException;
+
+// Эпик хранит подзадачи в таблице по id, а в JSON они, как и раньше, идут массивом subtasksList.
+// Gson читает поля напрямую, минуя геттеры, поэтому отложенный пересчет эпика выполняется до записи
+public class EpicAdapterFactory implements TypeAdapterFactory {
+    private static final String SUBTASKS = "subtasksList";
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> TypeAdapter<T> create(Gson gson, TypeToken<T> type) {
+        if (type.getRawType() != Epic.class) {
+            return null;
+        }
+        TypeAdapter<Epic> delegate = gson.getDelegateAdapter(this, TypeToken.get(Epic.class));
+        TypeAdapter<Subtask> subtaskAdapter = gson.getAdapter(Subtask.class);
+        TypeAdapter<JsonElement> elementAdapter = gson.getAdapter(JsonElement.class);
+
+        return (TypeAdapter<T>) new TypeAdapter<Epic>() {
+            @Override
+            public void write(JsonWriter out, Epic epic) throws IOException {
+                if (epic == null) {
+                    out.nullValue();
+                    return;
+                }
+                epic.flush();
+                JsonObject json = delegate.toJsonTree(epic).getAsJsonObject();
+                JsonArray subtasks = new JsonArray();
+                for (Subtask subtask : epic.getSubtasksList()) {
+                    subtasks.add(subtaskAdapter.toJsonTree(subtask));
+                }
+                json.add(SUBTASKS, subtasks);
+                elementAdapter.write(out, json);
+            }
+
+            @Override
+            public Epic read(JsonReader in) throws IOException {
+                JsonElement json = elementAdapter.read(in);
+                Epic epic = delegate.fromJsonTree(json);
+                if (epic != null && json.getAsJsonObject().get(SUBTASKS) instanceof JsonArray) {
+                    for (JsonElement subtask : json.getAsJsonObject().getAsJsonArray(SUBTASKS)) {
+                        epic.addSubtask(subtaskAdapter.fromJsonTree(subtask));
+                    }
+                }
+                return epic;
+            }
+        };
+    }
+}
@@ -1,11 +1,9 @@
 package ru.practicum.task_tracker.exceptions;
 
-import java.io.IOException;
-
 public class ManagerSaveException extends RuntimeException {
 
-    public ManagerSaveException(String message, IOException cause) {
-        super(message);
+    public ManagerSaveException(String message, Throwable cause) {
+        super(message, cause);
     }
 
     public ManagerSaveException(String message) {
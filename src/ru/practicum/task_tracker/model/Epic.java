@@ -5,45 +5,243 @@ import java.time.LocalDateTime;
 import java.util.*;
 
 public class Epic extends Task {
-    private final ArrayList<Subtask> subtasksList;
+    // Подзадачи по id в порядке добавления: поиск, замена и удаление за O(1).
+    // В JSON эпик по-прежнему отдает массив subtasksList, его пишет EpicAdapterFactory
+    private transient LinkedHashMap<Integer, Subtask> subtasks;
     private LocalDateTime endTime;
+    // Родительский эпик; 0 - эпик верхнего уровня
+    private int parentEpicId;
+    // Вложенные эпики учитываются в агрегатах наравне с подзадачами
+    private transient LinkedHashMap<Integer, Epic> childEpics;
+    // Агрегаты элементов эпика (подзадач и вложенных эпиков): число элементов в каждом
+    // статусе, сумма длительностей, элементы по времени начала и мультимножество окончаний.
+    // Для каждого элемента хранится снимок, с которым он учтен: подзадачу могут изменить
+    // на месте до updateSubtask, поэтому вычитается именно снимок. Агрегаты строятся
+    // одним проходом при первом обращении и дальше меняются за O(log k)
+    private transient HashMap<Integer, Entry> entries;
+    private transient int[] statusCounts;
+    private transient TreeSet<Entry> byStart;
+    private transient TreeMap<LocalDateTime, Integer> ends;
+    private transient Duration totalDuration;
+    // Подзадачи изменились, а статус и время еще не пересчитаны
+    private transient boolean dirty;
+
+    private static class Entry {
+        private final Task item;
+        private final Status status;
+        private final LocalDateTime start;
+        private final Duration duration;
+        private final LocalDateTime end;
+
+        private Entry(Task item) {
+            this.item = item;
+            this.status = item.getStatus();
+            this.start = item.getStartTime();
+            this.duration = item.getDuration();
+            this.end = item.getEndTime();
+        }
+    }
 
     public Epic(String title, String description) {
         super(title, description);
-        this.subtasksList = new ArrayList<>();
+        this.subtasks = new LinkedHashMap<>();
     }
 
-    public ArrayList<Subtask> getSubtasksList() {
-        return subtasksList;
+    // Копия подзадач в порядке добавления
+    public List<Subtask> getSubtasksList() {
+        return List.copyOf(subtasks().values());
     }
 
     public void addSubtask(Subtask subtask) {
-        subtasksList.add(subtask);
+        subtasks().put(subtask.getId(), subtask);
+        if (entries != null) {
+            untrack(subtask.getId());
+            track(subtask);
+        }
     }
 
     public void deleteAllSubtasks() {
-        subtasksList.clear();
+        subtasks().clear();
+        entries = null;
     }
 
     public void deleteSubtaskById(Subtask deletedSubtask) {
-        int index = 0;
-        for (Subtask subtask : subtasksList) {
-            if (deletedSubtask.getId() == subtask.getId()) {
-                index = subtasksList.indexOf(subtask);
-            }
+        if (subtasks().remove(deletedSubtask.getId()) != null && entries != null) {
+            untrack(deletedSubtask.getId());
         }
-        subtasksList.remove(index);
     }
 
+    // Заменяет подзадачу с тем же id, сохраняя ее место; чужие подзадачи не трогает
     public void updateSubtaskById(Subtask updatedSubtask) {
-        int index = 0;
-        for (Subtask subtask : subtasksList) {
-            if (updatedSubtask.getId() == subtask.getId()) {
-                index = subtasksList.indexOf(subtask);
+        if (subtasks().replace(updatedSubtask.getId(), updatedSubtask) != null && entries != null) {
+            untrack(updatedSubtask.getId());
+            track(updatedSubtask);
+        }
+    }
+
+    public int getParentEpicId() {
+        return parentEpicId;
+    }
+
+    public void setParentEpicId(int parentEpicId) {
+        this.parentEpicId = parentEpicId;
+    }
+
+    public List<Epic> getChildEpics() {
+        return new ArrayList<>(childEpics().values());
+    }
+
+    public void addChildEpic(Epic child) {
+        childEpics().put(child.getId(), child);
+        if (entries != null) {
+            untrack(child.getId());
+            track(child);
+        }
+    }
+
+    public void removeChildEpic(Epic child) {
+        if (childEpics().remove(child.getId()) != null && entries != null) {
+            untrack(child.getId());
+        }
+    }
+
+    // Вложенный эпик пересчитан: его вклад заменяется за O(log k)
+    public void updateChildEpic(Epic child) {
+        if (childEpics().containsKey(child.getId()) && entries != null) {
+            untrack(child.getId());
+            track(child);
+        }
+    }
+
+    // Gson создает эпик без конструктора, поэтому коллекции могут отсутствовать
+    private LinkedHashMap<Integer, Subtask> subtasks() {
+        if (subtasks == null) {
+            subtasks = new LinkedHashMap<>();
+        }
+        return subtasks;
+    }
+
+    private LinkedHashMap<Integer, Epic> childEpics() {
+        if (childEpics == null) {
+            childEpics = new LinkedHashMap<>();
+        }
+        return childEpics;
+    }
+
+    // Отложенный пересчет: агрегаты сбрасываются, дальнейшие изменения подзадач
+    // стоят O(1), а статус и время один раз пересчитываются при первом чтении
+    public void markDirty() {
+        entries = null;
+        dirty = true;
+    }
+
+    public boolean isDirty() {
+        return dirty;
+    }
+
+    public void flush() {
+        if (dirty) {
+            dirty = false;
+            refreshStatus();
+            recalculateEpicTime();
+        }
+    }
+
+    @Override
+    public Status getStatus() {
+        flush();
+        return status;
+    }
+
+    @Override
+    public LocalDateTime getStartTime() {
+        flush();
+        return startTime;
+    }
+
+    @Override
+    public Duration getDuration() {
+        flush();
+        return duration;
+    }
+
+    // Статус по счетчикам за O(1)
+    public void refreshStatus() {
+        ensureAggregates();
+        int total = entries.size();
+        if (total == 0 || statusCounts[Status.NEW.ordinal()] == total) {
+            status = Status.NEW;
+        } else if (statusCounts[Status.DONE.ordinal()] == total) {
+            status = Status.DONE;
+        } else {
+            status = Status.IN_PROGRESS;
+        }
+    }
+
+    // Подзадачи по времени начала; подзадачи без времени идут в конце
+    public List<Subtask> getSubtasksByStart() {
+        ensureAggregates();
+        List<Subtask> result = new ArrayList<>(byStart.size());
+        for (Entry entry : byStart) {
+            if (entry.item instanceof Subtask) {
+                result.add((Subtask) entry.item);
             }
         }
-        subtasksList.remove(index);
-        subtasksList.add(updatedSubtask);
+        return result;
+    }
+
+    public void rebuildAggregates() {
+        entries = new HashMap<>();
+        statusCounts = new int[Status.values().length];
+        byStart = new TreeSet<>(Comparator
+                .comparing((Entry entry) -> entry.start, Comparator.nullsLast(Comparator.naturalOrder()))
+                .thenComparing(entry -> entry.item.getId()));
+        ends = new TreeMap<>();
+        totalDuration = Duration.ZERO;
+        for (Subtask subtask : subtasks().values()) {
+            track(subtask);
+        }
+        for (Epic child : childEpics().values()) {
+            track(child);
+        }
+    }
+
+    private void ensureAggregates() {
+        if (entries == null) {
+            rebuildAggregates();
+        }
+    }
+
+    private void track(Task item) {
+        Entry entry = new Entry(item);
+        entries.put(item.getId(), entry);
+        byStart.add(entry);
+        if (entry.status != null) {
+            statusCounts[entry.status.ordinal()]++;
+        }
+        if (entry.duration != null) {
+            totalDuration = totalDuration.plus(entry.duration);
+        }
+        if (entry.end != null) {
+            ends.merge(entry.end, 1, Integer::sum);
+        }
+    }
+
+    private void untrack(int subtaskId) {
+        Entry entry = entries.remove(subtaskId);
+        if (entry == null) {
+            return;
+        }
+        byStart.remove(entry);
+        if (entry.status != null) {
+            statusCounts[entry.status.ordinal()]--;
+        }
+        if (entry.duration != null) {
+            totalDuration = totalDuration.minus(entry.duration);
+        }
+        if (entry.end != null) {
+            ends.merge(entry.end, -1, (a, b) -> a + b == 0 ? null : a + b);
+        }
     }
 
     public TaskType getType() {
@@ -52,36 +250,25 @@ public class Epic extends Task {
 
     @Override
     public LocalDateTime getEndTime() {
+        flush();
         return endTime;
     }
 
+    // Время эпика по агрегатам: самое раннее начало, сумма длительностей и самое позднее окончание
     public void recalculateEpicTime() {
-        if (subtasksList.isEmpty()) {
+        ensureAggregates();
+        if (entries.isEmpty()) {
             this.startTime = null;
             this.duration = null;
             this.endTime = null;
             return;
         }
 
-        this.startTime = subtasksList.stream()
-                .map(Subtask::getStartTime)
-                .filter(Objects::nonNull)
-                .min(LocalDateTime::compareTo)
-                .orElse(null);
-
-        this.duration = subtasksList.stream()
-                .map(Subtask::getDuration)
-                .filter(Objects::nonNull)
-                .reduce(Duration.ZERO, Duration::plus);
-
-        this.endTime = subtasksList.stream()
-                .map(Subtask::getEndTime)
-                .filter(Objects::nonNull)
-                .max(LocalDateTime::compareTo)
-                .orElse(null);
+        this.startTime = byStart.first().start;
+        this.duration = totalDuration;
+        this.endTime = ends.isEmpty() ? null : ends.lastKey();
     }
 
-
     @Override
     public String toString() {
         return "Epic{" +
@@ -92,7 +279,8 @@ public class Epic extends Task {
                 ", startTime=" + startTime +
                 ", duration=" + duration +
                 ", endTime=" + endTime +
-                ", subtasksList=" + subtasksList +
+                ", parentEpicId=" + parentEpicId +
+                ", subtasks=" + subtasks().values() +
                 '}';
     }
 }
\ No newline at end of file
@@ -0,0 +1,148 @@
+package ru.practicum.task_tracker.model;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+// Повторяющаяся задача: одна запись на всю серию. Вхождения не хранятся,
+// а вычисляются по номеру: k-е вхождение начинается в startTime + k * everyDays дней,
+// поэтому вхождение, пересекающее заданный момент, находится за O(1)
+public class RecurringTask extends Task {
+    private int everyDays;
+    // Последнее вхождение начинается не позже until; null - серия бесконечна
+    private LocalDateTime until;
+
+    public RecurringTask(String name, String description, Duration duration, LocalDateTime startTime,
+                         int everyDays, LocalDateTime until) {
+        super(name, description, duration, startTime);
+        this.everyDays = everyDays;
+        this.until = until;
+    }
+
+    public int getEveryDays() {
+        return everyDays;
+    }
+
+    public void setEveryDays(int everyDays) {
+        this.everyDays = everyDays;
+    }
+
+    public LocalDateTime getUntil() {
+        return until;
+    }
+
+    public void setUntil(LocalDateTime until) {
+        this.until = until;
+    }
+
+    @Override
+    public TaskType getType() {
+        return TaskType.RECURRING;
+    }
+
+    public boolean isInfinite() {
+        return until == null;
+    }
+
+    // Окончание последнего вхождения или null для бесконечной серии
+    public LocalDateTime getLastEndTime() {
+        if (until == null) {
+            return null;
+        }
+        long last = Math.max(0, Math.floorDiv(Duration.between(startTime, until).getSeconds(), periodSeconds()));
+        return startTime.plusDays(last * everyDays).plus(occurrenceDuration());
+    }
+
+    // Начало k-го вхождения или null, если серия к этому моменту закончилась
+    public LocalDateTime occurrenceStart(long k) {
+        LocalDateTime start = startTime.plusDays(k * everyDays);
+        return until == null || !start.isAfter(until) ? start : null;
+    }
+
+    // Вхождение, пересекающееся с [start, end] (границы включительно), или null
+    public Task occurrenceOverlapping(LocalDateTime start, LocalDateTime end) {
+        long k = firstEndingNotBefore(start);
+        LocalDateTime occurrenceStart = occurrenceStart(k);
+        if (occurrenceStart == null || occurrenceStart.isAfter(end)) {
+            return null;
+        }
+        return occurrence(k);
+    }
+
+    // Вхождения, пересекающиеся с окном [from, to); null - без ограничения.
+    // Бесконечная серия без верхней границы окна представлена ближайшим вхождением
+    public List<Task> occurrencesBetween(LocalDateTime from, LocalDateTime to) {
+        List<Task> result = new ArrayList<>();
+        long k = 0;
+        if (from != null) {
+            k = firstEndingNotBefore(from);
+            LocalDateTime start = occurrenceStart(k);
+            // Вхождение, закончившееся ровно в момент from, в окно не попадает
+            if (start != null && start.isBefore(from) && !start.plus(occurrenceDuration()).isAfter(from)) {
+                k++;
+            }
+        }
+        for (; ; k++) {
+            LocalDateTime start = occurrenceStart(k);
+            if (start == null || (to != null && !start.isBefore(to))) {
+                break;
+            }
+            result.add(occurrence(k));
+            if (to == null && until == null) {
+                break;
+            }
+        }
+        return result;
+    }
+
+    // Вхождения, пересекающиеся с [from, to] (границы включительно)
+    public List<Task> occurrencesOverlapping(LocalDateTime from, LocalDateTime to) {
+        List<Task> result = new ArrayList<>();
+        for (long k = firstEndingNotBefore(from); ; k++) {
+            LocalDateTime start = occurrenceStart(k);
+            if (start == null || start.isAfter(to)) {
+                return result;
+            }
+            result.add(occurrence(k));
+        }
+    }
+
+    // Отдельное вхождение серии: обычная задача с id серии
+    public Task occurrence(long k) {
+        Task occurrence = new Task(name, description, duration, occurrenceStart(k));
+        occurrence.setId(id);
+        occurrence.setStatus(status);
+        occurrence.setAssignee(assignee);
+        return occurrence;
+    }
+
+    // Номер первого вхождения, которое заканчивается не раньше time
+    private long firstEndingNotBefore(LocalDateTime time) {
+        long lag = Duration.between(startTime, time).minus(occurrenceDuration()).getSeconds();
+        return lag <= 0 ? 0 : Math.floorDiv(lag + periodSeconds() - 1, periodSeconds());
+    }
+
+    private long periodSeconds() {
+        return Duration.ofDays(everyDays).getSeconds();
+    }
+
+    private Duration occurrenceDuration() {
+        return duration != null ? duration : Duration.ZERO;
+    }
+
+    @Override
+    public String toString() {
+        return "RecurringTask{" +
+                "id=" + id +
+                ", name='" + name + '\'' +
+                ", description='" + description + '\'' +
+                ", status=" + status +
+                ", duration=" + duration +
+                ", startTime=" + startTime +
+                ", assignee=" + assignee +
+                ", everyDays=" + everyDays +
+                ", until=" + until +
+                '}';
+    }
+}
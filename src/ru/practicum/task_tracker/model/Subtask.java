@@ -34,6 +34,7 @@ public class Subtask extends Task {
                 ", startTime=" + startTime +
                 ", duration=" + duration +
                 ", endTime=" + getEndTime() +
+                ", assignee=" + assignee +
                 ", epicId=" + epicId + '\'' +
                 '}';
     }
@@ -11,6 +11,9 @@ public class Task {
     protected Status status;
     protected Duration duration;
     protected LocalDateTime startTime;
+    protected String assignee;
+    // Время окончания прошло, а задача не выполнена
+    protected boolean overdue;
 
     public Task(String name, String description) {
         this.name = name;
@@ -60,6 +63,22 @@ public class Task {
         this.description = description;
     }
 
+    public String getAssignee() {
+        return assignee;
+    }
+
+    public void setAssignee(String assignee) {
+        this.assignee = assignee;
+    }
+
+    public boolean isOverdue() {
+        return overdue;
+    }
+
+    public void setOverdue(boolean overdue) {
+        this.overdue = overdue;
+    }
+
     public TaskType getType() {
         return TaskType.TASK;
     }
@@ -81,6 +100,7 @@ public class Task {
                 ", status=" + status +
                 ", duration=" + duration +
                 ", startTime=" + startTime +
+                ", assignee=" + assignee +
                 '}';
     }
 
@@ -3,5 +3,6 @@ package ru.practicum.task_tracker.model;
 public enum TaskType {
     TASK,
     EPIC,
-    SUBTASK
+    SUBTASK,
+    RECURRING
 }
@@ -0,0 +1,28 @@
+package ru.practicum.task_tracker.model;
+
+// Пара задач, интервалы которых пересекаются
+public class TimeConflict {
+    private final Task first;
+    private final Task second;
+
+    public TimeConflict(Task first, Task second) {
+        this.first = first;
+        this.second = second;
+    }
+
+    public Task getFirst() {
+        return first;
+    }
+
+    public Task getSecond() {
+        return second;
+    }
+
+    @Override
+    public String toString() {
+        return "TimeConflict{" +
+                "first=" + first +
+                ", second=" + second +
+                '}';
+    }
+}
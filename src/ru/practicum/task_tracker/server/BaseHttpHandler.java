@@ -5,22 +5,27 @@ import com.google.gson.GsonBuilder;
 import com.sun.net.httpserver.HttpExchange;
 import com.sun.net.httpserver.HttpHandler;
 import ru.practicum.task_tracker.adapter.DurationAdapter;
+import ru.practicum.task_tracker.adapter.EpicAdapterFactory;
 import ru.practicum.task_tracker.adapter.LocalDateTimeAdapter;
 import ru.practicum.task_tracker.service.TaskManager;
 
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.net.URLDecoder;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
 import java.time.Duration;
 import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.Map;
 
 public abstract class BaseHttpHandler implements HttpHandler {
     private static final Charset DEFAULT_CHARSET = StandardCharsets.UTF_8;
     protected final Gson gson = new GsonBuilder()
             .registerTypeAdapter(LocalDateTime.class, new LocalDateTimeAdapter())
             .registerTypeAdapter(Duration.class, new DurationAdapter())
+            .registerTypeAdapterFactory(new EpicAdapterFactory())
             .create();
     protected final TaskManager taskManager;
 
@@ -31,6 +36,14 @@ public abstract class BaseHttpHandler implements HttpHandler {
     @Override
     public abstract void handle(HttpExchange exchange) throws IOException;
 
+    // Возвращенные менеджером объекты читаются под его блокировкой, чтобы параллельный
+    // запрос не изменил их во время сериализации
+    protected String toJson(Object src) {
+        synchronized (taskManager) {
+            return gson.toJson(src);
+        }
+    }
+
     protected void sendText(HttpExchange exchange, String response, int statusCode) throws IOException {
         byte[] resp = response.getBytes(DEFAULT_CHARSET);
         exchange.getResponseHeaders().set("Content-Type", "application/json;charset=utf-8");
@@ -66,6 +79,23 @@ public abstract class BaseHttpHandler implements HttpHandler {
         return new String(inputStream.readAllBytes(), DEFAULT_CHARSET);
     }
 
+    // Разбирает параметры строки запроса: ?from=...&to=...
+    protected Map<String, String> readQuery(HttpExchange exchange) {
+        Map<String, String> params = new HashMap<>();
+        String query = exchange.getRequestURI().getRawQuery();
+        if (query == null || query.isEmpty()) {
+            return params;
+        }
+        for (String pair : query.split("&")) {
+            int separator = pair.indexOf('=');
+            if (separator > 0) {
+                params.put(URLDecoder.decode(pair.substring(0, separator), DEFAULT_CHARSET),
+                        URLDecoder.decode(pair.substring(separator + 1), DEFAULT_CHARSET));
+            }
+        }
+        return params;
+    }
+
     protected void sendMethodNotAllowed(HttpExchange exchange) throws IOException {
         String response = "{\"error\": \"Метод не поддерживается\"}";
         sendText(exchange, response, 405);
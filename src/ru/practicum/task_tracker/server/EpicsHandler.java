@@ -63,6 +63,8 @@ public class EpicsHandler extends BaseHttpHandler {
             sendNotFound(exchange, e.getMessage());
         } catch (TimeOverlapException e) {
             sendHasOverlaps(exchange);
+        } catch (IllegalArgumentException e) {
+            sendBadRequest(exchange, e.getMessage());
         } catch (Exception e) {
             sendInternalError(exchange);
         } finally {
@@ -70,21 +72,29 @@ public class EpicsHandler extends BaseHttpHandler {
         }
     }
 
+    // ?sort=start - подзадачи в порядке начала
     private void handleGetEpicSubtasks(HttpExchange exchange, int id) throws IOException {
-        List<Subtask> subtaskList = taskManager.getSubtasksByEpic(id);
-        String response = gson.toJson(subtaskList);
+        String sort = readQuery(exchange).get("sort");
+        if (sort != null && !sort.equals("start")) {
+            sendBadRequest(exchange, "Неизвестный порядок сортировки: " + sort);
+            return;
+        }
+        List<Subtask> subtaskList = sort == null
+                ? taskManager.getSubtasksByEpic(id)
+                : taskManager.getSubtasksByEpicSortedByStart(id);
+        String response = toJson(subtaskList);
         sendText(exchange, response, 200);
     }
 
     private void handleGetAllEpics(HttpExchange exchange) throws IOException {
         List<Epic> epicList = taskManager.getAllEpics();
-        String response = gson.toJson(epicList);
+        String response = toJson(epicList);
         sendText(exchange, response, 200);
     }
 
     private void handleGetEpicById(HttpExchange exchange, int id) throws IOException {
         Epic epic = taskManager.getEpicById(id);
-        String response = gson.toJson(epic);
+        String response = toJson(epic);
         sendText(exchange, response, 200);
     }
 
@@ -94,7 +104,7 @@ public class EpicsHandler extends BaseHttpHandler {
 
         int createdEpicId = taskManager.addEpic(epic);
         Epic saved = taskManager.getEpicById(createdEpicId);
-        String response = gson.toJson(saved);
+        String response = toJson(saved);
         sendText(exchange, response, 201);
     }
 
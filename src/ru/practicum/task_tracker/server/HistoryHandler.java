@@ -29,7 +29,7 @@ public class HistoryHandler extends BaseHttpHandler {
     private void handleGetHistory(HttpExchange exchange) throws IOException {
         try {
             List<Task> history = taskManager.getHistory();
-            String response = gson.toJson(history);
+            String response = toJson(history);
 
             sendText(exchange, response, 200);
         } catch (Exception e) {
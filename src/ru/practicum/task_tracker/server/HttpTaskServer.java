@@ -2,14 +2,25 @@ package ru.practicum.task_tracker.server;
 
 import java.io.IOException;
 import java.net.InetSocketAddress;
+import java.time.LocalDateTime;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 import com.sun.net.httpserver.HttpServer;
+import ru.practicum.task_tracker.service.FileBackedTaskManager;
 import ru.practicum.task_tracker.service.Managers;
 import ru.practicum.task_tracker.service.TaskManager;
 
 public class HttpTaskServer {
     private static final int PORT = 8080;
+    private static final int THREADS = Runtime.getRuntime().availableProcessors() * 2;
     private final HttpServer server;
-
+    private final TaskManager taskManager;
+    // Запросы обрабатываются параллельно: пока один поток ждет записи журнала на диск,
+    // изменения других запросов попадают в ту же группу записи
+    private final ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+    private final ScheduledExecutorService triggerScheduler = Executors.newSingleThreadScheduledExecutor();
 
     public HttpTaskServer() throws IOException {
         this(Managers.getDefault());
@@ -17,6 +28,8 @@ public class HttpTaskServer {
 
     public HttpTaskServer(TaskManager taskManager) throws IOException {
         this.server = HttpServer.create(new InetSocketAddress(PORT), 0);
+        this.taskManager = taskManager;
+        server.setExecutor(executor);
 
         // Регистрируем обработчики
         server.createContext("/tasks", new TasksHandler(taskManager));
@@ -30,13 +43,35 @@ public class HttpTaskServer {
         System.out.println("Запускаем сервер на порту " + PORT);
         System.out.println("Открой в браузере http://localhost:" + PORT + "/");
         server.start();
+        triggerScheduler.scheduleAtFixedRate(this::fireTriggers, 0, 1, TimeUnit.MINUTES);
     }
 
+    // Менеджер с файлом закрывается после последнего запроса: так дописываются снимки из очереди
     public void stop() {
         server.stop(0);
+        executor.shutdown();
+        triggerScheduler.shutdown();
+        try {
+            executor.awaitTermination(30, TimeUnit.SECONDS);
+            triggerScheduler.awaitTermination(30, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (taskManager instanceof FileBackedTaskManager) {
+            ((FileBackedTaskManager) taskManager).close();
+        }
         System.out.println("Сервер остановлен");
     }
 
+    private void fireTriggers() {
+        try {
+            taskManager.fireDueTriggers(LocalDateTime.now());
+        } catch (RuntimeException e) {
+            // Исключение отменило бы все следующие запуски
+            System.out.println("Ошибка при срабатывании триггеров: " + e.getMessage());
+        }
+    }
+
     public static void main(String[] args) throws IOException {
         HttpTaskServer taskServer = new HttpTaskServer();
         taskServer.start();
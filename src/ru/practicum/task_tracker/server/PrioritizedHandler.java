@@ -2,10 +2,17 @@ package ru.practicum.task_tracker.server;
 
 import com.sun.net.httpserver.HttpExchange;
 import ru.practicum.task_tracker.model.Task;
+import ru.practicum.task_tracker.model.TimeConflict;
 import ru.practicum.task_tracker.service.TaskManager;
 
 import java.io.IOException;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 public class PrioritizedHandler extends BaseHttpHandler {
 
@@ -16,17 +23,83 @@ public class PrioritizedHandler extends BaseHttpHandler {
     @Override
     public void handle(HttpExchange exchange) throws IOException {
         try {
-            if ("GET".equals(exchange.getRequestMethod())) {
-                List<Task> prioritizedTasks = taskManager.getPrioritizedTasks();
-                String response = gson.toJson(prioritizedTasks);
-                sendText(exchange, response, 200);
-            } else {
+            if (!"GET".equals(exchange.getRequestMethod())) {
                 sendMethodNotAllowed(exchange);
+                return;
             }
+
+            String[] pathParts = exchange.getRequestURI().getPath().split("/");
+            if (pathParts.length == 2) {
+                handleGetPrioritized(exchange);
+            } else if (pathParts.length == 3 && "free".equals(pathParts[2])) {
+                handleFindFreeSlot(exchange);
+            } else if (pathParts.length == 3 && "load".equals(pathParts[2])) {
+                handleGetDailyLoad(exchange);
+            } else if (pathParts.length == 3 && "conflicts".equals(pathParts[2])) {
+                handleGetConflicts(exchange);
+            } else {
+                sendNotFound(exchange, "Запрашиваемый ресурс не существует");
+            }
+        } catch (NumberFormatException | DateTimeParseException e) {
+            sendBadRequest(exchange, "Неверный формат параметров запроса");
+        } catch (IllegalArgumentException e) {
+            sendBadRequest(exchange, e.getMessage());
         } catch (Exception e) {
             sendInternalError(exchange);
         } finally {
             exchange.close();
         }
     }
+
+    // GET /prioritized?from=2024-01-01T00:00&to=2024-01-08T00:00 - задачи внутри окна (ISO-8601);
+    // с параметром assignee - только расписание этого исполнителя
+    private void handleGetPrioritized(HttpExchange exchange) throws IOException {
+        Map<String, String> query = readQuery(exchange);
+        LocalDateTime from = query.containsKey("from") ? LocalDateTime.parse(query.get("from")) : null;
+        LocalDateTime to = query.containsKey("to") ? LocalDateTime.parse(query.get("to")) : null;
+
+        List<Task> prioritizedTasks = query.containsKey("assignee")
+                ? taskManager.getPrioritizedTasks(query.get("assignee"), from, to)
+                : taskManager.getPrioritizedTasks(from, to);
+        String response = toJson(prioritizedTasks);
+        sendText(exchange, response, 200);
+    }
+
+    // GET /prioritized/free?duration=30&from=2024-01-01T09:00&to=2024-01-01T18:00&assignee=...
+    // duration - в минутах, from и to - в формате ISO-8601; from по умолчанию - текущее время
+    private void handleFindFreeSlot(HttpExchange exchange) throws IOException {
+        Map<String, String> query = readQuery(exchange);
+        if (!query.containsKey("duration")) {
+            sendBadRequest(exchange, "Не указана длительность");
+            return;
+        }
+        Duration duration = Duration.ofMinutes(Long.parseLong(query.get("duration")));
+        LocalDateTime from = query.containsKey("from") ? LocalDateTime.parse(query.get("from")) : LocalDateTime.now();
+        LocalDateTime to = query.containsKey("to") ? LocalDateTime.parse(query.get("to")) : null;
+
+        LocalDateTime startTime = taskManager.findFreeSlot(query.get("assignee"), duration, from, to);
+        if (startTime == null) {
+            sendNotFound(exchange, "Свободное окно не найдено");
+            return;
+        }
+
+        Map<String, LocalDateTime> slot = new LinkedHashMap<>();
+        slot.put("startTime", startTime);
+        slot.put("endTime", startTime.plus(duration));
+        sendText(exchange, toJson(slot), 200);
+    }
+
+    // GET /prioritized/load?from=2024-01-01&to=2024-03-31 - запланированные минуты по дням
+    private void handleGetDailyLoad(HttpExchange exchange) throws IOException {
+        Map<String, String> query = readQuery(exchange);
+        LocalDate from = query.containsKey("from") ? LocalDate.parse(query.get("from")) : null;
+        LocalDate to = query.containsKey("to") ? LocalDate.parse(query.get("to")) : null;
+
+        sendText(exchange, toJson(taskManager.getDailyLoad(from, to)), 200);
+    }
+
+    private void handleGetConflicts(HttpExchange exchange) throws IOException {
+        List<TimeConflict> conflicts = taskManager.findConflicts();
+        sendText(exchange, toJson(conflicts), 200);
+    }
 }
@@ -65,13 +65,13 @@ public class SubtasksHandler extends BaseHttpHandler {
 
     private void handleGetAllSubtasks(HttpExchange exchange) throws IOException {
         List<Subtask> subtaskList = taskManager.getAllSubtasks();
-        String response = gson.toJson(subtaskList);
+        String response = toJson(subtaskList);
         sendText(exchange, response, 200);
     }
 
     private void handleGetSubtaskById(HttpExchange exchange, int id) throws IOException {
         Subtask subtask = taskManager.getSubtaskById(id);
-        String response = gson.toJson(subtask);
+        String response = toJson(subtask);
         sendText(exchange, response, 200);
     }
 
@@ -82,12 +82,12 @@ public class SubtasksHandler extends BaseHttpHandler {
         if (subtask.getId() == 0) {
             int createdSubtaskId = taskManager.addSubtask(subtask);
             Subtask saved = taskManager.getSubtaskById(createdSubtaskId);
-            String response = gson.toJson(saved);
+            String response = toJson(saved);
             sendText(exchange, response, 201);
         } else {
             taskManager.updateSubtask(subtask);
             Subtask updated = taskManager.getSubtaskById(subtask.getId());
-            String response = gson.toJson(updated);
+            String response = toJson(updated);
             sendText(exchange, response, 200);
         }
     }
@@ -1,9 +1,12 @@
 package ru.practicum.task_tracker.server;
 
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
 import com.google.gson.JsonSyntaxException;
 import com.sun.net.httpserver.HttpExchange;
 import ru.practicum.task_tracker.exceptions.NotFoundException;
 import ru.practicum.task_tracker.exceptions.TimeOverlapException;
+import ru.practicum.task_tracker.model.RecurringTask;
 import ru.practicum.task_tracker.model.Task;
 import ru.practicum.task_tracker.service.TaskManager;
 
@@ -56,6 +59,8 @@ public class TasksHandler extends BaseHttpHandler {
             sendNotFound(exchange, e.getMessage());
         } catch (TimeOverlapException e) {
             sendHasOverlaps(exchange);
+        } catch (IllegalArgumentException e) {
+            sendBadRequest(exchange, e.getMessage());
         } catch (Exception e) {
             sendInternalError(exchange);
         } finally {
@@ -65,29 +70,31 @@ public class TasksHandler extends BaseHttpHandler {
 
     public void handleGetAllTasks(HttpExchange exchange) throws IOException {
         List<Task> taskList = taskManager.getAllTasks();
-        String response = gson.toJson(taskList);
+        String response = toJson(taskList);
         sendText(exchange, response, 200);
     }
 
     private void handleGetTaskById(HttpExchange exchange, int id) throws IOException {
         Task task = taskManager.getTaskById(id);
-        String response = gson.toJson(task);
+        String response = toJson(task);
         sendText(exchange, response, 200);
     }
 
     private void handleCreateOrUpdateTask(HttpExchange exchange) throws IOException {
         String body = readText(exchange);
-        Task task = gson.fromJson(body, Task.class);
+        // Задача с правилом повторения описывает всю серию
+        JsonObject json = JsonParser.parseString(body).getAsJsonObject();
+        Task task = json.has("everyDays") ? gson.fromJson(json, RecurringTask.class) : gson.fromJson(json, Task.class);
 
         if (task.getId() == 0) {
             int createdTaskId = taskManager.addTask(task);
             Task saved = taskManager.getTaskById(createdTaskId);
-            String response = gson.toJson(saved);
+            String response = toJson(saved);
             sendText(exchange, response, 201);
         } else {
             taskManager.updateTask(task);
             Task updated = taskManager.getTaskById(task.getId());
-            String response = gson.toJson(updated);
+            String response = toJson(updated);
             sendText(exchange, response, 200);
         }
     }
@@ -0,0 +1,104 @@
+package ru.practicum.task_tracker.service;
+
+import ru.practicum.task_tracker.model.Task;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+// Раскладывает задачи без времени начала по свободным промежуткам расписания.
+// Расписание проходится один раз по времени; в каждый промежуток жадно
+// укладывается самая длинная из оставшихся задач, которая в него помещается.
+// При равной длительности раньше ставится задача, созданная раньше.
+public class BacklogScheduler {
+    private final LocalTime workStart;
+    private final LocalTime workEnd;
+    private final Duration minGap;
+
+    public BacklogScheduler(LocalTime workStart, LocalTime workEnd, Duration minGap) {
+        if (!workStart.isBefore(workEnd)) {
+            throw new IllegalArgumentException("Начало рабочего дня должно быть раньше его конца");
+        }
+        this.workStart = workStart;
+        this.workEnd = workEnd;
+        this.minGap = minGap;
+    }
+
+    // timeline - задачи по возрастанию времени начала, пересекающиеся с [from - minGap, to + minGap].
+    // Возвращает время начала для каждой размещенной задачи; неразмещенные задачи в ответ не попадают
+    public Map<Task, LocalDateTime> schedule(Collection<? extends Task> backlog, List<Task> timeline,
+                                             LocalDateTime from, LocalDateTime to) {
+        TreeMap<Duration, ArrayDeque<Task>> pending = new TreeMap<>();
+        backlog.stream()
+                .sorted(Comparator.comparingInt(Task::getId))
+                .forEach(task -> pending.computeIfAbsent(durationOf(task), d -> new ArrayDeque<>()).add(task));
+
+        Map<Task, LocalDateTime> placements = new LinkedHashMap<>();
+        int next = 0;
+        for (LocalDate day = from.toLocalDate(); !day.isAfter(to.toLocalDate()) && !pending.isEmpty();
+             day = day.plusDays(1)) {
+            LocalDateTime windowStart = max(from, day.atTime(workStart));
+            LocalDateTime windowEnd = min(to, day.atTime(workEnd));
+            if (windowStart.isAfter(windowEnd)) {
+                continue;
+            }
+
+            while (next < timeline.size() && endOf(timeline.get(next)).isBefore(windowStart)) {
+                next++;
+            }
+
+            LocalDateTime cursor = windowStart;
+            for (int i = next; i < timeline.size() && !timeline.get(i).getStartTime().isAfter(windowEnd); i++) {
+                Task busy = timeline.get(i);
+                fillGap(pending, placements, cursor, busy.getStartTime().minus(minGap));
+                LocalDateTime afterBusy = endOf(busy).plus(minGap);
+                if (afterBusy.isAfter(cursor)) {
+                    cursor = afterBusy;
+                }
+            }
+            fillGap(pending, placements, cursor, windowEnd);
+        }
+        return placements;
+    }
+
+    private void fillGap(TreeMap<Duration, ArrayDeque<Task>> pending, Map<Task, LocalDateTime> placements,
+                         LocalDateTime gapStart, LocalDateTime gapEnd) {
+        LocalDateTime cursor = gapStart;
+        while (!pending.isEmpty() && !cursor.isAfter(gapEnd)) {
+            Map.Entry<Duration, ArrayDeque<Task>> fitting = pending.floorEntry(Duration.between(cursor, gapEnd));
+            if (fitting == null) {
+                return;
+            }
+            Task task = fitting.getValue().poll();
+            if (fitting.getValue().isEmpty()) {
+                pending.remove(fitting.getKey());
+            }
+            placements.put(task, cursor);
+            cursor = cursor.plus(fitting.getKey()).plus(minGap);
+        }
+    }
+
+    private static Duration durationOf(Task task) {
+        return task.getDuration() != null ? task.getDuration() : Duration.ZERO;
+    }
+
+    private static LocalDateTime endOf(Task task) {
+        return task.getEndTime() != null ? task.getEndTime() : task.getStartTime();
+    }
+
+    private static LocalDateTime max(LocalDateTime a, LocalDateTime b) {
+        return a.isAfter(b) ? a : b;
+    }
+
+    private static LocalDateTime min(LocalDateTime a, LocalDateTime b) {
+        return a.isBefore(b) ? a : b;
+    }
+}
@@ -0,0 +1,301 @@
+package ru.practicum.task_tracker.service;
+
+import ru.practicum.task_tracker.exceptions.ManagerLoadException;
+import ru.practicum.task_tracker.model.Epic;
+import ru.practicum.task_tracker.model.RecurringTask;
+import ru.practicum.task_tracker.model.Status;
+import ru.practicum.task_tracker.model.Subtask;
+import ru.practicum.task_tracker.model.Task;
+import ru.practicum.task_tracker.model.TaskType;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+
+// Двоичный формат снимка:
+// заголовок [MAGIC][версия][число записей], затем записи
+// [тип][id][статус][имя][описание][родитель][длительность][начало][исполнитель] и поля типа:
+// для серии [шаг][until], для подзадачи [число блокирующих][id...].
+// Строки хранятся как [длина в байтах UTF-8][байты], длина -1 - null.
+// Время хранится в минутах эпохи, как и длительность в CSV - с точностью до минуты
+public class BinarySnapshotCodec {
+    // "TKSN"
+    public static final int MAGIC = 0x544B534E;
+    public static final short VERSION = 1;
+
+    private static final int BUFFER_SIZE = 1 << 16;
+    private static final long NO_TIME = Long.MIN_VALUE;
+    private static final long NO_DURATION = -1;
+    private static final TaskType[] TYPES = TaskType.values();
+    private static final Status[] STATUSES = Status.values();
+
+    // Проверяет по заголовку, записан ли файл в двоичном формате
+    public static boolean isBinary(File file) throws IOException {
+        if (file.length() < Integer.BYTES) {
+            return false;
+        }
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(Integer.BYTES);
+            while (header.hasRemaining()) {
+                if (channel.read(header) < 0) {
+                    return false;
+                }
+            }
+            return header.getInt(0) == MAGIC;
+        }
+    }
+
+    public static void write(File file, Iterable<Task> tasks, int count, Function<Integer, List<Integer>> blockers)
+            throws IOException {
+        write(FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING), tasks, count, blockers);
+    }
+
+    // Пишет снимок в канал и закрывает его; через канал снимок можно, например, сжимать
+    public static void write(WritableByteChannel channel, Iterable<Task> tasks, int count,
+                             Function<Integer, List<Integer>> blockers) throws IOException {
+        try (Writer writer = new Writer(channel)) {
+            writer.ensure(Integer.BYTES + Short.BYTES + Integer.BYTES);
+            writer.buffer.putInt(MAGIC).putShort(VERSION).putInt(count);
+            for (Task task : tasks) {
+                writeTask(writer, task, blockers);
+            }
+        }
+    }
+
+    public static void read(File file, Snapshot snapshot) throws IOException {
+        read(FileChannel.open(file.toPath(), StandardOpenOption.READ), snapshot);
+    }
+
+    public static void read(ReadableByteChannel channel, Snapshot snapshot) throws IOException {
+        try (Reader reader = new Reader(channel)) {
+            reader.ensure(Integer.BYTES + Short.BYTES + Integer.BYTES);
+            if (reader.buffer.getInt() != MAGIC) {
+                throw new ManagerLoadException("Файл не является двоичным снимком");
+            }
+            short version = reader.buffer.getShort();
+            if (version != VERSION) {
+                throw new ManagerLoadException("Неподдерживаемая версия снимка: " + version);
+            }
+            int count = reader.buffer.getInt();
+            for (int i = 0; i < count; i++) {
+                readTask(reader, snapshot);
+            }
+        }
+    }
+
+    private static void writeTask(Writer writer, Task task, Function<Integer, List<Integer>> blockers)
+            throws IOException {
+        writer.ensure(Byte.BYTES * 2 + Integer.BYTES);
+        writer.buffer.put((byte) task.getType().ordinal())
+                .putInt(task.getId())
+                .put((byte) task.getStatus().ordinal());
+        writer.putString(task.getName());
+        writer.putString(task.getDescription());
+
+        int parent = 0;
+        if (task instanceof Subtask) {
+            parent = ((Subtask) task).getEpicId();
+        } else if (task instanceof Epic) {
+            parent = ((Epic) task).getParentEpicId();
+        }
+        writer.ensure(Integer.BYTES + Long.BYTES * 2);
+        writer.buffer.putInt(parent)
+                .putLong(task.getDuration() != null ? task.getDuration().toMinutes() : NO_DURATION)
+                .putLong(toMinutes(task.getStartTime()));
+        writer.putString(task.getAssignee());
+
+        if (task instanceof RecurringTask) {
+            RecurringTask recurring = (RecurringTask) task;
+            writer.ensure(Integer.BYTES + Long.BYTES);
+            writer.buffer.putInt(recurring.getEveryDays()).putLong(toMinutes(recurring.getUntil()));
+        } else if (task instanceof Subtask) {
+            List<Integer> ids = blockers.apply(task.getId());
+            writer.ensure(Integer.BYTES);
+            writer.buffer.putInt(ids.size());
+            for (int id : ids) {
+                writer.ensure(Integer.BYTES);
+                writer.buffer.putInt(id);
+            }
+        }
+    }
+
+    private static void readTask(Reader reader, Snapshot snapshot) throws IOException {
+        reader.ensure(Byte.BYTES * 2 + Integer.BYTES);
+        TaskType type = TYPES[reader.buffer.get()];
+        int id = reader.buffer.getInt();
+        Status status = STATUSES[reader.buffer.get()];
+        String name = reader.getString();
+        String description = reader.getString();
+        reader.ensure(Integer.BYTES + Long.BYTES * 2);
+        int parent = reader.buffer.getInt();
+        long durationMinutes = reader.buffer.getLong();
+        Duration duration = durationMinutes == NO_DURATION ? null : Duration.ofMinutes(durationMinutes);
+        LocalDateTime startTime = fromMinutes(reader.buffer.getLong());
+        String assignee = reader.getString();
+
+        Task task;
+        List<Integer> blockers = List.of();
+        switch (type) {
+            case TASK:
+                task = new Task(name, description, duration, startTime);
+                break;
+            case RECURRING:
+                reader.ensure(Integer.BYTES + Long.BYTES);
+                int everyDays = reader.buffer.getInt();
+                task = new RecurringTask(name, description, duration, startTime,
+                        everyDays, fromMinutes(reader.buffer.getLong()));
+                break;
+            case EPIC:
+                Epic epic = new Epic(name, description);
+                epic.setParentEpicId(parent);
+                task = epic;
+                break;
+            case SUBTASK:
+                task = new Subtask(name, description, parent, duration, startTime);
+                reader.ensure(Integer.BYTES);
+                int count = reader.buffer.getInt();
+                if (count > 0) {
+                    blockers = new ArrayList<>(count);
+                    for (int i = 0; i < count; i++) {
+                        reader.ensure(Integer.BYTES);
+                        blockers.add(reader.buffer.getInt());
+                    }
+                }
+                break;
+            default:
+                throw new ManagerLoadException("Неизвестный тип объекта " + type);
+        }
+        task.setId(id);
+        task.setStatus(status);
+        task.setAssignee(assignee);
+        snapshot.put(task, blockers);
+    }
+
+    private static long toMinutes(LocalDateTime time) {
+        return time == null ? NO_TIME : Math.floorDiv(time.toEpochSecond(ZoneOffset.UTC), 60);
+    }
+
+    private static LocalDateTime fromMinutes(long minutes) {
+        return minutes == NO_TIME ? null : LocalDateTime.ofEpochSecond(minutes * 60, 0, ZoneOffset.UTC);
+    }
+
+    // Буферизованная запись в канал
+    private static class Writer implements AutoCloseable {
+        private final WritableByteChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+
+        private Writer(WritableByteChannel channel) {
+            this.channel = channel;
+        }
+
+        private void ensure(int bytes) throws IOException {
+            if (buffer.remaining() < bytes) {
+                drain();
+            }
+        }
+
+        private void putString(String value) throws IOException {
+            ensure(Integer.BYTES);
+            if (value == null) {
+                buffer.putInt(-1);
+                return;
+            }
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            buffer.putInt(bytes.length);
+            if (bytes.length <= buffer.remaining()) {
+                buffer.put(bytes);
+                return;
+            }
+            // Длинная строка пишется в канал напрямую
+            drain();
+            ByteBuffer wrapped = ByteBuffer.wrap(bytes);
+            while (wrapped.hasRemaining()) {
+                channel.write(wrapped);
+            }
+        }
+
+        private void drain() throws IOException {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            buffer.clear();
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                drain();
+            } finally {
+                channel.close();
+            }
+        }
+    }
+
+    // Буферизованное чтение из канала
+    private static class Reader implements AutoCloseable {
+        private final ReadableByteChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+
+        private Reader(ReadableByteChannel channel) {
+            this.channel = channel;
+            buffer.limit(0);
+        }
+
+        private void ensure(int bytes) throws IOException {
+            if (buffer.remaining() >= bytes) {
+                return;
+            }
+            buffer.compact();
+            while (buffer.position() < bytes) {
+                if (channel.read(buffer) < 0) {
+                    throw new EOFException("Снимок оборван");
+                }
+            }
+            buffer.flip();
+        }
+
+        private String getString() throws IOException {
+            ensure(Integer.BYTES);
+            int length = buffer.getInt();
+            if (length < 0) {
+                return null;
+            }
+            if (length <= BUFFER_SIZE) {
+                ensure(length);
+                String value = new String(buffer.array(), buffer.position(), length, StandardCharsets.UTF_8);
+                buffer.position(buffer.position() + length);
+                return value;
+            }
+            // Строка длиннее буфера: остаток буфера и затем чтение из канала напрямую
+            byte[] bytes = new byte[length];
+            int copied = Math.min(length, buffer.remaining());
+            buffer.get(bytes, 0, copied);
+            ByteBuffer wrapped = ByteBuffer.wrap(bytes, copied, length - copied);
+            while (wrapped.hasRemaining()) {
+                if (channel.read(wrapped) < 0) {
+                    throw new EOFException("Снимок оборван");
+                }
+            }
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package ru.practicum.task_tracker.service;
+
+import java.time.Duration;
+
+// Сводка по сжатым снимкам: сколько записано, объем до и после сжатия и время сжатия с записью.
+// Пополняется из фоновых потоков, поэтому методы синхронизированы
+public class CompressionStats {
+    private long snapshots;
+    private long rawBytes;
+    private long compressedBytes;
+    private long nanos;
+
+    public synchronized void record(long raw, long compressed, long elapsedNanos) {
+        snapshots++;
+        rawBytes += raw;
+        compressedBytes += compressed;
+        nanos += elapsedNanos;
+    }
+
+    public synchronized long getSnapshots() {
+        return snapshots;
+    }
+
+    public synchronized long getRawBytes() {
+        return rawBytes;
+    }
+
+    public synchronized long getCompressedBytes() {
+        return compressedBytes;
+    }
+
+    // Во сколько раз снимки уменьшились при сжатии; 0, пока ничего не записано
+    public synchronized double getRatio() {
+        return compressedBytes == 0 ? 0 : (double) rawBytes / compressedBytes;
+    }
+
+    public synchronized Duration getTime() {
+        return Duration.ofNanos(nanos);
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format("Сжато снимков: %d, %d -> %d байт (%.2f:1), время: %d мс",
+                snapshots, rawBytes, compressedBytes, getRatio(), getTime().toMillis());
+    }
+}
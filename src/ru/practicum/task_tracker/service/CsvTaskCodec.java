@@ -0,0 +1,472 @@
+package ru.practicum.task_tracker.service;
+
+import ru.practicum.task_tracker.model.Epic;
+import ru.practicum.task_tracker.model.RecurringTask;
+import ru.practicum.task_tracker.model.Status;
+import ru.practicum.task_tracker.model.Subtask;
+import ru.practicum.task_tracker.model.Task;
+import ru.practicum.task_tracker.model.TaskType;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+// Строка задачи в CSV по RFC 4180: поля с запятой, кавычкой или переводом строки
+// берутся в кавычки, кавычка внутри удваивается. null пишется пустым полем,
+// пустая строка - парой кавычек "".
+// Столбцы: id,type,name,status,description,epicId,duration,startTime,assignee,
+// затем у серии everyDays,until, у подзадачи с зависимостями ,,blockedBy (id через ';').
+// Запись идет в переиспользуемый буфер символов, а при чтении запоминаются только
+// границы полей: строки создаются лишь для текстовых полей, числа и время разбираются
+// прямо из символов. Экземпляр не потокобезопасен - у каждого потока свой
+public class CsvTaskCodec {
+    private static final TaskType[] TYPES = TaskType.values();
+    private static final Status[] STATUSES = Status.values();
+    // Поле было в кавычках / содержало удвоенные кавычки
+    private static final byte QUOTED = 1;
+    private static final byte ESCAPED = 2;
+
+    private char[] buffer = new char[256];
+    private int length;
+
+    private String text;
+    private int position;
+    private boolean blankLine;
+    private int fieldCount;
+    private int[] starts = new int[16];
+    private int[] ends = new int[16];
+    private byte[] flags = new byte[16];
+
+    // Кодирует задачу в буфер, предыдущее содержимое буфера сбрасывается
+    public void encode(Task task, List<Integer> blockers) {
+        length = 0;
+        appendInt(task.getId());
+        appendChar(',');
+        appendText(task.getType().name());
+        appendChar(',');
+        appendField(task.getName());
+        appendChar(',');
+        appendText(task.getStatus().name());
+        appendChar(',');
+        appendField(task.getDescription());
+        appendChar(',');
+        if (task instanceof Subtask) {
+            appendInt(((Subtask) task).getEpicId());
+        } else if (task instanceof Epic && ((Epic) task).getParentEpicId() != 0) {
+            appendInt(((Epic) task).getParentEpicId());
+        }
+        appendChar(',');
+        appendLong(task.getDuration() != null ? task.getDuration().toMinutes() : 0);
+        appendChar(',');
+        appendTime(task.getStartTime());
+        appendChar(',');
+        appendField(task.getAssignee());
+        if (task instanceof RecurringTask) {
+            RecurringTask recurring = (RecurringTask) task;
+            appendChar(',');
+            appendInt(recurring.getEveryDays());
+            appendChar(',');
+            appendTime(recurring.getUntil());
+        } else if (task instanceof Subtask && !blockers.isEmpty()) {
+            appendText(",,,");
+            for (int i = 0; i < blockers.size(); i++) {
+                if (i > 0) {
+                    appendChar(';');
+                }
+                appendInt(blockers.get(i));
+            }
+        }
+    }
+
+    public void writeTo(Writer writer) throws IOException {
+        writer.write(buffer, 0, length);
+    }
+
+    public String encoded() {
+        return new String(buffer, 0, length);
+    }
+
+    // Начинает чтение записей из text с позиции from
+    public void read(String text, int from) {
+        this.text = text;
+        this.position = from;
+        this.blankLine = false;
+        this.fieldCount = 0;
+    }
+
+    // Переходит к следующей записи. false - текст закончился или встретилась пустая строка
+    public boolean nextRecord() {
+        fieldCount = 0;
+        int end = text.length();
+        if (position >= end) {
+            return false;
+        }
+        if (lineEndAt(position)) {
+            blankLine = true;
+            return false;
+        }
+        while (true) {
+            if (fieldCount == starts.length) {
+                starts = Arrays.copyOf(starts, fieldCount * 2);
+                ends = Arrays.copyOf(ends, fieldCount * 2);
+                flags = Arrays.copyOf(flags, fieldCount * 2);
+            }
+            byte flag = 0;
+            int start = position;
+            int fieldEnd;
+            if (position < end && text.charAt(position) == '"') {
+                flag = QUOTED;
+                start = ++position;
+                while (true) {
+                    int quote = text.indexOf('"', position);
+                    if (quote < 0) {
+                        // Оборванное поле в кавычках тянется до конца текста
+                        fieldEnd = position = end;
+                        break;
+                    }
+                    if (quote + 1 < end && text.charAt(quote + 1) == '"') {
+                        flag |= ESCAPED;
+                        position = quote + 2;
+                        continue;
+                    }
+                    fieldEnd = quote;
+                    position = quote + 1;
+                    break;
+                }
+                // Символы между закрывающей кавычкой и разделителем пропускаются
+                while (position < end && text.charAt(position) != ',' && !lineEndAt(position)) {
+                    position++;
+                }
+            } else {
+                while (position < end && text.charAt(position) != ',' && !lineEndAt(position)) {
+                    position++;
+                }
+                fieldEnd = position;
+            }
+            starts[fieldCount] = start;
+            ends[fieldCount] = fieldEnd;
+            flags[fieldCount] = flag;
+            fieldCount++;
+
+            if (position < end && text.charAt(position) == ',') {
+                position++;
+                continue;
+            }
+            if (position < end) {
+                position += text.charAt(position) == '\r' ? 2 : 1;
+            }
+            return true;
+        }
+    }
+
+    // Чтение остановилось на пустой строке, а не на конце текста
+    public boolean isBlankLine() {
+        return blankLine;
+    }
+
+    public int fieldCount() {
+        return fieldCount;
+    }
+
+    public boolean isEmpty(int index) {
+        return index >= fieldCount || starts[index] == ends[index];
+    }
+
+    // Текстовое поле; пустое поле без кавычек - null
+    public String field(int index) {
+        if (index >= fieldCount || (flags[index] == 0 && starts[index] == ends[index])) {
+            return null;
+        }
+        if ((flags[index] & ESCAPED) == 0) {
+            return text.substring(starts[index], ends[index]);
+        }
+        StringBuilder value = new StringBuilder(ends[index] - starts[index]);
+        for (int i = starts[index]; i < ends[index]; i++) {
+            char c = text.charAt(i);
+            value.append(c);
+            if (c == '"') {
+                i++;
+            }
+        }
+        return value.toString();
+    }
+
+    public int intField(int index) {
+        long value = longField(index);
+        if (value != (int) value) {
+            throw new NumberFormatException("Число вне диапазона int: " + field(index));
+        }
+        return (int) value;
+    }
+
+    public long longField(int index) {
+        int start = starts[index];
+        int end = ends[index];
+        boolean negative = start < end && text.charAt(start) == '-';
+        int i = negative ? start + 1 : start;
+        if (i == end || end - i > 18) {
+            // Пустое поле или слишком длинное для разбора без переполнения
+            return Long.parseLong(text.substring(start, end));
+        }
+        long value = 0;
+        for (; i < end; i++) {
+            int digit = text.charAt(i) - '0';
+            if (digit < 0 || digit > 9) {
+                throw new NumberFormatException("Не число: " + text.substring(start, end));
+            }
+            value = value * 10 + digit;
+        }
+        return negative ? -value : value;
+    }
+
+    // Время в формате LocalDateTime.toString: uuuu-MM-ddTHH:mm[:ss[.нс]]; прочие записи
+    // (годы вне 0000..9999 и т.п.) разбираются штатным парсером
+    public LocalDateTime timeField(int index) {
+        int start = starts[index];
+        int end = ends[index];
+        int size = end - start;
+        if (size < 16 || !at(start + 4, '-') || !at(start + 7, '-') || !at(start + 10, 'T')
+                || !at(start + 13, ':') || (size > 16 && (size < 19 || !at(start + 16, ':')))
+                || (size > 19 && (size == 20 || size > 29 || !at(start + 19, '.')))) {
+            return LocalDateTime.parse(text.substring(start, end));
+        }
+        int year = digits(start, 4);
+        int month = digits(start + 5, 2);
+        int day = digits(start + 8, 2);
+        int hour = digits(start + 11, 2);
+        int minute = digits(start + 14, 2);
+        int second = size > 16 ? digits(start + 17, 2) : 0;
+        int nano = 0;
+        if (size > 19) {
+            nano = digits(start + 20, size - 20);
+            for (int i = size - 20; i < 9; i++) {
+                nano *= 10;
+            }
+        }
+        if ((year | month | day | hour | minute | second | nano) < 0) {
+            return LocalDateTime.parse(text.substring(start, end));
+        }
+        return LocalDateTime.of(year, month, day, hour, minute, second, nano);
+    }
+
+    // Задача текущей записи; null для строк, из которых задачу не восстановить
+    public Task decodeTask() {
+        if (fieldCount < 5) {
+            return null;
+        }
+        int id = intField(0);
+        TaskType type = TYPES[match(1, TYPES)];
+        String name = field(2);
+        Status status = STATUSES[match(3, STATUSES)];
+        String description = field(4);
+        Duration duration = isEmpty(6) ? null : Duration.ofMinutes(longField(6));
+        LocalDateTime startTime = isEmpty(7) ? null : timeField(7);
+        String assignee = isEmpty(8) ? null : field(8);
+
+        Task task;
+        switch (type) {
+            case TASK:
+                task = new Task(name, description);
+                if (duration != null) task.setDuration(duration);
+                if (startTime != null) task.setStartTime(startTime);
+                break;
+            case RECURRING:
+                if (fieldCount < 10 || startTime == null) return null;
+                LocalDateTime until = isEmpty(10) ? null : timeField(10);
+                task = new RecurringTask(name, description, duration, startTime, intField(9), until);
+                break;
+            case EPIC:
+                Epic epic = new Epic(name, description);
+                if (!isEmpty(5)) {
+                    epic.setParentEpicId(intField(5));
+                }
+                task = epic;
+                break;
+            case SUBTASK:
+                if (isEmpty(5)) return null;
+                task = new Subtask(name, description, intField(5));
+                if (duration != null) task.setDuration(duration);
+                if (startTime != null) task.setStartTime(startTime);
+                break;
+            default:
+                throw new IllegalArgumentException("Неизвестный тип объекта " + type);
+        }
+        task.setId(id);
+        task.setStatus(status);
+        task.setAssignee(assignee);
+        return task;
+    }
+
+    // Зависимости подзадачи из столбца blockedBy
+    public List<Integer> decodeBlockers() {
+        if (isEmpty(11)) {
+            return List.of();
+        }
+        List<Integer> blockers = new ArrayList<>();
+        int value = 0;
+        for (int i = starts[11]; i <= ends[11]; i++) {
+            char c = i < ends[11] ? text.charAt(i) : ';';
+            if (c == ';') {
+                blockers.add(value);
+                value = 0;
+            } else if (c >= '0' && c <= '9') {
+                value = value * 10 + (c - '0');
+            } else {
+                throw new NumberFormatException("Не число в blockedBy: " + field(11));
+            }
+        }
+        return blockers;
+    }
+
+    // Индекс константы перечисления, имя которой совпадает с полем
+    private int match(int index, Enum<?>[] constants) {
+        int size = ends[index] - starts[index];
+        for (Enum<?> constant : constants) {
+            String name = constant.name();
+            if (name.length() == size && text.regionMatches(starts[index], name, 0, size)) {
+                return constant.ordinal();
+            }
+        }
+        throw new IllegalArgumentException("Неизвестное значение: " + field(index));
+    }
+
+    private boolean lineEndAt(int index) {
+        char c = text.charAt(index);
+        return c == '\n' || (c == '\r' && (index + 1 == text.length() || text.charAt(index + 1) == '\n'));
+    }
+
+    private boolean at(int index, char expected) {
+        return text.charAt(index) == expected;
+    }
+
+    // Неотрицательное число из count цифр; -1, если встретилась не цифра
+    private int digits(int from, int count) {
+        int value = 0;
+        for (int i = from; i < from + count; i++) {
+            int digit = text.charAt(i) - '0';
+            if (digit < 0 || digit > 9) {
+                return -1;
+            }
+            value = value * 10 + digit;
+        }
+        return value;
+    }
+
+    private void appendField(String value) {
+        if (value == null) {
+            return;
+        }
+        boolean quote = value.isEmpty();
+        for (int i = 0; i < value.length() && !quote; i++) {
+            char c = value.charAt(i);
+            quote = c == ',' || c == '"' || c == '\n' || c == '\r';
+        }
+        if (!quote) {
+            appendText(value);
+            return;
+        }
+        appendChar('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"') {
+                appendChar('"');
+            }
+            appendChar(c);
+        }
+        appendChar('"');
+    }
+
+    // Формат совпадает с LocalDateTime.toString, годы вне 0000..9999 пишет сам toString
+    private void appendTime(LocalDateTime time) {
+        if (time == null) {
+            return;
+        }
+        if (time.getYear() < 0 || time.getYear() > 9999) {
+            appendText(time.toString());
+            return;
+        }
+        appendDigits(time.getYear(), 4);
+        appendChar('-');
+        appendDigits(time.getMonthValue(), 2);
+        appendChar('-');
+        appendDigits(time.getDayOfMonth(), 2);
+        appendChar('T');
+        appendDigits(time.getHour(), 2);
+        appendChar(':');
+        appendDigits(time.getMinute(), 2);
+        int second = time.getSecond();
+        int nano = time.getNano();
+        if (second == 0 && nano == 0) {
+            return;
+        }
+        appendChar(':');
+        appendDigits(second, 2);
+        if (nano == 0) {
+            return;
+        }
+        appendChar('.');
+        if (nano % 1_000_000 == 0) {
+            appendDigits(nano / 1_000_000, 3);
+        } else if (nano % 1000 == 0) {
+            appendDigits(nano / 1000, 6);
+        } else {
+            appendDigits(nano, 9);
+        }
+    }
+
+    private void appendInt(int value) {
+        appendLong(value);
+    }
+
+    private void appendLong(long value) {
+        if (value == Long.MIN_VALUE) {
+            appendText(String.valueOf(value));
+            return;
+        }
+        if (value < 0) {
+            appendChar('-');
+            value = -value;
+        }
+        int count = 1;
+        for (long rest = value / 10; rest > 0; rest /= 10) {
+            count++;
+        }
+        ensure(count);
+        for (int i = length + count - 1; i >= length; i--) {
+            buffer[i] = (char) ('0' + value % 10);
+            value /= 10;
+        }
+        length += count;
+    }
+
+    // Число, дополненное нулями слева до count цифр
+    private void appendDigits(int value, int count) {
+        ensure(count);
+        for (int i = length + count - 1; i >= length; i--) {
+            buffer[i] = (char) ('0' + value % 10);
+            value /= 10;
+        }
+        length += count;
+    }
+
+    private void appendText(String value) {
+        ensure(value.length());
+        value.getChars(0, value.length(), buffer, length);
+        length += value.length();
+    }
+
+    private void appendChar(char c) {
+        ensure(1);
+        buffer[length++] = c;
+    }
+
+    private void ensure(int extra) {
+        if (length + extra > buffer.length) {
+            buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, length + extra));
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package ru.practicum.task_tracker.service;
+
+import ru.practicum.task_tracker.model.RecurringTask;
+import ru.practicum.task_tracker.model.Task;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+// Гистограмма загрузки: сумма запланированных минут по дням.
+// Обновляется за O(число дней, которые охватывает задача) при добавлении и удалении.
+// Повторяющиеся серии в гистограмму не входят: их вхождения добавляются при запросе
+// только для запрошенных дней
+public class DailyLoad {
+    private final TreeMap<LocalDate, Long> minutesByDay = new TreeMap<>();
+    // Интервалы в том виде, в котором их учли, чтобы при удалении вычесть то же самое
+    private final HashMap<Integer, LocalDateTime[]> intervals = new HashMap<>();
+    private final HashMap<Integer, RecurringTask> series = new HashMap<>();
+
+    public void add(Task task) {
+        if (task == null || task.getStartTime() == null) {
+            return;
+        }
+        remove(task.getId());
+        if (task instanceof RecurringTask) {
+            series.put(task.getId(), (RecurringTask) task);
+            return;
+        }
+
+        LocalDateTime start = task.getStartTime();
+        LocalDateTime end = task.getEndTime() != null ? task.getEndTime() : start;
+        intervals.put(task.getId(), new LocalDateTime[]{start, end});
+        apply(start, end, 1);
+    }
+
+    public void remove(int id) {
+        series.remove(id);
+        LocalDateTime[] interval = intervals.remove(id);
+        if (interval != null) {
+            apply(interval[0], interval[1], -1);
+        }
+    }
+
+    public void clear() {
+        minutesByDay.clear();
+        intervals.clear();
+        series.clear();
+    }
+
+    // Загрузка по дням в диапазоне [from, to]; дни без задач в ответ не попадают.
+    // Без верхней границы бесконечные серии учитываются до последнего дня с разовыми задачами
+    public SortedMap<LocalDate, Long> between(LocalDate from, LocalDate to) {
+        TreeMap<LocalDate, Long> result;
+        if (from == null && to == null) {
+            result = new TreeMap<>(minutesByDay);
+        } else if (from == null) {
+            result = new TreeMap<>(minutesByDay.headMap(to, true));
+        } else if (to == null) {
+            result = new TreeMap<>(minutesByDay.tailMap(from, true));
+        } else {
+            result = new TreeMap<>(minutesByDay.subMap(from, true, to, true));
+        }
+        if (series.isEmpty()) {
+            return result;
+        }
+
+        LocalDate last = to != null ? to : minutesByDay.isEmpty() ? null : minutesByDay.lastKey();
+        LocalDateTime windowStart = from != null ? from.atStartOfDay() : null;
+        LocalDateTime windowEnd = last != null ? last.plusDays(1).atStartOfDay() : null;
+        for (RecurringTask recurring : series.values()) {
+            for (Task occurrence : recurring.occurrencesBetween(windowStart, windowEnd)) {
+                LocalDateTime start = occurrence.getStartTime();
+                LocalDateTime end = occurrence.getEndTime() != null ? occurrence.getEndTime() : start;
+                apply(result, start, end, 1);
+            }
+        }
+        // Вхождения на стыке могут захватить соседние дни
+        if (from != null) {
+            result.headMap(from).clear();
+        }
+        if (to != null) {
+            result.tailMap(to, false).clear();
+        }
+        return result;
+    }
+
+    private void apply(LocalDateTime start, LocalDateTime end, int sign) {
+        apply(minutesByDay, start, end, sign);
+    }
+
+    private static void apply(TreeMap<LocalDate, Long> target, LocalDateTime start, LocalDateTime end, int sign) {
+        for (LocalDate day = start.toLocalDate(); !day.isAfter(end.toLocalDate()); day = day.plusDays(1)) {
+            LocalDateTime dayStart = day.atStartOfDay();
+            LocalDateTime dayEnd = day.plusDays(1).atStartOfDay();
+            LocalDateTime from = start.isAfter(dayStart) ? start : dayStart;
+            LocalDateTime to = end.isBefore(dayEnd) ? end : dayEnd;
+            long minutes = Duration.between(from, to).toMinutes();
+            if (minutes > 0) {
+                target.merge(day, sign * minutes, (a, b) -> a + b == 0 ? null : a + b);
+            }
+        }
+    }
+}
@@ -0,0 +1,288 @@
+package ru.practicum.task_tracker.service;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.TreeMap;
+
+// Граф зависимостей подзадач "B заблокирована A" (ребро A -> B).
+// Топологический порядок поддерживается инкрементально (алгоритм Пирса - Келли):
+// при добавлении ребра переупорядочивается только участок между его концами.
+// Для каждой вершины хранится самое раннее окончание (длина самого длинного пути),
+// изменения распространяются только по затронутым потомкам в топологическом порядке.
+public class DependencyGraph {
+
+    private static class Node {
+        private final int id;
+        private int epicId;
+        private long duration;
+        // Самое раннее окончание в минутах от начала работ
+        private long finish;
+        private int order;
+        private final Set<Node> blockers = new LinkedHashSet<>();
+        private final Set<Node> blocked = new LinkedHashSet<>();
+
+        private Node(int id, int epicId, long duration, int order) {
+            this.id = id;
+            this.epicId = epicId;
+            this.duration = duration;
+            this.order = order;
+        }
+    }
+
+    private static final Comparator<Node> TOPOLOGICAL = Comparator.comparingInt(node -> node.order);
+
+    private final HashMap<Integer, Node> nodes = new HashMap<>();
+    // Подзадачи каждого эпика по окончанию: максимум - окончание эпика
+    private final HashMap<Integer, TreeMap<Long, Set<Node>>> finishesByEpic = new HashMap<>();
+    private int nextOrder;
+
+    public void addNode(int id, int epicId, long duration) {
+        if (nodes.containsKey(id)) {
+            updateNode(id, epicId, duration);
+            return;
+        }
+        Node node = new Node(id, epicId, duration, nextOrder++);
+        node.finish = duration;
+        nodes.put(id, node);
+        addFinish(node);
+    }
+
+    public void updateNode(int id, int epicId, long duration) {
+        Node node = nodes.get(id);
+        if (node == null) {
+            addNode(id, epicId, duration);
+            return;
+        }
+        if (node.epicId != epicId) {
+            removeFinish(node);
+            node.epicId = epicId;
+            addFinish(node);
+        }
+        if (node.duration != duration) {
+            node.duration = duration;
+            propagate(node);
+        }
+    }
+
+    public void removeNode(int id) {
+        Node node = nodes.remove(id);
+        if (node == null) {
+            return;
+        }
+        removeFinish(node);
+        for (Node blocker : node.blockers) {
+            blocker.blocked.remove(node);
+        }
+        List<Node> successors = new ArrayList<>(node.blocked);
+        for (Node successor : successors) {
+            successor.blockers.remove(node);
+        }
+        propagate(successors);
+    }
+
+    public void clear() {
+        nodes.clear();
+        finishesByEpic.clear();
+        nextOrder = 0;
+    }
+
+    // Добавляет ребро blocker -> blocked; возвращает false, если ребро замкнуло бы цикл
+    public boolean addEdge(int blockerId, int blockedId) {
+        Node from = nodes.get(blockerId);
+        Node to = nodes.get(blockedId);
+        if (from == null || to == null) {
+            throw new IllegalArgumentException("Подзадача не найдена");
+        }
+        if (from == to) {
+            return false;
+        }
+        if (from.blocked.contains(to)) {
+            return true;
+        }
+
+        if (to.order < from.order) {
+            // Вершины из to вперед и из from назад, лежащие между ними в текущем порядке
+            List<Node> forward = new ArrayList<>();
+            if (!collect(to, from.order, true, forward, from)) {
+                return false;
+            }
+            List<Node> backward = new ArrayList<>();
+            collect(from, to.order, false, backward, null);
+            reorder(backward, forward);
+        }
+
+        from.blocked.add(to);
+        to.blockers.add(from);
+        propagate(to);
+        return true;
+    }
+
+    public void removeEdge(int blockerId, int blockedId) {
+        Node from = nodes.get(blockerId);
+        Node to = nodes.get(blockedId);
+        if (from == null || to == null || !from.blocked.remove(to)) {
+            return;
+        }
+        to.blockers.remove(from);
+        propagate(to);
+    }
+
+    public List<Integer> getBlockers(int id) {
+        List<Integer> result = new ArrayList<>();
+        Node node = nodes.get(id);
+        if (node != null) {
+            node.blockers.forEach(blocker -> result.add(blocker.id));
+        }
+        return result;
+    }
+
+    public List<Integer> getBlocked(int id) {
+        List<Integer> result = new ArrayList<>();
+        Node node = nodes.get(id);
+        if (node != null) {
+            node.blocked.forEach(blocked -> result.add(blocked.id));
+        }
+        return result;
+    }
+
+    // Самое раннее окончание подзадачи в минутах от начала работ
+    public long getFinish(int id) {
+        Node node = nodes.get(id);
+        return node == null ? 0 : node.finish;
+    }
+
+    // Самое раннее окончание эпика: максимум по его подзадачам, O(log k)
+    public long getEpicFinish(int epicId) {
+        TreeMap<Long, Set<Node>> finishes = finishesByEpic.get(epicId);
+        return finishes == null ? 0 : finishes.lastKey();
+    }
+
+    // Критический путь эпика: от подзадачи с самым поздним окончанием назад
+    // по блокирующим подзадачам, определяющим ее начало
+    public List<Integer> getCriticalPath(int epicId) {
+        TreeMap<Long, Set<Node>> finishes = finishesByEpic.get(epicId);
+        if (finishes == null) {
+            return new ArrayList<>();
+        }
+        Node current = finishes.lastEntry().getValue().iterator().next();
+
+        Deque<Integer> path = new ArrayDeque<>();
+        while (current != null) {
+            path.addFirst(current.id);
+            long start = current.finish - current.duration;
+            Node previous = null;
+            for (Node blocker : current.blockers) {
+                if (blocker.finish == start) {
+                    previous = blocker;
+                    break;
+                }
+            }
+            current = previous;
+        }
+        return new ArrayList<>(path);
+    }
+
+    // Обход вершин с порядком строго внутри границы; при обходе вперед встреча
+    // с target означает цикл
+    private boolean collect(Node start, int bound, boolean forward, List<Node> visited, Node target) {
+        Deque<Node> stack = new ArrayDeque<>();
+        Set<Node> seen = new HashSet<>();
+        stack.push(start);
+        seen.add(start);
+        while (!stack.isEmpty()) {
+            Node node = stack.pop();
+            visited.add(node);
+            for (Node next : forward ? node.blocked : node.blockers) {
+                if (next == target) {
+                    return false;
+                }
+                boolean inside = forward ? next.order < bound : next.order > bound;
+                if (inside && seen.add(next)) {
+                    stack.push(next);
+                }
+            }
+        }
+        return true;
+    }
+
+    // Затронутые вершины занимают те же позиции: сначала предки from, затем потомки to
+    private void reorder(List<Node> backward, List<Node> forward) {
+        backward.sort(TOPOLOGICAL);
+        forward.sort(TOPOLOGICAL);
+        List<Integer> positions = new ArrayList<>();
+        backward.forEach(node -> positions.add(node.order));
+        forward.forEach(node -> positions.add(node.order));
+        positions.sort(null);
+
+        int i = 0;
+        for (Node node : backward) {
+            node.order = positions.get(i++);
+        }
+        for (Node node : forward) {
+            node.order = positions.get(i++);
+        }
+    }
+
+    private void propagate(Node start) {
+        List<Node> starts = new ArrayList<>();
+        starts.add(start);
+        propagate(starts);
+    }
+
+    // Пересчет окончаний в топологическом порядке: каждая затронутая вершина
+    // пересчитывается один раз, после всех своих блокирующих
+    private void propagate(List<Node> starts) {
+        PriorityQueue<Node> queue = new PriorityQueue<>(TOPOLOGICAL);
+        Set<Node> queued = new HashSet<>();
+        for (Node start : starts) {
+            if (queued.add(start)) {
+                queue.add(start);
+            }
+        }
+        while (!queue.isEmpty()) {
+            Node node = queue.poll();
+            long start = 0;
+            for (Node blocker : node.blockers) {
+                start = Math.max(start, blocker.finish);
+            }
+            long finish = start + node.duration;
+            if (finish == node.finish) {
+                continue;
+            }
+            removeFinish(node);
+            node.finish = finish;
+            addFinish(node);
+            for (Node next : node.blocked) {
+                if (queued.add(next)) {
+                    queue.add(next);
+                }
+            }
+        }
+    }
+
+    private void addFinish(Node node) {
+        finishesByEpic.computeIfAbsent(node.epicId, epicId -> new TreeMap<>())
+                .computeIfAbsent(node.finish, finish -> new LinkedHashSet<>())
+                .add(node);
+    }
+
+    private void removeFinish(Node node) {
+        TreeMap<Long, Set<Node>> finishes = finishesByEpic.get(node.epicId);
+        Set<Node> sameFinish = finishes.get(node.finish);
+        sameFinish.remove(node);
+        if (sameFinish.isEmpty()) {
+            finishes.remove(node.finish);
+        }
+        if (finishes.isEmpty()) {
+            finishesByEpic.remove(node.epicId);
+        }
+    }
+}
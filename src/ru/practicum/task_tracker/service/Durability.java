@@ -0,0 +1,11 @@
+package ru.practicum.task_tracker.service;
+
+// Когда изменение в журнале считается сохраненным
+public enum Durability {
+    // Каждая группа записей сбрасывается на диск (fsync) до ответа вызывающему
+    EVERY_OP,
+    // Записи сбрасываются на диск фоновым потоком раз в заданный интервал
+    INTERVAL,
+    // Записи передаются операционной системе без fsync
+    OS_BUFFERED
+}
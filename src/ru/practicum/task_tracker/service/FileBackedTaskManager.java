@@ -5,74 +5,357 @@ import ru.practicum.task_tracker.exceptions.ManagerSaveException;
 import ru.practicum.task_tracker.model.*;
 
 import java.io.*;
-import java.time.Duration;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
 import java.time.LocalDateTime;
-
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.Future;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+// Менеджер задач, сохраняющий состояние в файл (или каталог шардов) после каждого изменения.
+// В режиме сжатия без журнала изменение возвращается до того, как его снимок записан на диск:
+// снимок сжимается и пишется в фоне, а дождаться записи можно через close()
 public class FileBackedTaskManager extends InMemoryTaskManager {
     private final File file;
-    private static final String HEADER = "id,type,name,status,description,epicId,startTime,duration\n";
+    private static final String HEADER = "id,type,name,status,description,epicId,startTime,duration,assignee,everyDays,until,blockedBy\n";
+    // Операции журнала: запись строки задачи, удаление по id, удаление всех задач типа
+    private static final char PUT = '+';
+    private static final char REMOVE = '-';
+    private static final char CLEAR = '*';
+    // Операция без журнала: файл перезаписывается целиком, а в каталоге - затронутые шарды,
+    // поэтому строку операции не кодируем
+    private static final String NOT_JOURNALED = "";
+
+    private final StorageOptions options;
+    private final CsvTaskCodec rowCodec = new CsvTaskCodec();
+    // В режиме журнала: текущий журнал; null до первого изменения или загрузки
+    private TaskJournal journal;
+    private ExecutorService compactor;
+    private Future<?> compaction;
+    // В режиме каталога: шард каждой задачи (0 - файл задач, иначе id эпика) и шарды,
+    // которые перезапишет следующее сохранение. shardsWritten - каталог уже отражает менеджер
+    private final HashMap<Integer, Integer> shardOf = new HashMap<>();
+    private final Set<Integer> touchedShards = new HashSet<>();
+    private boolean shardsWritten;
+    // Со сжатием: статистика и фоновый поток, создается при первой записи
+    private final CompressionStats compressionStats = new CompressionStats();
+    private SnapshotCompressor compressor;
 
     public FileBackedTaskManager(HistoryManager historyManager, File file) {
+        this(historyManager, file, new StorageOptions());
+    }
+
+    public FileBackedTaskManager(HistoryManager historyManager, File file, StorageOptions options) {
         super(historyManager);
+        if (options.isSharded() && options.isJournal()) {
+            throw new IllegalArgumentException("Хранение в каталоге не совмещается с журналом");
+        }
         this.file = file;
+        this.options = options;
     }
 
-    // Сохраняет состояние менеджера задач в файл
+    // Сохраняет состояние менеджера задач в файл. Сжатый снимок только ставится в очередь:
+    // поток сжатия сам кодирует текущее состояние и сжимает его. В режиме журнала снимок пишется
+    // сразу: его читает фоновое сжатие журнала, и запись не должна его обогнать
     private void save() {
-        try (PrintWriter writer = new PrintWriter(new FileWriter(file))) {
-            writer.write(HEADER);
-            for (Task task : getAllTasks()) {
-                writer.write(toString(task) + "\n");
+        try {
+            if (!options.isCompressed()) {
+                writeSnapshot(file, options.getFormat(), allRows(), dependencies::getBlockers);
+            } else if (options.isJournal()) {
+                SnapshotCompressor.write(file, this::writeCurrentSnapshot, compressionStats);
+            } else {
+                compressor().submit(file, this::writeCurrentSnapshot);
+            }
+        } catch (IOException e) {
+            throw new ManagerSaveException("Не удалось сохранить данные в файл", e);
+        }
+    }
+
+    private List<Task> allRows() {
+        List<Task> all = new ArrayList<>(tasks.size() + epics.size() + subtasks.size());
+        all.addAll(tasks.values());
+        all.addAll(epics.values());
+        all.addAll(subtasks.values());
+        return all;
+    }
+
+    // Вызывается из потока сжатия. Под блокировкой менеджера снимок только кодируется в память,
+    // сжатие и запись на диск идут уже без нее и не задерживают запросы
+    private void writeCurrentSnapshot(OutputStream out) throws IOException {
+        out.write(encodeCurrent(this::allRows));
+    }
+
+    private byte[] encodeCurrent(Supplier<List<Task>> rows) throws IOException {
+        ByteArrayOutputStream raw = new ByteArrayOutputStream();
+        synchronized (this) {
+            writeSnapshot(raw, options.getFormat(), rows.get(), dependencies::getBlockers);
+        }
+        return raw.toByteArray();
+    }
+
+    private SnapshotCompressor compressor() {
+        if (compressor == null) {
+            compressor = new SnapshotCompressor(compressionStats);
+        }
+        return compressor;
+    }
+
+    // Объем снимков до и после сжатия и время, затраченное на сжатие
+    public CompressionStats getCompressionStats() {
+        return compressionStats;
+    }
+
+    private static void writeSnapshot(File file, SnapshotFormat format, Collection<Task> tasks,
+                                      Function<Integer, List<Integer>> blockers) throws IOException {
+        if (format == SnapshotFormat.BINARY) {
+            BinarySnapshotCodec.write(file, tasks, tasks.size(), blockers);
+            return;
+        }
+        try (OutputStream out = new FileOutputStream(file)) {
+            writeSnapshot(out, format, tasks, blockers);
+        }
+    }
+
+    private static void writeSnapshot(OutputStream out, SnapshotFormat format, Collection<Task> tasks,
+                                      Function<Integer, List<Integer>> blockers) throws IOException {
+        if (format == SnapshotFormat.BINARY) {
+            BinarySnapshotCodec.write(Channels.newChannel(out), tasks, tasks.size(), blockers);
+            return;
+        }
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+        writer.write(HEADER);
+        CsvTaskCodec codec = new CsvTaskCodec();
+        for (Task task : tasks) {
+            codec.encode(task, task instanceof Subtask ? blockers.apply(task.getId()) : List.of());
+            codec.writeTo(writer);
+            writer.write('\n');
+        }
+        writer.flush();
+    }
+
+    // Формат снимка определяется по первым байтам файла. CSV делится на фрагменты по границам
+    // строк, фрагменты разбираются параллельно в общем fork-join пуле и сливаются в порядке файла,
+    // поэтому повторяющиеся id разрешаются так же, как при последовательном чтении
+    private static void readSnapshot(File file, Snapshot snapshot, int chunkSize) throws IOException {
+        if (SnapshotCompressor.isCompressed(file)) {
+            readCompressed(file, snapshot, chunkSize);
+            return;
+        }
+        if (BinarySnapshotCodec.isBinary(file)) {
+            BinarySnapshotCodec.read(file, snapshot);
+            return;
+        }
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            List<long[]> chunks = splitChunks(channel, chunkSize);
+            List<Chunk> parsed;
+            try {
+                parsed = chunks.parallelStream().map(bounds -> parseChunk(channel, bounds)).toList();
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
             }
+            merge(parsed, snapshot);
+        }
+    }
 
-            for (Task epic : getAllEpics()) {
-                writer.write(toString(epic) + "\n");
+    // Сжатый файл читается потоком: распакованный текст режется на блоки по границам записей,
+    // и блоки разбираются в пуле, пока этот поток распаковывает следующие
+    private static void readCompressed(File file, Snapshot snapshot, int chunkSize) throws IOException {
+        try (InputStream in = SnapshotCompressor.open(file)) {
+            in.mark(Integer.BYTES);
+            DataInputStream header = new DataInputStream(in);
+            boolean binary;
+            try {
+                binary = header.readInt() == BinarySnapshotCodec.MAGIC;
+            } catch (EOFException e) {
+                binary = false;
+            }
+            in.reset();
+            if (binary) {
+                BinarySnapshotCodec.read(Channels.newChannel(in), snapshot);
+                return;
+            }
+
+            BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+            reader.readLine();
+            List<ForkJoinTask<Chunk>> parsed = new ArrayList<>();
+            StringBuilder pending = new StringBuilder();
+            char[] buffer = new char[8192];
+            boolean quoted = false;
+            // Конец последней целой записи в pending
+            int boundary = 0;
+            int read;
+            while ((read = reader.read(buffer)) >= 0) {
+                int from = pending.length();
+                pending.append(buffer, 0, read);
+                for (int i = from; i < pending.length(); i++) {
+                    char c = pending.charAt(i);
+                    if (c == '"') {
+                        quoted = !quoted;
+                    } else if (c == '\n' && !quoted) {
+                        boundary = i + 1;
+                    }
+                }
+                if (boundary >= chunkSize) {
+                    String text = pending.substring(0, boundary);
+                    pending.delete(0, boundary);
+                    boundary = 0;
+                    parsed.add(ForkJoinPool.commonPool().submit(() -> parseText(text)));
+                }
             }
+            if (pending.length() > 0) {
+                String text = pending.toString();
+                parsed.add(ForkJoinPool.commonPool().submit(() -> parseText(text)));
+            }
+            merge(parsed.stream().map(ForkJoinTask::join).toList(), snapshot);
+        }
+    }
 
-            for (Task subtask : getAllSubtasks()) {
-                writer.write(toString(subtask) + "\n");
+    private static void merge(List<Chunk> parsed, Snapshot snapshot) {
+        for (Chunk chunk : parsed) {
+            snapshot.putAll(chunk.rows);
+            if (chunk.ended) {
+                break;
             }
+        }
+    }
+
+    // Разобранный фрагмент CSV. ended - во фрагменте встретилась пустая строка,
+    // на которой чтение снимка заканчивается
+    private static class Chunk {
+        private final Snapshot rows = new Snapshot();
+        private boolean ended;
+    }
 
+    // Делит файл после заголовка на фрагменты примерно по chunkSize байт. Граница ставится
+    // только на перевод строки вне кавычек: поле в кавычках может содержать перевод строки.
+    // Для этого байты один раз просматриваются подряд - без разбора это много дешевле
+    // самого разбора. Удвоенная кавычка внутри поля дважды меняет признак и его не сбивает
+    private static List<long[]> splitChunks(FileChannel channel, int chunkSize) throws IOException {
+        List<long[]> chunks = new ArrayList<>();
+        ByteBuffer buffer = ByteBuffer.allocate(1 << 16);
+        byte[] bytes = buffer.array();
+        long size = channel.size();
+        long position = 0;
+        // Начало текущего фрагмента; -1, пока не пройден заголовок
+        long start = -1;
+        boolean quoted = false;
+        while (position < size) {
+            buffer.clear();
+            int read = channel.read(buffer, position);
+            if (read < 0) {
+                break;
+            }
+            for (int i = 0; i < read; i++) {
+                if (bytes[i] == '"') {
+                    quoted = !quoted;
+                } else if (bytes[i] == '\n' && !quoted) {
+                    long end = position + i + 1;
+                    if (start < 0) {
+                        start = end;
+                    } else if (end - start >= chunkSize) {
+                        chunks.add(new long[]{start, end});
+                        start = end;
+                    }
+                }
+            }
+            position += read;
+        }
+        if (start >= 0 && start < size) {
+            chunks.add(new long[]{start, size});
+        }
+        return chunks;
+    }
+
+    // Фрагменты читаются позиционно, поэтому один канал разделяют все потоки пула
+    private static Chunk parseChunk(FileChannel channel, long[] bounds) {
+        try {
+            ByteBuffer buffer = ByteBuffer.allocate((int) (bounds[1] - bounds[0]));
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer, bounds[0] + buffer.position()) < 0) {
+                    throw new EOFException("Файл изменился во время чтения");
+                }
+            }
+            return parseText(new String(buffer.array(), StandardCharsets.UTF_8));
         } catch (IOException e) {
-            throw new ManagerSaveException("Не удалось сохранить данные в файл");
+            throw new UncheckedIOException(e);
         }
     }
 
-    private String toString(Task task) {
-        String[] fields = {
-                String.valueOf(task.getId()),
-                String.valueOf(task.getType()),
-                task.getName(),
-                task.getStatus().toString(),
-                task.getDescription(),
-                task.getType() == TaskType.SUBTASK ? String.valueOf(((Subtask) task).getEpicId()) : "",
-                task.getDuration() != null ? String.valueOf(task.getDuration().toMinutes()) : "0",
-                task.getStartTime() != null ? task.getStartTime().toString() : "",
-        };
-        return String.join(",", fields);
+    private static Chunk parseText(String text) {
+        Chunk chunk = new Chunk();
+        CsvTaskCodec codec = new CsvTaskCodec();
+        codec.read(text, 0);
+        while (codec.nextRecord()) {
+            putRow(chunk.rows, codec);
+        }
+        chunk.ended = codec.isBlankLine();
+        return chunk;
+    }
+
+    private static void putRow(Snapshot snapshot, CsvTaskCodec codec) {
+        Task task = codec.decodeTask();
+        if (task != null) {
+            snapshot.put(task, task instanceof Subtask ? codec.decodeBlockers() : List.of());
+        }
     }
 
     // Восстановление менеджера из файла
     public static FileBackedTaskManager loadFromFile(File file) {
-        FileBackedTaskManager fileManager = new FileBackedTaskManager(Managers.getDefaultHistory(), file);
+        return loadFromFile(file, new StorageOptions());
+    }
+
+    // В режиме журнала загружается снимок и поверх него проигрывается журнал
+    public static FileBackedTaskManager loadFromFile(File file, StorageOptions options) {
+        FileBackedTaskManager fileManager = new FileBackedTaskManager(Managers.getDefaultHistory(), file, options);
         fileManager.load();
         return fileManager;
     }
 
     // Загружает состояние менеджера задач из файла
     private void load() {
-        try (BufferedReader reader = new BufferedReader(new FileReader(file))) {
-            reader.readLine();
-            String line;
-            while ((line = reader.readLine()) != null && !line.isEmpty()) {
-
-                Task task = fromString(line);
-
-                if (task != null) {
-                    restoreTask(task);
+        try {
+            if (options.isSharded()) {
+                loadShards();
+                return;
+            }
+            Snapshot snapshot = new Snapshot();
+            if (!options.isJournal() || file.exists()) {
+                if (!file.exists()) {
+                    throw new FileNotFoundException(file.getPath());
                 }
+                readSnapshot(file, snapshot, options.getLoadChunkSize());
             }
-            recalculateAllEpicsTime();
+            if (options.isJournal()) {
+                // Сегмент, не успевший свернуться в снимок, проигрывается перед текущим журналом
+                File segment = segmentFile(file);
+                replay(TaskJournal.read(segment), snapshot);
+                List<List<String>> tail = TaskJournal.read(journalFile(file));
+                replay(tail, snapshot);
+                journal = openJournal(tail.size());
+                if (segment.exists()) {
+                    startCompaction();
+                }
+            }
+            restore(snapshot);
         } catch (FileNotFoundException e) {
             throw new ManagerLoadException("Ошибка! Файл не найден!", e);
         } catch (IOException e) {
@@ -80,151 +363,572 @@ public class FileBackedTaskManager extends InMemoryTaskManager {
         }
     }
 
-    private void restoreTask(Task task) {
-        if (task instanceof Epic) {
-            epics.put(task.getId(), (Epic) task);
-        } else if (task instanceof Subtask) {
-            subtasks.put(task.getId(), (Subtask) task);
-            // Восстанавливаем связь с эпиком
-            Epic epic = epics.get(((Subtask) task).getEpicId());
-            if (epic != null) {
-                epic.addSubtask((Subtask) task);
+    // Фиксирует изменение под блокировкой менеджера: в режиме журнала ставит запись
+    // в очередь и возвращает ее номер, иначе перезаписывает файл и возвращает 0
+    private long commit(List<String> operations) {
+        if (options.isSharded()) {
+            saveShards();
+            return 0;
+        }
+        if (!options.isJournal()) {
+            save();
+            return 0;
+        }
+        long sequence;
+        try {
+            if (journal == null) {
+                openJournal();
             }
-            addToPrioritized(task);
-        } else {
-            tasks.put(task.getId(), task);
-            addToPrioritized(task);
+            sequence = journal.enqueue(operations);
+        } catch (IOException e) {
+            throw new ManagerSaveException("Не удалось записать изменение в журнал", e);
+        }
+        if (journal.records() >= options.getCompactionThreshold()) {
+            startCompaction();
+        }
+        return sequence;
+    }
+
+    // Ждет сохранения записи уже без блокировки менеджера: пока ведущий группы пишет
+    // на диск, другие потоки успевают выполнить свои изменения и попасть в следующую группу
+    private void awaitDurable(long sequence) {
+        if (sequence == 0) {
+            return;
+        }
+        try {
+            journal.awaitDurable(sequence);
+        } catch (IOException e) {
+            throw new ManagerSaveException("Не удалось записать изменение в журнал", e);
+        }
+    }
+
+    // Новый менеджер без загрузки начинает с пустого снимка, как и при обычном сохранении
+    private void openJournal() throws IOException {
+        Files.deleteIfExists(segmentFile(file).toPath());
+        Files.deleteIfExists(journalFile(file).toPath());
+        save();
+        journal = openJournal(0);
+    }
+
+    private TaskJournal openJournal(int records) throws IOException {
+        return new TaskJournal(journalFile(file), records, options.getDurability(), options.getSyncIntervalMillis());
+    }
+
+    // Вызывается под блокировкой менеджера, поэтому буфер кодека общий
+    private String put(Task task) {
+        if (options.isSharded()) {
+            Integer previous = shardOf.put(task.getId(), shardKey(task));
+            if (previous != null) {
+                touchedShards.add(previous);
+            }
+            touchedShards.add(shardKey(task));
+        }
+        if (!options.isJournal()) {
+            return NOT_JOURNALED;
+        }
+        rowCodec.encode(task, task instanceof Subtask ? getBlockers(task.getId()) : List.of());
+        return PUT + rowCodec.encoded();
+    }
+
+    private String remove(int id) {
+        if (options.isSharded()) {
+            Integer shard = shardOf.remove(id);
+            if (shard != null) {
+                touchedShards.add(shard);
+            }
+        }
+        return options.isJournal() ? REMOVE + String.valueOf(id) : NOT_JOURNALED;
+    }
+
+    private String clear(TaskType type) {
+        if (options.isSharded()) {
+            // Шард задачи - 0, шард эпика - его собственный id, у подзадачи - id эпика
+            shardOf.entrySet().removeIf(entry -> {
+                int id = entry.getKey();
+                int shard = entry.getValue();
+                boolean removed;
+                if (type == TaskType.EPIC) {
+                    removed = shard == id;
+                } else if (type == TaskType.SUBTASK) {
+                    removed = shard != 0 && shard != id;
+                } else {
+                    removed = shard == 0;
+                }
+                if (removed) {
+                    touchedShards.add(shard);
+                }
+                return removed;
+            });
+        }
+        return options.isJournal() ? CLEAR + type.name() : NOT_JOURNALED;
+    }
+
+    private static int shardKey(Task task) {
+        if (task instanceof Subtask) {
+            return ((Subtask) task).getEpicId();
+        }
+        return task instanceof Epic ? task.getId() : 0;
+    }
+
+    // Файл шарда в каталоге хранения
+    static File shardFile(File directory, int shard) {
+        return new File(directory, shard == 0 ? "tasks" : "epic-" + shard);
+    }
+
+    private static boolean isShardFile(String name) {
+        return name.equals("tasks") || name.matches("epic-\\d+");
+    }
+
+    // Шарды читаются параллельно и сливаются в порядке: задачи, затем эпики по id
+    private void loadShards() throws IOException {
+        File[] files = file.listFiles((directory, name) -> isShardFile(name));
+        if (files == null) {
+            throw new FileNotFoundException(file.getPath());
+        }
+        Arrays.sort(files, Comparator.comparingInt(shard -> shard.getName().equals("tasks")
+                ? 0 : Integer.parseInt(shard.getName().substring("epic-".length()))));
+        List<Snapshot> shards;
+        try {
+            shards = Arrays.stream(files).parallel().map(shard -> {
+                Snapshot snapshot = new Snapshot();
+                try {
+                    readSnapshot(shard, snapshot, options.getLoadChunkSize());
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                return snapshot;
+            }).toList();
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        Snapshot snapshot = new Snapshot();
+        shards.forEach(snapshot::putAll);
+        restore(snapshot);
+        for (Task task : snapshot.getTasks()) {
+            shardOf.put(task.getId(), shardKey(task));
+        }
+        shardsWritten = true;
+    }
+
+    // Перезаписывает затронутые шарды параллельно; шард удаленного эпика удаляется.
+    // Первое сохранение нового менеджера пишет все шарды и убирает чужие файлы каталога
+    private void saveShards() {
+        // Агрегаты вложенных эпиков пересчитываются здесь, чтобы потоки записи их только читали
+        flushEpics();
+        Set<Integer> shards = new HashSet<>(touchedShards);
+        touchedShards.clear();
+        try {
+            if (!shardsWritten) {
+                Files.createDirectories(file.toPath());
+                shards.add(0);
+                shards.addAll(epics.keySet());
+            }
+            shards.parallelStream().forEach(this::writeShard);
+            if (!shardsWritten) {
+                File[] files = file.listFiles((directory, name) -> isShardFile(name));
+                for (File stale : files != null ? files : new File[0]) {
+                    if (!stale.getName().equals("tasks")
+                            && !epics.containsKey(Integer.parseInt(stale.getName().substring("epic-".length())))) {
+                        Files.delete(stale.toPath());
+                    }
+                }
+                shardsWritten = true;
+            }
+        } catch (IOException e) {
+            throw new ManagerSaveException("Не удалось сохранить данные в каталог", e);
+        } catch (UncheckedIOException e) {
+            throw new ManagerSaveException("Не удалось сохранить данные в каталог", e.getCause());
+        }
+    }
+
+    // Шард пишется во временный файл и атомарно подменяет прежний
+    private void writeShard(int shard) {
+        File target = shardFile(file, shard);
+        try {
+            if (shard != 0 && !epics.containsKey(shard)) {
+                if (options.isCompressed()) {
+                    compressor().delete(target);
+                } else {
+                    Files.deleteIfExists(target.toPath());
+                }
+                return;
+            }
+            if (options.isCompressed()) {
+                compressor().submit(target, out -> writeCurrentShard(shard, out));
+                return;
+            }
+            List<Task> rows = shardRows(shard);
+            File temp = new File(target.getPath() + ".tmp");
+            writeSnapshot(temp, options.getFormat(), rows, dependencies::getBlockers);
+            Files.move(temp.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // Строки шарда: обычные задачи или эпик со своими подзадачами. Удаленный эпик дает пустой
+    // шард, а удаление файла уже стоит в очереди следом
+    private List<Task> shardRows(int shard) {
+        List<Task> rows = new ArrayList<>();
+        if (shard == 0) {
+            rows.addAll(tasks.values());
+        } else if (epics.containsKey(shard)) {
+            Epic epic = epics.get(shard);
+            rows.add(epic);
+            rows.addAll(epic.getSubtasksList());
+        }
+        return rows;
+    }
+
+    private void writeCurrentShard(int shard, OutputStream out) throws IOException {
+        out.write(encodeCurrent(() -> shardRows(shard)));
+    }
+
+    // Текущий журнал переименовывается в сегмент и сворачивается со снимком в фоновом потоке.
+    // Поток работает только с файлами, поэтому менеджер продолжает писать в новый журнал
+    private void startCompaction() {
+        if (compaction != null && !compaction.isDone()) {
+            return;
+        }
+        File segment = segmentFile(file);
+        try {
+            if (!segment.exists()) {
+                if (journal.records() == 0) {
+                    return;
+                }
+                journal.rotate(segment);
+            }
+        } catch (IOException e) {
+            throw new ManagerSaveException("Не удалось начать сжатие журнала", e);
+        }
+        if (compactor == null) {
+            compactor = Executors.newSingleThreadExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "journal-compactor");
+                thread.setDaemon(true);
+                return thread;
+            });
         }
+        compaction = compactor.submit(() -> {
+            fold(file, segment, options, compressionStats);
+            return null;
+        });
+    }
+
+    // Сворачивает журнал в снимок и дожидается окончания
+    public synchronized void compact() {
+        if (!options.isJournal() || journal == null) {
+            return;
+        }
+        awaitCompaction();
+        startCompaction();
+        awaitCompaction();
+    }
 
-        // Обновляем счетчик ID
-        if (task.getId() >= idCounter) {
-            idCounter = task.getId() + 1;
+    // Дожидается фонового сжатия журнала и записи сжатых снимков, затем закрывает журнал.
+    // Очередь снимков ждется без блокировки менеджера: поток сжатия сам берет ее на время записи
+    public void close() {
+        SnapshotCompressor pending;
+        synchronized (this) {
+            awaitCompaction();
+            if (compactor != null) {
+                compactor.shutdown();
+            }
+            pending = compressor;
+        }
+        try {
+            if (pending != null) {
+                pending.flush();
+            }
+        } catch (IOException e) {
+            throw new ManagerSaveException("Не удалось записать сжатый снимок", e);
+        }
+        synchronized (this) {
+            try {
+                if (journal != null) {
+                    journal.close();
+                }
+            } catch (IOException e) {
+                throw new ManagerSaveException("Не удалось закрыть журнал", e);
+            }
         }
     }
 
-    // Восстановление задачи из строки
-    private Task fromString(String val) {
-        String[] fields = val.split(",", -1);
-        if (fields.length < 5) return null;
+    private void awaitCompaction() {
+        if (compaction == null) {
+            return;
+        }
+        try {
+            compaction.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            throw new ManagerSaveException("Не удалось сжать журнал: " + e.getCause().getMessage());
+        }
+    }
 
-        int id = Integer.parseInt(fields[0]);
-        TaskType type = TaskType.valueOf(fields[1]);
-        String name = fields[2];
-        Status status = Status.valueOf(fields[3]);
-        String description = fields[4];
-        Duration duration = null;
-        if (fields.length > 6 && !fields[6].isEmpty()) {
-            duration = Duration.ofMinutes(Long.parseLong(fields[6]));
+    // Новый снимок = старый снимок + сегмент журнала. Снимок заменяется атомарно,
+    // затем сегмент удаляется. При сбое между этими шагами сегмент проиграется повторно:
+    // операции журнала задают итоговое значение строки, поэтому повтор ничего не меняет
+    private static void fold(File file, File segment, StorageOptions options, CompressionStats stats)
+            throws IOException {
+        Snapshot snapshot = new Snapshot();
+        if (file.exists()) {
+            readSnapshot(file, snapshot, options.getLoadChunkSize());
         }
+        replay(TaskJournal.read(segment), snapshot);
 
-        LocalDateTime startTime = null;
-        if (fields.length > 7 && !fields[7].isEmpty()) {
-            startTime = LocalDateTime.parse(fields[7]);
+        if (options.isCompressed()) {
+            SnapshotCompressor.write(file, out -> writeSnapshot(out, options.getFormat(), snapshot.getTasks(),
+                    snapshot::getBlockers), stats);
+        } else {
+            File temp = new File(file.getPath() + ".tmp");
+            writeSnapshot(temp, options.getFormat(), snapshot.getTasks(), snapshot::getBlockers);
+            Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
         }
+        Files.delete(segment.toPath());
+    }
 
-        switch (type) {
-            case TASK:
-                Task task = new Task(name, description);
-                task.setId(id);
-                task.setStatus(status);
-                if (duration != null) task.setDuration(duration);
-                if (startTime != null) task.setStartTime(startTime);
-                return task;
-            case EPIC:
-                Epic epic = new Epic(name, description);
-                epic.setId(id);
-                epic.setStatus(status);
-                return epic;
-            case SUBTASK:
-                if (fields.length < 6 || fields[5].isEmpty()) return null;
-                int epicId = Integer.parseInt(fields[5]);
-                Subtask subtask = new Subtask(name, description, epicId);
-                subtask.setId(id);
-                subtask.setStatus(status);
-                if (duration != null) subtask.setDuration(duration);
-                if (startTime != null) subtask.setStartTime(startTime);
-                return subtask;
-            default:
-                throw new ManagerSaveException("Неизвестный тип объекта" + type);
+    private static void replay(List<List<String>> records, Snapshot snapshot) {
+        CsvTaskCodec codec = new CsvTaskCodec();
+        for (List<String> record : records) {
+            for (String operation : record) {
+                switch (operation.charAt(0)) {
+                    case PUT:
+                        codec.read(operation, 1);
+                        if (codec.nextRecord()) {
+                            putRow(snapshot, codec);
+                        }
+                        break;
+                    case REMOVE:
+                        snapshot.remove(Integer.parseInt(operation.substring(1)));
+                        break;
+                    case CLEAR:
+                        snapshot.clear(TaskType.valueOf(operation.substring(1)));
+                        break;
+                    default:
+                        throw new ManagerLoadException("Неизвестная операция журнала: " + operation);
+                }
+            }
         }
     }
 
-    private void recalculateAllEpicsTime() {
-        epics.values().forEach(Epic::recalculateEpicTime);
+    static File journalFile(File file) {
+        return new File(file.getPath() + ".journal");
+    }
+
+    static File segmentFile(File file) {
+        return new File(file.getPath() + ".journal.old");
+    }
+
+    private void putSubtasks(List<String> operations, List<Integer> ids) {
+        for (int id : ids) {
+            Subtask subtask = subtasks.get(id);
+            if (subtask != null) {
+                operations.add(put(subtask));
+            }
+        }
     }
 
     @Override
     public int addTask(Task task) {
-        int id = super.addTask(task);
-        save();
+        int id;
+        long sequence;
+        synchronized (this) {
+            id = super.addTask(task);
+            sequence = commit(List.of(put(task)));
+        }
+        awaitDurable(sequence);
         return id;
     }
 
     @Override
     public int addEpic(Epic epic) {
-        int id = super.addEpic(epic);
-        save();
+        int id;
+        long sequence;
+        synchronized (this) {
+            id = super.addEpic(epic);
+            sequence = commit(List.of(put(epic)));
+        }
+        awaitDurable(sequence);
         return id;
     }
 
     @Override
     public int addSubtask(Subtask subtask) {
-        int id = super.addSubtask(subtask);
-        save();
+        int id;
+        long sequence;
+        synchronized (this) {
+            id = super.addSubtask(subtask);
+            sequence = commit(List.of(put(subtask)));
+        }
+        awaitDurable(sequence);
         return id;
     }
 
     @Override
     public void updateTask(Task updatedTask) {
-        super.updateTask(updatedTask);
-        save();
+        long sequence = 0;
+        synchronized (this) {
+            super.updateTask(updatedTask);
+            if (updatedTask != null && tasks.containsKey(updatedTask.getId())) {
+                sequence = commit(List.of(put(tasks.get(updatedTask.getId()))));
+            }
+        }
+        awaitDurable(sequence);
     }
 
     @Override
     public void updateEpic(Epic updatedEpic) {
-        super.updateEpic(updatedEpic);
-        save();
+        long sequence = 0;
+        synchronized (this) {
+            super.updateEpic(updatedEpic);
+            if (epics.containsKey(updatedEpic.getId())) {
+                sequence = commit(List.of(put(epics.get(updatedEpic.getId()))));
+            }
+        }
+        awaitDurable(sequence);
     }
 
     @Override
     public void updateSubtask(Subtask updatedSubtask) {
-        super.updateSubtask(updatedSubtask);
-        save();
+        long sequence = 0;
+        synchronized (this) {
+            super.updateSubtask(updatedSubtask);
+            if (updatedSubtask != null && subtasks.containsKey(updatedSubtask.getId())) {
+                sequence = commit(List.of(put(subtasks.get(updatedSubtask.getId()))));
+            }
+        }
+        awaitDurable(sequence);
     }
 
     @Override
     public void deleteAllTasks() {
-        super.deleteAllTasks();
-        save();
+        long sequence;
+        synchronized (this) {
+            super.deleteAllTasks();
+            sequence = commit(List.of(clear(TaskType.TASK), clear(TaskType.RECURRING)));
+        }
+        awaitDurable(sequence);
     }
 
     @Override
     public void deleteAllEpics() {
-        super.deleteAllEpics();
-        save();
+        long sequence;
+        synchronized (this) {
+            super.deleteAllEpics();
+            sequence = commit(List.of(clear(TaskType.EPIC), clear(TaskType.SUBTASK)));
+        }
+        awaitDurable(sequence);
     }
 
     @Override
     public void deleteAllSubtasks() {
-        super.deleteAllSubtasks();
-        save();
+        long sequence;
+        synchronized (this) {
+            super.deleteAllSubtasks();
+            sequence = commit(List.of(clear(TaskType.SUBTASK)));
+        }
+        awaitDurable(sequence);
     }
 
     @Override
     public void deleteTaskById(int id) {
-        super.deleteTaskById(id);
-        save();
+        long sequence;
+        synchronized (this) {
+            super.deleteTaskById(id);
+            sequence = commit(List.of(remove(id)));
+        }
+        awaitDurable(sequence);
     }
 
     @Override
     public void deleteEpicById(int id) {
-        super.deleteEpicById(id);
-        save();
+        long sequence;
+        synchronized (this) {
+            List<Integer> removedEpics = new ArrayList<>();
+            Set<Integer> removedSubtasks = new HashSet<>();
+            collectSubtree(id, removedEpics, removedSubtasks);
+            List<Integer> dependents = dependents(removedSubtasks);
+
+            super.deleteEpicById(id);
+
+            List<String> operations = new ArrayList<>();
+            removedEpics.forEach(epicId -> operations.add(remove(epicId)));
+            removedSubtasks.forEach(subtaskId -> operations.add(remove(subtaskId)));
+            putSubtasks(operations, dependents);
+            sequence = commit(operations);
+        }
+        awaitDurable(sequence);
     }
 
     @Override
     public void deleteSubtaskById(int id) {
-        super.deleteSubtaskById(id);
-        save();
+        long sequence;
+        synchronized (this) {
+            List<Integer> dependents = dependents(Set.of(id));
+            super.deleteSubtaskById(id);
+
+            List<String> operations = new ArrayList<>();
+            operations.add(remove(id));
+            putSubtasks(operations, dependents);
+            sequence = commit(operations);
+        }
+        awaitDurable(sequence);
+    }
+
+    @Override
+    public void addDependency(int blockerId, int blockedId) {
+        long sequence;
+        synchronized (this) {
+            super.addDependency(blockerId, blockedId);
+            sequence = commit(List.of(put(subtasks.get(blockedId))));
+        }
+        awaitDurable(sequence);
+    }
+
+    @Override
+    public void removeDependency(int blockerId, int blockedId) {
+        long sequence = 0;
+        synchronized (this) {
+            super.removeDependency(blockerId, blockedId);
+            if (subtasks.containsKey(blockedId)) {
+                sequence = commit(List.of(put(subtasks.get(blockedId))));
+            }
+        }
+        awaitDurable(sequence);
+    }
+
+    @Override
+    public List<Task> fireDueTriggers(LocalDateTime now) {
+        List<Task> changed;
+        long sequence = 0;
+        synchronized (this) {
+            changed = super.fireDueTriggers(now);
+            if (!changed.isEmpty()) {
+                List<String> operations = new ArrayList<>();
+                changed.forEach(task -> operations.add(put(task)));
+                sequence = commit(operations);
+            }
+        }
+        awaitDurable(sequence);
+        return changed;
+    }
+
+    @Override
+    public List<Task> scheduleBacklog(LocalDateTime from, LocalDateTime to, LocalTime workStart, LocalTime workEnd) {
+        List<Task> scheduled;
+        long sequence = 0;
+        synchronized (this) {
+            scheduled = super.scheduleBacklog(from, to, workStart, workEnd);
+            if (!scheduled.isEmpty()) {
+                List<String> operations = new ArrayList<>();
+                scheduled.forEach(task -> operations.add(put(task)));
+                sequence = commit(operations);
+            }
+        }
+        awaitDurable(sequence);
+        return scheduled;
     }
 }
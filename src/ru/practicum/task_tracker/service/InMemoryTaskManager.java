@@ -4,24 +4,55 @@ import ru.practicum.task_tracker.exceptions.ManagerValidationException;
 import ru.practicum.task_tracker.model.Status;
 import ru.practicum.task_tracker.model.Task;
 import ru.practicum.task_tracker.model.Epic;
+import ru.practicum.task_tracker.model.RecurringTask;
 import ru.practicum.task_tracker.model.Subtask;
+import ru.practicum.task_tracker.model.TimeConflict;
 
+import java.time.Duration;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.time.LocalTime;
 import java.util.*;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
 
+// Публичные методы синхронизированы на менеджере: HTTP-сервер обслуживает запросы
+// в нескольких потоках
 public class InMemoryTaskManager implements TaskManager {
+    // Наибольший шаг повторяющейся серии, дней
+    private static final int MAX_RECURRENCE_DAYS = 3660;
+
     protected final HashMap<Integer, Task> tasks = new HashMap<>();
     protected final HashMap<Integer, Epic> epics = new HashMap<>();
     protected final HashMap<Integer, Subtask> subtasks = new HashMap<>();
-    protected final TreeSet<Task> prioritizedTasks = new TreeSet<>(Comparator
-            .comparing(Task::getStartTime, Comparator.nullsLast(Comparator.naturalOrder()))
-            .thenComparing(Task::getId)
-    );
+    // Общее расписание доски
+    protected final Timeline prioritizedTasks = new Timeline(null);
+    // Расписания исполнителей: пересечения проверяются только внутри расписания
+    // одного исполнителя; задачи без исполнителя лежат под ключом null
+    protected final HashMap<String, Timeline> assigneeTimelines = new HashMap<>();
+    // Исполнитель, в расписание которого попала задача
+    protected final HashMap<Integer, String> scheduledAssignees = new HashMap<>();
+    protected final Supplier<TimeSlotIndex> indexFactory;
+    protected final DailyLoad dailyLoad = new DailyLoad();
+    // Триггеры начала и окончания запланированных задач
+    protected final TimingWheel triggers = new TimingWheel(LocalDateTime.now());
+    // Зависимости между подзадачами "B заблокирована A"
+    protected final DependencyGraph dependencies = new DependencyGraph();
+
+    // Эпики, помеченные к пересчету в отложенном режиме
+    protected final Set<Integer> dirtyEpics = new HashSet<>();
+    protected boolean lazyEpics;
 
     protected final HistoryManager historyManager;
 
     public InMemoryTaskManager(HistoryManager historyManager) {
+        this(historyManager, TimeIntervalIndex::new);
+    }
+
+    public InMemoryTaskManager(HistoryManager historyManager, Supplier<TimeSlotIndex> indexFactory) {
         this.historyManager = historyManager;
+        this.indexFactory = indexFactory;
     }
 
     protected int idCounter = 1;
@@ -34,20 +65,50 @@ public class InMemoryTaskManager implements TaskManager {
     protected void addToPrioritized(Task task) {
         if (task != null && task.getStartTime() != null) {
             prioritizedTasks.add(task);
+            assigneeTimelines.computeIfAbsent(task.getAssignee(), assignee -> new Timeline(indexFactory.get()))
+                    .add(task);
+            scheduledAssignees.put(task.getId(), task.getAssignee());
+            dailyLoad.add(task);
+            scheduleTriggers(task);
+        }
+    }
+
+    // Серия - одна запись на все вхождения, ее статус триггеры не меняют
+    private void scheduleTriggers(Task task) {
+        if (task instanceof RecurringTask) {
+            return;
+        }
+        if (task.getStatus() == Status.NEW) {
+            triggers.schedule(task.getId(), TimingWheel.Kind.START, task.getStartTime());
+        }
+        if (task.getStatus() != Status.DONE && !task.isOverdue()) {
+            triggers.schedule(task.getId(), TimingWheel.Kind.END, Timeline.endOf(task));
         }
     }
 
     protected void removeFromPrioritized(Task task) {
-        if (task != null && task.getStartTime() != null) {
-            prioritizedTasks.remove(task);
+        if (task == null) {
+            return;
         }
+        prioritizedTasks.remove(task);
+        if (scheduledAssignees.containsKey(task.getId())) {
+            String assignee = scheduledAssignees.remove(task.getId());
+            Timeline timeline = assigneeTimelines.get(assignee);
+            timeline.remove(task);
+            if (timeline.isEmpty()) {
+                assigneeTimelines.remove(assignee);
+            }
+        }
+        dailyLoad.remove(task.getId());
+        triggers.cancel(task.getId());
     }
 
     // Добавление задачи
     @Override
-    public int addTask(Task task) {
+    public synchronized int addTask(Task task) {
         if (task == null) return -1;
 
+        checkRecurrence(task);
         if (!isValidTimeSlot(task)) {
             throw new ManagerValidationException("Задача пересекается по времени с существующей");
         }
@@ -60,13 +121,13 @@ public class InMemoryTaskManager implements TaskManager {
 
     // Возвращает все задачи
     @Override
-    public ArrayList<Task> getAllTasks() {
+    public synchronized ArrayList<Task> getAllTasks() {
         return new ArrayList<>(tasks.values());
     }
 
     // Возвращает задачу по Id
     @Override
-    public Task getTaskById(int id) {
+    public synchronized Task getTaskById(int id) {
         Task task = tasks.get(id);
         if (task != null) {
             historyManager.add(task);
@@ -76,25 +137,35 @@ public class InMemoryTaskManager implements TaskManager {
 
     // Добаляет эпик
     @Override
-    public int addEpic(Epic epic) {
+    public synchronized int addEpic(Epic epic) {
         if (epic == null) return -1;
+        int parentId = epic.getParentEpicId();
+        if (parentId != 0 && !epics.containsKey(parentId)) {
+            throw new IllegalArgumentException("Эпик с id " + parentId + " не найден.");
+        }
         int id = generateId();
         epic.setId(id);
         epics.put(id, epic);
+        if (parentId != 0) {
+            epics.get(parentId).addChildEpic(epic);
+            refreshEpic(epics.get(parentId));
+        }
         return id;
     }
 
     // Возвращает все эпики
     @Override
-    public ArrayList<Epic> getAllEpics() {
+    public synchronized ArrayList<Epic> getAllEpics() {
+        flushEpics();
         return new ArrayList<>(epics.values());
     }
 
     // Возвращает эпик по Id
     @Override
-    public Epic getEpicById(int id) {
+    public synchronized Epic getEpicById(int id) {
         Epic epic = epics.get(id);
         if (epic != null) {
+            epic.flush();
             historyManager.add(epic);
         }
         return epic;
@@ -102,7 +173,7 @@ public class InMemoryTaskManager implements TaskManager {
 
     // Добавляет подзадачи
     @Override
-    public int addSubtask(Subtask subtask) {
+    public synchronized int addSubtask(Subtask subtask) {
         if (subtask == null) return -1;
 
         int epicId = subtask.getEpicId();
@@ -120,22 +191,22 @@ public class InMemoryTaskManager implements TaskManager {
         subtasks.put(id, subtask);
         Epic epic = epics.get(epicId);
         epic.addSubtask(subtask);
-        epic.recalculateEpicTime();
-        updateEpicStatus(epicId);
+        refreshEpic(epic);
         addToPrioritized(subtask);
+        dependencies.addNode(id, epicId, durationMinutes(subtask));
 
         return id;
     }
 
     // Получаем все подзадачи
     @Override
-    public ArrayList<Subtask> getAllSubtasks() {
+    public synchronized ArrayList<Subtask> getAllSubtasks() {
         return new ArrayList<>(subtasks.values());
     }
 
     // Возвращает подзадачи эпиков
     @Override
-    public ArrayList<Subtask> getSubtasksByEpic(int epicId) {
+    public synchronized List<Subtask> getSubtasksByEpic(int epicId) {
         if (!epics.containsKey(epicId)) {
             throw new IllegalArgumentException("Эпик с id " + epicId + " не найден.");
         }
@@ -143,9 +214,19 @@ public class InMemoryTaskManager implements TaskManager {
         return epics.get(epicId).getSubtasksList();
     }
 
+    // Возвращает подзадачи эпика в порядке начала
+    @Override
+    public synchronized List<Subtask> getSubtasksByEpicSortedByStart(int epicId) {
+        if (!epics.containsKey(epicId)) {
+            throw new IllegalArgumentException("Эпик с id " + epicId + " не найден.");
+        }
+
+        return epics.get(epicId).getSubtasksByStart();
+    }
+
     // Возвращает подзадачу по Id
     @Override
-    public Subtask getSubtaskById(int id) {
+    public synchronized Subtask getSubtaskById(int id) {
         Subtask subtask = subtasks.get(id);
         if (subtask != null) {
             historyManager.add(subtask);
@@ -155,7 +236,7 @@ public class InMemoryTaskManager implements TaskManager {
 
     // Удаляет все задачи
     @Override
-    public void deleteAllTasks() {
+    public synchronized void deleteAllTasks() {
         tasks.values().forEach(task -> {
             if (task != null) {
                 removeFromPrioritized(task);
@@ -167,7 +248,7 @@ public class InMemoryTaskManager implements TaskManager {
 
     // Удаляет все эпики
     @Override
-    public void deleteAllEpics() {
+    public synchronized void deleteAllEpics() {
         subtasks.values().forEach(subtask -> {
             if (subtask != null) {
                 removeFromPrioritized(subtask);
@@ -179,29 +260,29 @@ public class InMemoryTaskManager implements TaskManager {
 
         epics.clear();
         subtasks.clear();
+        dirtyEpics.clear();
+        dependencies.clear();
     }
 
     // Удаляет все подзадачи
     @Override
-    public void deleteAllSubtasks() {
+    public synchronized void deleteAllSubtasks() {
         for (Subtask subtask : subtasks.values()) {
-            if (subtask.getStartTime() != null) {
-                prioritizedTasks.remove(subtask);
-            }
+            removeFromPrioritized(subtask);
             historyManager.remove(subtask.getId());
         }
 
         subtasks.clear();
+        dependencies.clear();
         for (Epic epic : epics.values()) {
-            epic.setStatus(Status.NEW);
             epic.deleteAllSubtasks();
-            epic.recalculateEpicTime();
+            refreshEpic(epic);
         }
     }
 
     // Удаляет задачу по идентификатору
     @Override
-    public void deleteTaskById(int id) {
+    public synchronized void deleteTaskById(int id) {
         if (!tasks.containsKey(id)) {
             throw new IllegalArgumentException("Такой задачи нет");
         }
@@ -212,25 +293,40 @@ public class InMemoryTaskManager implements TaskManager {
 
     // Удаляет эпик по идентификатору
     @Override
-    public void deleteEpicById(int id) {
+    public synchronized void deleteEpicById(int id) {
         if (!epics.containsKey(id)) {
             throw new IllegalArgumentException("Эпика с таким идентификатором нет");
         }
 
         Epic epic = epics.get(id);
 
-        for (Subtask subtask : epic.getSubtasksList()) {
-            removeFromPrioritized(subtask);
-            subtasks.remove(subtask.getId());
-            historyManager.remove(subtask.getId());
+        // Вместе с эпиком удаляется все его поддерево: O(размер поддерева)
+        Deque<Epic> subtree = new ArrayDeque<>();
+        subtree.push(epic);
+        while (!subtree.isEmpty()) {
+            Epic current = subtree.pop();
+            for (Subtask subtask : current.getSubtasksList()) {
+                removeFromPrioritized(subtask);
+                subtasks.remove(subtask.getId());
+                historyManager.remove(subtask.getId());
+                dependencies.removeNode(subtask.getId());
+            }
+            current.getChildEpics().forEach(subtree::push);
+            historyManager.remove(current.getId());
+            epics.remove(current.getId());
+            dirtyEpics.remove(current.getId());
+        }
+
+        Epic parent = epics.get(epic.getParentEpicId());
+        if (parent != null) {
+            parent.removeChildEpic(epic);
+            refreshEpic(parent);
         }
-        historyManager.remove(id);
-        epics.remove(id);
     }
 
     //Удаляет подзадачи по идентификатору
     @Override
-    public void deleteSubtaskById(int id) {
+    public synchronized void deleteSubtaskById(int id) {
         if (!subtasks.containsKey(id)) {
             throw new IllegalArgumentException("Подзадачи с таким идентификатором нет");
         }
@@ -241,18 +337,24 @@ public class InMemoryTaskManager implements TaskManager {
         epic.deleteSubtaskById(subtask);
         historyManager.remove(id);
         subtasks.remove(id);
-        updateEpicStatus(epicId);
-        epic.recalculateEpicTime();
+        dependencies.removeNode(id);
+        refreshEpic(epic);
     }
 
     // Обновление задачи
     @Override
-    public void updateTask(Task updatedTask) {
+    public synchronized void updateTask(Task updatedTask) {
         if (updatedTask == null || !tasks.containsKey(updatedTask.getId())) {
             return;
         }
+        replaceTask(updatedTask);
+    }
+
+    // Замена задачи в памяти; наследники-хранилища сохраняют ее в своих переопределениях
+    private void replaceTask(Task updatedTask) {
         Task existingTask = tasks.get(updatedTask.getId());
 
+        checkRecurrence(updatedTask);
         if (!isValidTimeSlot(updatedTask)) {
             throw new ManagerValidationException("Обновленная задача пересекается по времени");
         }
@@ -264,19 +366,64 @@ public class InMemoryTaskManager implements TaskManager {
 
     // Обновление эпика
     @Override
-    public void updateEpic(Epic updatedEpic) {
+    public synchronized void updateEpic(Epic updatedEpic) {
         Epic existing = epics.get(updatedEpic.getId());
         if (existing == null) return;
+
+        int parentId = updatedEpic.getParentEpicId();
+        if (parentId != existing.getParentEpicId()) {
+            moveEpic(existing, parentId);
+        }
         existing.setName(updatedEpic.getName());
         existing.setDescription(updatedEpic.getDescription());
     }
 
+    // Переносит эпик под другого родителя; эпик нельзя вложить в собственное поддерево
+    private void moveEpic(Epic epic, int parentId) {
+        if (parentId != 0) {
+            if (!epics.containsKey(parentId)) {
+                throw new IllegalArgumentException("Эпик с id " + parentId + " не найден.");
+            }
+            Epic ancestor = epics.get(parentId);
+            while (ancestor != null) {
+                if (ancestor.getId() == epic.getId()) {
+                    throw new IllegalArgumentException("Эпик не может быть вложен в собственное поддерево");
+                }
+                ancestor = epics.get(ancestor.getParentEpicId());
+            }
+        }
+
+        Epic previous = epics.get(epic.getParentEpicId());
+        if (previous != null) {
+            previous.removeChildEpic(epic);
+            refreshEpic(previous);
+        }
+        epic.setParentEpicId(parentId);
+        if (parentId != 0) {
+            epics.get(parentId).addChildEpic(epic);
+            refreshEpic(epics.get(parentId));
+        }
+    }
+
+    // Возвращает эпики, вложенные в эпик
+    @Override
+    public synchronized List<Epic> getChildEpics(int epicId) {
+        if (!epics.containsKey(epicId)) {
+            throw new IllegalArgumentException("Эпик с id " + epicId + " не найден.");
+        }
+        return epics.get(epicId).getChildEpics();
+    }
+
     // Обновление подзадачи
     @Override
-    public void updateSubtask(Subtask updatedSubtask) {
+    public synchronized void updateSubtask(Subtask updatedSubtask) {
         if (updatedSubtask == null || !subtasks.containsKey(updatedSubtask.getId())) {
             return;
         }
+        replaceSubtask(updatedSubtask);
+    }
+
+    private void replaceSubtask(Subtask updatedSubtask) {
         Subtask existingSubtask = subtasks.get(updatedSubtask.getId());
 
         if (!isValidTimeSlot(updatedSubtask)) {
@@ -292,83 +439,417 @@ public class InMemoryTaskManager implements TaskManager {
         addToPrioritized(updatedSubtask);
 
         int epicId = updatedSubtask.getEpicId();
-        epics.get(epicId).updateSubtaskById(updatedSubtask);
-        updateEpicStatus(epicId);
-        epics.get(epicId).recalculateEpicTime();
+        if (existingSubtask.getEpicId() != epicId) {
+            // Подзадача перенесена в другой эпик
+            Epic previous = epics.get(existingSubtask.getEpicId());
+            previous.deleteSubtaskById(existingSubtask);
+            refreshEpic(previous);
+            epics.get(epicId).addSubtask(updatedSubtask);
+        } else {
+            epics.get(epicId).updateSubtaskById(updatedSubtask);
+        }
+        refreshEpic(epics.get(epicId));
+        dependencies.updateNode(updatedSubtask.getId(), epicId, durationMinutes(updatedSubtask));
+    }
+
+    // Добавляет зависимость: подзадача blockedId не может начаться раньше окончания blockerId
+    @Override
+    public synchronized void addDependency(int blockerId, int blockedId) {
+        if (!subtasks.containsKey(blockerId) || !subtasks.containsKey(blockedId)) {
+            throw new IllegalArgumentException("Подзадачи с таким идентификатором нет");
+        }
+        if (!dependencies.addEdge(blockerId, blockedId)) {
+            throw new ManagerValidationException("Зависимость создает цикл");
+        }
     }
 
     @Override
-    public List<Task> getHistory() {
+    public synchronized void removeDependency(int blockerId, int blockedId) {
+        dependencies.removeEdge(blockerId, blockedId);
+    }
+
+    @Override
+    public synchronized List<Integer> getBlockers(int subtaskId) {
+        if (!subtasks.containsKey(subtaskId)) {
+            throw new IllegalArgumentException("Подзадачи с таким идентификатором нет");
+        }
+        return dependencies.getBlockers(subtaskId);
+    }
+
+    // Самое раннее окончание эпика от начала работ с учетом зависимостей
+    @Override
+    public synchronized Duration getEarliestFinish(int epicId) {
+        if (!epics.containsKey(epicId)) {
+            throw new IllegalArgumentException("Эпик с id " + epicId + " не найден.");
+        }
+        return Duration.ofMinutes(dependencies.getEpicFinish(epicId));
+    }
+
+    @Override
+    public synchronized List<Subtask> getCriticalPath(int epicId) {
+        if (!epics.containsKey(epicId)) {
+            throw new IllegalArgumentException("Эпик с id " + epicId + " не найден.");
+        }
+        List<Subtask> path = new ArrayList<>();
+        for (int id : dependencies.getCriticalPath(epicId)) {
+            path.add(subtasks.get(id));
+        }
+        return path;
+    }
+
+    private static long durationMinutes(Subtask subtask) {
+        return subtask.getDuration() != null ? subtask.getDuration().toMinutes() : 0;
+    }
+
+    @Override
+    public synchronized List<Task> getHistory() {
         return historyManager.getHistory();
     }
 
     @Override
-    public List<Task> getPrioritizedTasks() {
-        return new ArrayList<>(prioritizedTasks);
+    public synchronized List<Task> getPrioritizedTasks() {
+        return prioritizedTasks.getTasks();
     }
 
-    // Обновление статуса эпика
-    private void updateEpicStatus(int epicId) {
-        Epic epic = epics.get(epicId);
-        if (epic == null) return;
+    @Override
+    public synchronized List<Task> getPrioritizedTasks(LocalDateTime from, LocalDateTime to) {
+        checkWindow(from, to);
+        return Timeline.window(assigneeTimelines.values(), from, to);
+    }
 
-        List<Subtask> subs = getSubtasksByEpic(epic.getId());
+    @Override
+    public synchronized List<Task> getPrioritizedTasks(String assignee, LocalDateTime from, LocalDateTime to) {
+        checkWindow(from, to);
+        Timeline timeline = assigneeTimelines.get(assignee);
+        return timeline == null ? new ArrayList<>() : timeline.window(from, to);
+    }
 
-        if (subs.isEmpty()) {
-            epic.setStatus(Status.NEW);
-            return;
+    @Override
+    public synchronized LocalDateTime findFreeSlot(Duration duration, LocalDateTime notBefore, LocalDateTime notAfter) {
+        return findFreeSlot(null, duration, notBefore, notAfter);
+    }
+
+    @Override
+    public synchronized LocalDateTime findFreeSlot(String assignee, Duration duration,
+                                      LocalDateTime notBefore, LocalDateTime notAfter) {
+        if (duration == null || duration.isNegative() || notBefore == null) {
+            throw new IllegalArgumentException("Не заданы длительность или начало диапазона поиска");
         }
 
-        boolean allNew = true;
-        boolean allDone = true;
-        boolean anyInProgress = false;
+        Timeline timeline = assigneeTimelines.get(assignee);
+        if (timeline != null) {
+            return timeline.findFreeSlot(duration, notBefore, notAfter);
+        }
+        return notAfter == null || !notBefore.plus(duration).isAfter(notAfter) ? notBefore : null;
+    }
+
+    @Override
+    public synchronized List<Task> scheduleBacklog(LocalDateTime from, LocalDateTime to, LocalTime workStart, LocalTime workEnd) {
+        if (from == null || to == null || from.isAfter(to)) {
+            throw new IllegalArgumentException("Некорректный диапазон планирования");
+        }
 
-        for (Subtask sub : subs) {
-            if (sub.getStatus() != Status.NEW) {
-                allNew = false;
+        // Каждый исполнитель планируется в своем расписании
+        Map<String, List<Task>> backlog = new HashMap<>();
+        for (Task task : tasks.values()) {
+            if (task.getStartTime() == null && task.getStatus() != Status.DONE) {
+                backlog.computeIfAbsent(task.getAssignee(), assignee -> new ArrayList<>()).add(task);
             }
+        }
+        for (Subtask subtask : subtasks.values()) {
+            if (subtask.getStartTime() == null && subtask.getStatus() != Status.DONE) {
+                backlog.computeIfAbsent(subtask.getAssignee(), assignee -> new ArrayList<>()).add(subtask);
+            }
+        }
+
+        BacklogScheduler scheduler = new BacklogScheduler(workStart, workEnd, Timeline.MIN_GAP);
+        Map<Task, LocalDateTime> placements = new LinkedHashMap<>();
+        for (Map.Entry<String, List<Task>> entry : backlog.entrySet()) {
+            // Окно расширено на зазор: задача, касающаяся from или to, тоже занимает границу
+            List<Task> busy = getPrioritizedTasks(entry.getKey(), from.minus(Timeline.MIN_GAP),
+                    to.plus(Timeline.MIN_GAP));
+            placements.putAll(scheduler.schedule(entry.getValue(), busy, from, to));
+        }
 
-            if (sub.getStatus() != Status.DONE) {
-                allDone = false;
+        // Размещения не пересекаются по построению, поэтому фиксируем их одним пакетом без повторной проверки
+        Set<Integer> touchedEpics = new HashSet<>();
+        for (Map.Entry<Task, LocalDateTime> placement : placements.entrySet()) {
+            Task task = placement.getKey();
+            task.setStartTime(placement.getValue());
+            addToPrioritized(task);
+            if (task instanceof Subtask) {
+                Subtask subtask = (Subtask) task;
+                epics.get(subtask.getEpicId()).updateSubtaskById(subtask);
+                touchedEpics.add(subtask.getEpicId());
             }
-            if (sub.getStatus() == Status.IN_PROGRESS) {
-                anyInProgress = true;
+        }
+        for (int epicId : touchedEpics) {
+            refreshEpic(epics.get(epicId));
+        }
+        return new ArrayList<>(placements.keySet());
+    }
+
+    @Override
+    public synchronized SortedMap<LocalDate, Long> getDailyLoad(LocalDate from, LocalDate to) {
+        if (from != null && to != null && from.isAfter(to)) {
+            throw new IllegalArgumentException("Начало диапазона позже его конца");
+        }
+        return dailyLoad.between(from, to);
+    }
+
+    // Данные из файла восстанавливаются без проверки пересечений, поэтому конфликты
+    // ищутся одним проходом сканирующей прямой по расписанию каждого исполнителя
+    @Override
+    public synchronized List<TimeConflict> findConflicts() {
+        List<TimeConflict> conflicts = new ArrayList<>();
+        for (Timeline timeline : assigneeTimelines.values()) {
+            timeline.findConflicts(conflicts);
+        }
+        return conflicts;
+    }
+
+    // Изменения проходят тот же путь, что updateTask/updateSubtask, поэтому расписание и эпики
+    // обновляются как при обычном редактировании. Хранилища сохраняют весь тик одной записью
+    // по возвращенному списку, как в scheduleBacklog
+    @Override
+    public synchronized List<Task> fireDueTriggers(LocalDateTime now) {
+        List<Task> changed = new ArrayList<>();
+        for (TimingWheel.Timer timer : triggers.advance(now)) {
+            int id = timer.getTaskId();
+            Task task = tasks.containsKey(id) ? tasks.get(id) : subtasks.get(id);
+            if (task == null) {
+                continue;
+            }
+            Status status = task.getStatus();
+            boolean overdue = task.isOverdue();
+            if (timer.getKind() == TimingWheel.Kind.START && status == Status.NEW) {
+                task.setStatus(Status.IN_PROGRESS);
+            } else if (timer.getKind() == TimingWheel.Kind.END && status != Status.DONE && !overdue) {
+                task.setOverdue(true);
+            } else {
+                continue;
+            }
+
+            try {
+                if (task instanceof Subtask) {
+                    replaceSubtask((Subtask) task);
+                } else {
+                    replaceTask(task);
+                }
+                changed.add(task);
+            } catch (ManagerValidationException e) {
+                // Задача из файла пересекается с другой: оставляем ее как есть, конфликт покажет findConflicts
+                task.setStatus(status);
+                task.setOverdue(overdue);
             }
         }
+        return changed;
+    }
 
-        if (allDone) {
-            epic.setStatus(Status.DONE);
-        } else if (allNew) {
-            epic.setStatus(Status.NEW);
-        } else if (anyInProgress) {
-            epic.setStatus(Status.IN_PROGRESS);
-        } else {
-            epic.setStatus(Status.IN_PROGRESS);
+    protected static void checkWindow(LocalDateTime from, LocalDateTime to) {
+        if (from != null && to != null && from.isAfter(to)) {
+            throw new IllegalArgumentException("Начало окна позже его конца");
         }
     }
 
-    private boolean isValidTimeSlot(Task newTask) {
-        if (newTask.getStartTime() == null) {
-            return true;
+    // Обновление статуса и времени эпика после изменения его подзадач. Изменение поднимается
+    // по цепочке родителей: каждый родитель заменяет вклад пересчитанного потомка за O(log k).
+    // В отложенном режиме эпики цепочки только помечаются и пересчитываются при чтении или flushEpics
+    protected void refreshEpic(Epic epic) {
+        Epic current = epic;
+        while (current != null) {
+            if (lazyEpics) {
+                current.markDirty();
+                dirtyEpics.add(current.getId());
+            } else {
+                current.refreshStatus();
+                current.recalculateEpicTime();
+            }
+            Epic parent = epics.get(current.getParentEpicId());
+            if (parent != null && !lazyEpics) {
+                parent.updateChildEpic(current);
+            }
+            current = parent;
         }
+    }
 
-        if (prioritizedTasks.isEmpty()) {
-            return true;
+    // Отложенный пересчет эпиков для пакетных операций, по умолчанию выключен
+    public synchronized void setLazyEpics(boolean lazyEpics) {
+        this.lazyEpics = lazyEpics;
+        if (!lazyEpics) {
+            flushEpics();
+        }
+    }
+
+    // Пересчитывает все помеченные эпики
+    public synchronized void flushEpics() {
+        for (int epicId : dirtyEpics) {
+            Epic epic = epics.get(epicId);
+            if (epic != null) {
+                epic.flush();
+            }
+        }
+        dirtyEpics.clear();
+    }
+
+    // Восстановление из прочитанного снимка. Таблицы заполняются одним проходом, затем
+    // независимые структуры - расписания, гистограмма, триггеры, граф зависимостей и эпики -
+    // строятся параллельно в общем fork-join пуле, каждая своей задачей. Подзадачи
+    // привязываются к эпикам после заполнения таблиц, поэтому порядок строк в снимке не важен
+    protected void restore(Snapshot snapshot) {
+        List<Subtask> subtaskRows = new ArrayList<>();
+        List<Task> scheduled = new ArrayList<>();
+        for (Task task : snapshot.getTasks()) {
+            if (task instanceof Epic) {
+                epics.put(task.getId(), (Epic) task);
+            } else {
+                if (task instanceof Subtask) {
+                    subtasks.put(task.getId(), (Subtask) task);
+                    subtaskRows.add((Subtask) task);
+                } else {
+                    tasks.put(task.getId(), task);
+                }
+                if (task.getStartTime() != null) {
+                    scheduled.add(task);
+                }
+            }
+            // Обновляем счетчик ID
+            if (task.getId() >= idCounter) {
+                idCounter = task.getId() + 1;
+            }
+        }
+
+        ForkJoinTask.invokeAll(
+                ForkJoinTask.adapt(() -> prioritizedTasks.addAll(scheduled)),
+                ForkJoinTask.adapt(() -> restoreAssigneeTimelines(scheduled)),
+                ForkJoinTask.adapt(() -> scheduled.forEach(dailyLoad::add)),
+                ForkJoinTask.adapt(() -> scheduled.forEach(this::scheduleTriggers)),
+                ForkJoinTask.adapt(() -> restoreDependencies(snapshot, subtaskRows)),
+                ForkJoinTask.adapt(() -> restoreEpics(subtaskRows)));
+    }
+
+    // Расписания исполнителей не связаны между собой и строятся параллельно
+    private void restoreAssigneeTimelines(List<Task> scheduled) {
+        HashMap<String, List<Task>> byAssignee = new HashMap<>();
+        for (Task task : scheduled) {
+            byAssignee.computeIfAbsent(task.getAssignee(), assignee -> new ArrayList<>()).add(task);
+            scheduledAssignees.put(task.getId(), task.getAssignee());
         }
+        for (String assignee : byAssignee.keySet()) {
+            assigneeTimelines.put(assignee, new Timeline(indexFactory.get()));
+        }
+        byAssignee.entrySet().parallelStream()
+                .forEach(entry -> assigneeTimelines.get(entry.getKey()).addAll(entry.getValue()));
+    }
 
-        return prioritizedTasks.stream()
-                .filter(task -> task.getId() != newTask.getId())
-                .filter(task -> task.getStartTime() != null)
-                .noneMatch(task -> isTimeOverlapping(newTask, task));
+    // Зависимости добавляются после всех узлов
+    private void restoreDependencies(Snapshot snapshot, List<Subtask> subtaskRows) {
+        for (Subtask subtask : subtaskRows) {
+            Duration duration = subtask.getDuration();
+            dependencies.addNode(subtask.getId(), subtask.getEpicId(), duration != null ? duration.toMinutes() : 0);
+        }
+        for (Subtask subtask : subtaskRows) {
+            for (int blockerId : snapshot.getBlockers(subtask.getId())) {
+                if (subtasks.containsKey(blockerId)) {
+                    dependencies.addEdge(blockerId, subtask.getId());
+                }
+            }
+        }
+    }
 
+    // Подзадачи группируются по эпику с сохранением порядка строк, и каждый эпик
+    // заполняется отдельно: у разных эпиков нет общего состояния
+    private void restoreEpics(List<Subtask> subtaskRows) {
+        Map<Integer, List<Subtask>> byEpic = subtaskRows.parallelStream()
+                .filter(subtask -> epics.containsKey(subtask.getEpicId()))
+                .collect(Collectors.groupingBy(Subtask::getEpicId));
+        byEpic.entrySet().parallelStream().forEach(entry -> {
+            Epic epic = epics.get(entry.getKey());
+            entry.getValue().forEach(epic::addSubtask);
+        });
+        recalculateAllEpics();
     }
 
-    private boolean isTimeOverlapping(Task task1, Task task2) {
-        LocalDateTime start1 = task1.getStartTime();
-        LocalDateTime end1 = task1.getEndTime();
-        LocalDateTime start2 = task2.getStartTime();
-        LocalDateTime end2 = task2.getEndTime();
+    // Вложенные эпики связываются с родителями, затем агрегаты пересчитываются параллельно
+    // по уровням вложенности, начиная с самого глубокого: к пересчету родителя все его
+    // вложенные эпики уже посчитаны и только читаются
+    protected void recalculateAllEpics() {
+        TreeMap<Integer, List<Epic>> levels = new TreeMap<>(Comparator.reverseOrder());
+        for (Epic epic : epics.values()) {
+            Epic parent = epics.get(epic.getParentEpicId());
+            if (parent != null) {
+                parent.addChildEpic(epic);
+            }
+            levels.computeIfAbsent(depth(epic), depth -> new ArrayList<>()).add(epic);
+        }
+        for (List<Epic> level : levels.values()) {
+            level.parallelStream().forEach(epic -> {
+                epic.markDirty();
+                epic.flush();
+            });
+        }
+    }
+
+    // Глубина эпика в дереве; цепочка родителей в поврежденном файле может замкнуться
+    private int depth(Epic epic) {
+        int depth = 0;
+        Epic parent = epics.get(epic.getParentEpicId());
+        while (parent != null && depth < epics.size()) {
+            depth++;
+            parent = epics.get(parent.getParentEpicId());
+        }
+        return depth;
+    }
+
+    // Собирает id эпика и всего его поддерева вместе с подзадачами - до каскадного удаления
+    protected void collectSubtree(int epicId, List<Integer> epicIds, Set<Integer> subtaskIds) {
+        Deque<Epic> pending = new ArrayDeque<>();
+        if (epics.containsKey(epicId)) {
+            pending.push(epics.get(epicId));
+        }
+        while (!pending.isEmpty()) {
+            Epic epic = pending.pop();
+            epicIds.add(epic.getId());
+            epic.getSubtasksList().forEach(subtask -> subtaskIds.add(subtask.getId()));
+            epic.getChildEpics().forEach(pending::push);
+        }
+    }
+
+    // Подзадачи вне удаляемого множества, которые блокировались удаляемыми: при сохранении
+    // их записи перезаписываются без удаленных зависимостей
+    protected List<Integer> dependents(Set<Integer> removedSubtasks) {
+        Set<Integer> result = new HashSet<>();
+        for (int id : removedSubtasks) {
+            for (int blocked : dependencies.getBlocked(id)) {
+                if (!removedSubtasks.contains(blocked)) {
+                    result.add(blocked);
+                }
+            }
+        }
+        return new ArrayList<>(result);
+    }
+
+    // Вхождение не может быть длиннее шага серии, иначе серия пересекается сама с собой
+    private static void checkRecurrence(Task task) {
+        if (!(task instanceof RecurringTask)) {
+            return;
+        }
+        RecurringTask recurring = (RecurringTask) task;
+        if (recurring.getStartTime() == null || recurring.getDuration() == null
+                || recurring.getEveryDays() < 1 || recurring.getEveryDays() > MAX_RECURRENCE_DAYS
+                || recurring.getDuration().isNegative()
+                || recurring.getDuration().compareTo(Duration.ofDays(recurring.getEveryDays()).minus(Timeline.MIN_GAP)) > 0
+                || (recurring.getUntil() != null && recurring.getUntil().isBefore(recurring.getStartTime()))) {
+            throw new IllegalArgumentException("Некорректное правило повторения задачи");
+        }
+    }
+
+    protected boolean isValidTimeSlot(Task newTask) {
+        if (newTask.getStartTime() == null) {
+            return true;
+        }
 
-        return !end1.isBefore(start2) && !start1.isAfter(end2);
+        Timeline timeline = assigneeTimelines.get(newTask.getAssignee());
+        return timeline == null || !timeline.hasOverlap(newTask);
     }
-}
\ No newline at end of file
+}
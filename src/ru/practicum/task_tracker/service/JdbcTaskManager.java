@@ -0,0 +1,580 @@
+package ru.practicum.task_tracker.service;
+
+import ru.practicum.task_tracker.exceptions.ManagerLoadException;
+import ru.practicum.task_tracker.exceptions.ManagerSaveException;
+import ru.practicum.task_tracker.model.Epic;
+import ru.practicum.task_tracker.model.RecurringTask;
+import ru.practicum.task_tracker.model.Status;
+import ru.practicum.task_tracker.model.Subtask;
+import ru.practicum.task_tracker.model.Task;
+import ru.practicum.task_tracker.model.TaskType;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Set;
+
+// Хранилище во встроенной базе данных через JDBC (SQLite, H2 в файловом режиме - сервер не нужен).
+// Каждое изменение менеджера - одна транзакция, строки которой отправляются пакетами
+// подготовленных запросов. Проверка пересечений и выборка задач по окну времени выполняются
+// запросами по индексам базы, поэтому в памяти индексы занятости исполнителей не строятся.
+// Время хранится строкой фиксированной ширины: ее лексикографический порядок совпадает
+// с порядком времени, и сравнения одинаково работают во всех базах
+public class JdbcTaskManager extends InMemoryTaskManager {
+    private static final DateTimeFormatter TIME_FORMAT = DateTimeFormatter.ofPattern("uuuu-MM-dd'T'HH:mm:ss.SSSSSSSSS");
+
+    // Текстовые поля без ограничения длины, как в остальных хранилищах: иначе база отклонила бы
+    // задачу уже после ее изменения в памяти. Исполнитель участвует в индексе, поэтому не CLOB
+    private static final String[] SCHEMA = {
+            "CREATE TABLE IF NOT EXISTS tasks (id INTEGER PRIMARY KEY, task_type VARCHAR(16) NOT NULL, "
+                    + "name CLOB, description CLOB, status VARCHAR(16) NOT NULL, "
+                    + "epic_id INTEGER, start_time VARCHAR(32), end_time VARCHAR(32), duration_minutes BIGINT, "
+                    + "assignee VARCHAR, every_days INTEGER, until_time VARCHAR(32))",
+            "CREATE TABLE IF NOT EXISTS dependencies (blocked_id INTEGER NOT NULL, blocker_id INTEGER NOT NULL, "
+                    + "position INTEGER NOT NULL, PRIMARY KEY (blocked_id, blocker_id))",
+            "CREATE INDEX IF NOT EXISTS tasks_status ON tasks (status)",
+            "CREATE INDEX IF NOT EXISTS tasks_epic ON tasks (epic_id)",
+            "CREATE INDEX IF NOT EXISTS tasks_start ON tasks (start_time)",
+            "CREATE INDEX IF NOT EXISTS tasks_end ON tasks (end_time)",
+            "CREATE INDEX IF NOT EXISTS tasks_assignee_start ON tasks (assignee, start_time)",
+            "CREATE INDEX IF NOT EXISTS dependencies_blocker ON dependencies (blocker_id)"
+    };
+
+    // В расписание попадают разовые задачи и подзадачи; серии и эпики в выборках по времени не участвуют
+    private static final String SCHEDULED = "task_type IN ('TASK', 'SUBTASK') AND start_time IS NOT NULL";
+
+    private static final String INSERT_TASK = "INSERT INTO tasks (id, task_type, name, description, status, "
+            + "epic_id, start_time, end_time, duration_minutes, assignee, every_days, until_time) "
+            + "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+    private static final String DELETE_TASK = "DELETE FROM tasks WHERE id = ?";
+    private static final String DELETE_TYPE = "DELETE FROM tasks WHERE task_type = ?";
+    private static final String INSERT_DEPENDENCY =
+            "INSERT INTO dependencies (blocked_id, blocker_id, position) VALUES (?, ?, ?)";
+    private static final String DELETE_BLOCKERS = "DELETE FROM dependencies WHERE blocked_id = ?";
+    private static final String DELETE_DEPENDENCIES = "DELETE FROM dependencies WHERE blocked_id = ? OR blocker_id = ?";
+    private static final String DELETE_TYPE_DEPENDENCIES = "DELETE FROM dependencies WHERE "
+            + "blocked_id IN (SELECT id FROM tasks WHERE task_type = ?) "
+            + "OR blocker_id IN (SELECT id FROM tasks WHERE task_type = ?)";
+
+    private final Connection connection;
+
+    // Открывает базу по адресу JDBC, создает недостающие таблицы и индексы
+    // и восстанавливает сохраненные в ней задачи
+    public JdbcTaskManager(HistoryManager historyManager, String url) {
+        super(historyManager, () -> null);
+        try {
+            connection = DriverManager.getConnection(url);
+            connection.setAutoCommit(false);
+            try (Statement statement = connection.createStatement()) {
+                for (String ddl : SCHEMA) {
+                    statement.executeUpdate(ddl);
+                }
+            }
+            connection.commit();
+        } catch (SQLException e) {
+            throw new ManagerLoadException("Не удалось открыть базу данных", e);
+        }
+        load();
+    }
+
+    private void load() {
+        Snapshot snapshot = new Snapshot();
+        try (Statement statement = connection.createStatement()) {
+            HashMap<Integer, List<Integer>> blockedBy = new HashMap<>();
+            try (ResultSet rows = statement.executeQuery(
+                    "SELECT blocked_id, blocker_id FROM dependencies ORDER BY blocked_id, position")) {
+                while (rows.next()) {
+                    blockedBy.computeIfAbsent(rows.getInt(1), id -> new ArrayList<>()).add(rows.getInt(2));
+                }
+            }
+            try (ResultSet rows = statement.executeQuery("SELECT id, task_type, name, description, status, "
+                    + "epic_id, start_time, duration_minutes, assignee, every_days, until_time FROM tasks ORDER BY id")) {
+                while (rows.next()) {
+                    Task task = readTask(rows);
+                    snapshot.put(task, blockedBy.getOrDefault(task.getId(), List.of()));
+                }
+            }
+            connection.commit();
+        } catch (SQLException e) {
+            throw new ManagerLoadException("Не удалось прочитать задачи из базы данных", e);
+        }
+        restore(snapshot);
+    }
+
+    private static Task readTask(ResultSet rows) throws SQLException {
+        TaskType type = TaskType.valueOf(rows.getString(2));
+        String name = rows.getString(3);
+        String description = rows.getString(4);
+        int parent = rows.getInt(6);
+        LocalDateTime start = parseTime(rows.getString(7));
+        long minutes = rows.getLong(8);
+        Duration duration = rows.wasNull() ? null : Duration.ofMinutes(minutes);
+
+        Task task;
+        switch (type) {
+            case TASK:
+                task = new Task(name, description, duration, start);
+                break;
+            case RECURRING:
+                task = new RecurringTask(name, description, duration, start, rows.getInt(10),
+                        parseTime(rows.getString(11)));
+                break;
+            case EPIC:
+                Epic epic = new Epic(name, description);
+                epic.setParentEpicId(parent);
+                task = epic;
+                break;
+            case SUBTASK:
+                task = new Subtask(name, description, parent, duration, start);
+                break;
+            default:
+                throw new ManagerLoadException("Неизвестный тип объекта " + type);
+        }
+        task.setId(rows.getInt(1));
+        task.setStatus(Status.valueOf(rows.getString(5)));
+        task.setAssignee(rows.getString(9));
+        return task;
+    }
+
+    private static String formatTime(LocalDateTime time) {
+        return time == null ? null : TIME_FORMAT.format(time);
+    }
+
+    private static LocalDateTime parseTime(String value) {
+        return value == null ? null : LocalDateTime.parse(value, TIME_FORMAT);
+    }
+
+    public synchronized void close() {
+        try {
+            connection.close();
+        } catch (SQLException e) {
+            throw new ManagerSaveException("Не удалось закрыть базу данных", e);
+        }
+    }
+
+    // Записывает изменение одной транзакцией: сначала удаления, затем строки задач и их
+    // зависимости. Каждый вид запроса отправляется в базу одним пакетом
+    private void persist(Collection<? extends Task> changed, Collection<Integer> removed, TaskType... cleared) {
+        try {
+            if (cleared.length > 0) {
+                try (PreparedStatement dependencies = connection.prepareStatement(DELETE_TYPE_DEPENDENCIES);
+                     PreparedStatement rows = connection.prepareStatement(DELETE_TYPE)) {
+                    for (TaskType type : cleared) {
+                        dependencies.setString(1, type.name());
+                        dependencies.setString(2, type.name());
+                        dependencies.addBatch();
+                        rows.setString(1, type.name());
+                        rows.addBatch();
+                    }
+                    dependencies.executeBatch();
+                    rows.executeBatch();
+                }
+            }
+            if (!removed.isEmpty()) {
+                try (PreparedStatement dependencies = connection.prepareStatement(DELETE_DEPENDENCIES);
+                     PreparedStatement rows = connection.prepareStatement(DELETE_TASK)) {
+                    for (int id : removed) {
+                        dependencies.setInt(1, id);
+                        dependencies.setInt(2, id);
+                        dependencies.addBatch();
+                        rows.setInt(1, id);
+                        rows.addBatch();
+                    }
+                    dependencies.executeBatch();
+                    rows.executeBatch();
+                }
+            }
+            if (!changed.isEmpty()) {
+                writeTasks(changed);
+            }
+            connection.commit();
+        } catch (SQLException e) {
+            try {
+                connection.rollback();
+            } catch (SQLException rollbackError) {
+                e.addSuppressed(rollbackError);
+            }
+            throw new ManagerSaveException("Не удалось сохранить изменения в базе данных", e);
+        }
+    }
+
+    // Строки заменяются удалением и вставкой: в SQLite и H2 нет общего синтаксиса upsert
+    private void writeTasks(Collection<? extends Task> changed) throws SQLException {
+        try (PreparedStatement delete = connection.prepareStatement(DELETE_TASK);
+             PreparedStatement insert = connection.prepareStatement(INSERT_TASK);
+             PreparedStatement deleteBlockers = connection.prepareStatement(DELETE_BLOCKERS);
+             PreparedStatement insertBlockers = connection.prepareStatement(INSERT_DEPENDENCY)) {
+            for (Task task : changed) {
+                delete.setInt(1, task.getId());
+                delete.addBatch();
+                bindTask(insert, task);
+                insert.addBatch();
+                if (task instanceof Subtask) {
+                    deleteBlockers.setInt(1, task.getId());
+                    deleteBlockers.addBatch();
+                    List<Integer> blockers = dependencies.getBlockers(task.getId());
+                    for (int position = 0; position < blockers.size(); position++) {
+                        insertBlockers.setInt(1, task.getId());
+                        insertBlockers.setInt(2, blockers.get(position));
+                        insertBlockers.setInt(3, position);
+                        insertBlockers.addBatch();
+                    }
+                }
+            }
+            delete.executeBatch();
+            insert.executeBatch();
+            deleteBlockers.executeBatch();
+            insertBlockers.executeBatch();
+        }
+    }
+
+    // Время эпика выводится из подзадач, поэтому в колонках времени хранится только у задач;
+    // для эпика в epic_id пишется родительский эпик
+    private static void bindTask(PreparedStatement insert, Task task) throws SQLException {
+        Integer parent = null;
+        if (task instanceof Subtask) {
+            parent = ((Subtask) task).getEpicId();
+        } else if (task instanceof Epic && ((Epic) task).getParentEpicId() != 0) {
+            parent = ((Epic) task).getParentEpicId();
+        }
+        boolean timed = !(task instanceof Epic) && task.getStartTime() != null;
+
+        insert.setInt(1, task.getId());
+        insert.setString(2, task.getType().name());
+        insert.setString(3, task.getName());
+        insert.setString(4, task.getDescription());
+        insert.setString(5, task.getStatus().name());
+        setInt(insert, 6, parent);
+        insert.setString(7, timed ? formatTime(task.getStartTime()) : null);
+        insert.setString(8, timed ? formatTime(Timeline.endOf(task)) : null);
+        if (!(task instanceof Epic) && task.getDuration() != null) {
+            insert.setLong(9, task.getDuration().toMinutes());
+        } else {
+            insert.setNull(9, Types.BIGINT);
+        }
+        insert.setString(10, task.getAssignee());
+        if (task instanceof RecurringTask) {
+            RecurringTask recurring = (RecurringTask) task;
+            insert.setInt(11, recurring.getEveryDays());
+            insert.setString(12, formatTime(recurring.getUntil()));
+        } else {
+            insert.setNull(11, Types.INTEGER);
+            insert.setString(12, null);
+        }
+    }
+
+    private static void setInt(PreparedStatement statement, int index, Integer value) throws SQLException {
+        if (value == null) {
+            statement.setNull(index, Types.INTEGER);
+        } else {
+            statement.setInt(index, value);
+        }
+    }
+
+    // Задачи и цепочки эпиков над подзадачами: статус эпика в базе следует за подзадачами
+    private List<Task> withEpics(Collection<? extends Task> changed) {
+        LinkedHashMap<Integer, Task> rows = new LinkedHashMap<>();
+        for (Task task : changed) {
+            if (task == null) {
+                continue;
+            }
+            rows.put(task.getId(), task);
+            if (task instanceof Subtask) {
+                addEpicChain(((Subtask) task).getEpicId(), rows);
+            }
+        }
+        return new ArrayList<>(rows.values());
+    }
+
+    private void addEpicChain(int epicId, LinkedHashMap<Integer, Task> rows) {
+        Epic epic = epics.get(epicId);
+        while (epic != null && !rows.containsKey(epic.getId())) {
+            rows.put(epic.getId(), epic);
+            epic = epics.get(epic.getParentEpicId());
+        }
+    }
+
+    private void store(Task task) {
+        if (task != null) {
+            persist(withEpics(List.of(task)), List.of());
+        }
+    }
+
+    // Задачи одного исполнителя в базе не пересекаются, поэтому кроме задач, начинающихся
+    // внутри интервала, достаточно проверить одну ближайшую задачу, начавшуюся раньше него.
+    // Оба запроса идут по индексу (assignee, start_time). Серии проверяются в памяти
+    @Override
+    protected boolean isValidTimeSlot(Task newTask) {
+        if (newTask.getStartTime() == null || newTask instanceof RecurringTask) {
+            return super.isValidTimeSlot(newTask);
+        }
+        Timeline timeline = assigneeTimelines.get(newTask.getAssignee());
+        if (timeline != null && timeline.hasSeriesOverlap(newTask)) {
+            return false;
+        }
+
+        String assignee = newTask.getAssignee() == null ? "assignee IS NULL" : "assignee = ?";
+        String start = formatTime(newTask.getStartTime());
+        try (PreparedStatement inside = connection.prepareStatement("SELECT id FROM tasks WHERE " + SCHEDULED
+                + " AND " + assignee + " AND id <> ? AND start_time >= ? AND start_time <= ?");
+             PreparedStatement previous = connection.prepareStatement("SELECT end_time FROM tasks WHERE "
+                     + SCHEDULED + " AND " + assignee + " AND id <> ? AND start_time < ? "
+                     + "ORDER BY start_time DESC LIMIT 1")) {
+            int index = bindAssignee(inside, newTask.getAssignee());
+            inside.setInt(index, newTask.getId());
+            inside.setString(index + 1, start);
+            inside.setString(index + 2, formatTime(Timeline.endOf(newTask)));
+            inside.setMaxRows(1);
+            try (ResultSet rows = inside.executeQuery()) {
+                if (rows.next()) {
+                    return false;
+                }
+            }
+
+            index = bindAssignee(previous, newTask.getAssignee());
+            previous.setInt(index, newTask.getId());
+            previous.setString(index + 1, start);
+            try (ResultSet rows = previous.executeQuery()) {
+                return !rows.next() || rows.getString(1).compareTo(start) < 0;
+            }
+        } catch (SQLException e) {
+            throw new ManagerSaveException("Не удалось проверить пересечение задач", e);
+        }
+    }
+
+    // Номер следующего параметра запроса
+    private static int bindAssignee(PreparedStatement statement, String assignee) throws SQLException {
+        if (assignee == null) {
+            return 1;
+        }
+        statement.setString(1, assignee);
+        return 2;
+    }
+
+    @Override
+    public synchronized List<Task> getPrioritizedTasks(LocalDateTime from, LocalDateTime to) {
+        checkWindow(from, to);
+        return prioritizedTasks.withSeries(scanWindow(null, false, from, to), from, to);
+    }
+
+    @Override
+    public synchronized List<Task> getPrioritizedTasks(String assignee, LocalDateTime from, LocalDateTime to) {
+        checkWindow(from, to);
+        Timeline timeline = assigneeTimelines.get(assignee);
+        if (timeline == null) {
+            return new ArrayList<>();
+        }
+        return timeline.withSeries(scanWindow(assignee, true, from, to), from, to);
+    }
+
+    // Задачи, пересекающиеся с окном [from, to): начавшиеся до окна и заходящие в него,
+    // затем начинающиеся внутри окна, в порядке расписания. Задачи разных исполнителей
+    // могут пересекаться, поэтому до окна берется не одна ближайшая задача, а все по end_time
+    private List<Task> scanWindow(String assignee, boolean byAssignee, LocalDateTime from, LocalDateTime to) {
+        StringBuilder filter = new StringBuilder(SCHEDULED);
+        List<String> parameters = new ArrayList<>();
+        if (byAssignee) {
+            filter.append(assignee == null ? " AND assignee IS NULL" : " AND assignee = ?");
+            if (assignee != null) {
+                parameters.add(assignee);
+            }
+        }
+
+        List<Task> result = new ArrayList<>();
+        try {
+            if (from != null) {
+                List<String> previousParameters = new ArrayList<>(parameters);
+                previousParameters.add(formatTime(from));
+                previousParameters.add(formatTime(from));
+                result.addAll(query("SELECT id FROM tasks WHERE " + filter + " AND start_time < ? AND end_time > ? "
+                        + "ORDER BY start_time, id", previousParameters));
+                filter.append(" AND start_time >= ?");
+                parameters.add(formatTime(from));
+            }
+            if (to != null) {
+                filter.append(" AND start_time < ?");
+                parameters.add(formatTime(to));
+            }
+            result.addAll(query("SELECT id FROM tasks WHERE " + filter + " ORDER BY start_time, id", parameters));
+        } catch (SQLException e) {
+            throw new ManagerLoadException("Не удалось выбрать задачи из базы данных", e);
+        }
+        return result;
+    }
+
+    // Строки запроса - id задач; задачи берутся из таблиц менеджера
+    private List<Task> query(String sql, List<String> parameters) throws SQLException {
+        List<Task> result = new ArrayList<>();
+        try (PreparedStatement statement = connection.prepareStatement(sql)) {
+            for (int i = 0; i < parameters.size(); i++) {
+                statement.setString(i + 1, parameters.get(i));
+            }
+            try (ResultSet rows = statement.executeQuery()) {
+                while (rows.next()) {
+                    int id = rows.getInt(1);
+                    result.add(tasks.containsKey(id) ? tasks.get(id) : subtasks.get(id));
+                }
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public synchronized int addTask(Task task) {
+        int id = super.addTask(task);
+        store(task);
+        return id;
+    }
+
+    @Override
+    public synchronized int addEpic(Epic epic) {
+        int id = super.addEpic(epic);
+        if (epic != null) {
+            persist(withEpics(List.of(epic)), List.of());
+        }
+        return id;
+    }
+
+    @Override
+    public synchronized int addSubtask(Subtask subtask) {
+        int id = super.addSubtask(subtask);
+        store(subtask);
+        return id;
+    }
+
+    @Override
+    public synchronized void updateTask(Task updatedTask) {
+        super.updateTask(updatedTask);
+        if (updatedTask != null) {
+            store(tasks.get(updatedTask.getId()));
+        }
+    }
+
+    @Override
+    public synchronized void updateEpic(Epic updatedEpic) {
+        super.updateEpic(updatedEpic);
+        store(epics.get(updatedEpic.getId()));
+    }
+
+    @Override
+    public synchronized void updateSubtask(Subtask updatedSubtask) {
+        super.updateSubtask(updatedSubtask);
+        if (updatedSubtask != null) {
+            store(subtasks.get(updatedSubtask.getId()));
+        }
+    }
+
+    @Override
+    public synchronized void deleteAllTasks() {
+        super.deleteAllTasks();
+        persist(List.of(), List.of(), TaskType.TASK, TaskType.RECURRING);
+    }
+
+    @Override
+    public synchronized void deleteAllEpics() {
+        super.deleteAllEpics();
+        persist(List.of(), List.of(), TaskType.EPIC, TaskType.SUBTASK);
+    }
+
+    @Override
+    public synchronized void deleteAllSubtasks() {
+        super.deleteAllSubtasks();
+        persist(new ArrayList<>(epics.values()), List.of(), TaskType.SUBTASK);
+    }
+
+    @Override
+    public synchronized void deleteTaskById(int id) {
+        super.deleteTaskById(id);
+        persist(List.of(), List.of(id));
+    }
+
+    @Override
+    public synchronized void deleteEpicById(int id) {
+        List<Integer> removedEpics = new ArrayList<>();
+        Set<Integer> removedSubtasks = new HashSet<>();
+        collectSubtree(id, removedEpics, removedSubtasks);
+        List<Integer> dependents = dependents(removedSubtasks);
+        Epic epic = epics.get(id);
+        int parentId = epic == null ? 0 : epic.getParentEpicId();
+
+        super.deleteEpicById(id);
+
+        List<Integer> removed = new ArrayList<>(removedEpics);
+        removed.addAll(removedSubtasks);
+        LinkedHashMap<Integer, Task> changed = new LinkedHashMap<>();
+        addEpicChain(parentId, changed);
+        changed.putAll(subtaskRows(dependents));
+        persist(changed.values(), removed);
+    }
+
+    @Override
+    public synchronized void deleteSubtaskById(int id) {
+        List<Integer> dependents = dependents(Set.of(id));
+        Subtask subtask = subtasks.get(id);
+        super.deleteSubtaskById(id);
+
+        LinkedHashMap<Integer, Task> changed = new LinkedHashMap<>();
+        if (subtask != null) {
+            addEpicChain(subtask.getEpicId(), changed);
+        }
+        changed.putAll(subtaskRows(dependents));
+        persist(changed.values(), List.of(id));
+    }
+
+    private LinkedHashMap<Integer, Task> subtaskRows(List<Integer> ids) {
+        LinkedHashMap<Integer, Task> rows = new LinkedHashMap<>();
+        for (int id : ids) {
+            Subtask subtask = subtasks.get(id);
+            if (subtask != null) {
+                rows.put(id, subtask);
+            }
+        }
+        return rows;
+    }
+
+    @Override
+    public synchronized void addDependency(int blockerId, int blockedId) {
+        super.addDependency(blockerId, blockedId);
+        store(subtasks.get(blockedId));
+    }
+
+    @Override
+    public synchronized void removeDependency(int blockerId, int blockedId) {
+        super.removeDependency(blockerId, blockedId);
+        store(subtasks.get(blockedId));
+    }
+
+    @Override
+    public synchronized List<Task> fireDueTriggers(LocalDateTime now) {
+        List<Task> changed = super.fireDueTriggers(now);
+        if (!changed.isEmpty()) {
+            persist(withEpics(changed), List.of());
+        }
+        return changed;
+    }
+
+    // Все размещенные задачи записываются одной транзакцией
+    @Override
+    public synchronized List<Task> scheduleBacklog(LocalDateTime from, LocalDateTime to,
+                                                   LocalTime workStart, LocalTime workEnd) {
+        List<Task> scheduled = super.scheduleBacklog(from, to, workStart, workEnd);
+        if (!scheduled.isEmpty()) {
+            persist(withEpics(scheduled), List.of());
+        }
+        return scheduled;
+    }
+}
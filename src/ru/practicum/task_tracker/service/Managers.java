@@ -1,10 +1,24 @@
 package ru.practicum.task_tracker.service;
 
+import java.time.Duration;
+
 public class Managers {
+    private static final Duration DEFAULT_SLOT = Duration.ofMinutes(15);
+
     public static TaskManager getDefault() {
         return new InMemoryTaskManager(getDefaultHistory());
     }
 
+    // Менеджер с календарем занятости по 15-минутной сетке
+    public static TaskManager getSlotCalendar() {
+        return getSlotCalendar(DEFAULT_SLOT);
+    }
+
+    public static TaskManager getSlotCalendar(Duration slot) {
+        SlotBitmapIndex.checkSlot(slot);
+        return new InMemoryTaskManager(getDefaultHistory(), () -> new SlotBitmapIndex(slot));
+    }
+
     public static HistoryManager getDefaultHistory() {
         return new InMemoryHistoryManager();
     }
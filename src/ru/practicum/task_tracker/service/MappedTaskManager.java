@@ -0,0 +1,570 @@
+package ru.practicum.task_tracker.service;
+
+import ru.practicum.task_tracker.exceptions.ManagerLoadException;
+import ru.practicum.task_tracker.exceptions.ManagerSaveException;
+import ru.practicum.task_tracker.model.Epic;
+import ru.practicum.task_tracker.model.RecurringTask;
+import ru.practicum.task_tracker.model.Status;
+import ru.practicum.task_tracker.model.Subtask;
+import ru.practicum.task_tracker.model.Task;
+import ru.practicum.task_tracker.model.TaskType;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+
+// Хранилище на отображенном в память файле: каждая задача занимает слот фиксированного
+// размера, поэтому изменение задачи перезаписывает только ее слот. Строки и списки
+// зависимостей лежат в отдельном файле переполнения и дописываются, только если изменились.
+// Освобожденные слоты образуют список и используются повторно.
+// Записи в отображенную память переживают падение процесса; для защиты от отключения
+// питания нужен force(). При загрузке файл переполнения отображается целиком, поэтому
+// он ограничен 2 ГБ.
+public class MappedTaskManager extends InMemoryTaskManager {
+    // "TKMS"
+    private static final int MAGIC = 0x544B4D53;
+    private static final short VERSION = 1;
+    private static final int HEADER_SIZE = 32;
+    private static final int SLOT_SIZE = 96;
+    private static final int INITIAL_SLOTS = 1024;
+    // Файл переполнения пересобирается при загрузке, если мусора в нем больше, чем живых данных
+    private static final long MIN_OVERFLOW_GARBAGE = 1 << 20;
+
+    // Поля заголовка
+    private static final int H_MAGIC = 0;
+    private static final int H_VERSION = 4;
+    private static final int H_SLOT_SIZE = 6;
+    private static final int H_CAPACITY = 8;
+    private static final int H_HIGH_WATER = 12;
+    private static final int H_FREE_HEAD = 16;
+
+    // Поля слота
+    private static final int S_USED = 0;
+    private static final int S_TYPE = 1;
+    private static final int S_STATUS = 2;
+    private static final int S_ID = 4;
+    // В свободном слоте на месте id хранится номер следующего свободного слота
+    private static final int S_NEXT_FREE = 4;
+    private static final int S_PARENT = 8;
+    private static final int S_EVERY_DAYS = 12;
+    private static final int S_DURATION = 16;
+    private static final int S_START = 24;
+    private static final int S_UNTIL = 32;
+    // Ссылки на файл переполнения: [смещение long][длина int]
+    private static final int S_NAME = 40;
+    private static final int S_DESCRIPTION = 52;
+    private static final int S_ASSIGNEE = 64;
+    private static final int S_BLOCKERS = 76;
+
+    private static final long NO_TIME = Long.MIN_VALUE;
+    private static final long NO_DURATION = -1;
+    private static final TaskType[] TYPES = TaskType.values();
+    private static final Status[] STATUSES = Status.values();
+
+    // Последнее записанное содержимое слота: строки сравниваются с ним без чтения файла
+    private static class Slot {
+        private final int index;
+        private final TaskType type;
+        private String name;
+        private String description;
+        private String assignee;
+        private List<Integer> blockers = List.of();
+
+        private Slot(int index, TaskType type) {
+            this.index = index;
+            this.type = type;
+        }
+    }
+
+    private final File file;
+    private final File overflowFile;
+    private FileChannel channel;
+    private MappedByteBuffer slots;
+    private FileChannel overflow;
+    private long overflowSize;
+    private long liveOverflowBytes;
+    private final HashMap<Integer, Slot> slotsById = new HashMap<>();
+
+    // Новое пустое хранилище; существующие файлы перезаписываются
+    public MappedTaskManager(HistoryManager historyManager, File file) {
+        this(historyManager, file, true);
+    }
+
+    private MappedTaskManager(HistoryManager historyManager, File file, boolean create) {
+        super(historyManager);
+        this.file = file;
+        this.overflowFile = overflowFile(file);
+        try {
+            openFiles(create);
+            if (create) {
+                initHeader(INITIAL_SLOTS);
+            }
+        } catch (IOException e) {
+            throw new ManagerSaveException("Не удалось открыть хранилище", e);
+        }
+    }
+
+    // Отображает файл в память и восстанавливает задачи из занятых слотов
+    public static MappedTaskManager loadFromFile(File file) {
+        if (!file.exists()) {
+            throw new ManagerLoadException("Ошибка! Файл не найден!");
+        }
+        try {
+            MappedTaskManager manager = new MappedTaskManager(Managers.getDefaultHistory(), file, false);
+            manager.load();
+            return manager;
+        } catch (IOException e) {
+            throw new ManagerLoadException("Произошла ошибка чтения из файла, возможно файл поврежден", e);
+        }
+    }
+
+    static File overflowFile(File file) {
+        return new File(file.getPath() + ".overflow");
+    }
+
+    private void openFiles(boolean truncate) throws IOException {
+        channel = truncate
+                ? FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)
+                : FileChannel.open(file.toPath(), StandardOpenOption.READ, StandardOpenOption.WRITE);
+        overflow = truncate
+                ? FileChannel.open(overflowFile.toPath(), StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)
+                : FileChannel.open(overflowFile.toPath(), StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        overflowSize = overflow.size();
+    }
+
+    private void initHeader(int capacity) throws IOException {
+        slots = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE + (long) capacity * SLOT_SIZE);
+        slots.putInt(H_MAGIC, MAGIC);
+        slots.putShort(H_VERSION, VERSION);
+        slots.putShort(H_SLOT_SIZE, (short) SLOT_SIZE);
+        slots.putInt(H_CAPACITY, capacity);
+        slots.putInt(H_HIGH_WATER, 0);
+        slots.putInt(H_FREE_HEAD, -1);
+    }
+
+    private void load() throws IOException {
+        slots = channel.map(FileChannel.MapMode.READ_WRITE, 0, channel.size());
+        if (channel.size() < HEADER_SIZE || slots.getInt(H_MAGIC) != MAGIC) {
+            throw new ManagerLoadException("Файл не является хранилищем задач");
+        }
+        if (slots.getShort(H_VERSION) != VERSION || slots.getShort(H_SLOT_SIZE) != SLOT_SIZE) {
+            throw new ManagerLoadException("Неподдерживаемая версия хранилища: " + slots.getShort(H_VERSION));
+        }
+
+        MappedByteBuffer strings = overflowSize > 0
+                ? overflow.map(FileChannel.MapMode.READ_ONLY, 0, overflowSize) : null;
+        Snapshot snapshot = new Snapshot();
+        int highWater = slots.getInt(H_HIGH_WATER);
+        // Список свободных слотов строится заново: при падении между снятием слота со списка
+        // и его записью слот остался бы ни свободным, ни занятым
+        int freeTail = -1;
+        slots.putInt(H_FREE_HEAD, -1);
+        for (int index = 0; index < highWater; index++) {
+            int base = HEADER_SIZE + index * SLOT_SIZE;
+            if (slots.get(base + S_USED) != 0) {
+                readSlot(index, base, strings, snapshot);
+                continue;
+            }
+            slots.putInt(base + S_NEXT_FREE, -1);
+            if (freeTail < 0) {
+                slots.putInt(H_FREE_HEAD, index);
+            } else {
+                slots.putInt(HEADER_SIZE + freeTail * SLOT_SIZE + S_NEXT_FREE, index);
+            }
+            freeTail = index;
+        }
+        restore(snapshot);
+
+        if (overflowSize - liveOverflowBytes > Math.max(liveOverflowBytes, MIN_OVERFLOW_GARBAGE)) {
+            rewriteOverflow();
+        }
+    }
+
+    private void readSlot(int index, int base, MappedByteBuffer strings, Snapshot snapshot) {
+        TaskType type = TYPES[slots.get(base + S_TYPE)];
+        Slot slot = new Slot(index, type);
+        slot.name = readString(strings, base + S_NAME);
+        slot.description = readString(strings, base + S_DESCRIPTION);
+        slot.assignee = readString(strings, base + S_ASSIGNEE);
+        slot.blockers = readInts(strings, base + S_BLOCKERS);
+
+        int parent = slots.getInt(base + S_PARENT);
+        long durationMinutes = slots.getLong(base + S_DURATION);
+        Duration duration = durationMinutes == NO_DURATION ? null : Duration.ofMinutes(durationMinutes);
+        LocalDateTime start = fromMinutes(slots.getLong(base + S_START));
+        Task task;
+        switch (type) {
+            case TASK:
+                task = new Task(slot.name, slot.description, duration, start);
+                break;
+            case RECURRING:
+                task = new RecurringTask(slot.name, slot.description, duration, start,
+                        slots.getInt(base + S_EVERY_DAYS), fromMinutes(slots.getLong(base + S_UNTIL)));
+                break;
+            case EPIC:
+                Epic epic = new Epic(slot.name, slot.description);
+                epic.setParentEpicId(parent);
+                task = epic;
+                break;
+            case SUBTASK:
+                task = new Subtask(slot.name, slot.description, parent, duration, start);
+                break;
+            default:
+                throw new ManagerLoadException("Неизвестный тип объекта " + type);
+        }
+        task.setId(slots.getInt(base + S_ID));
+        task.setStatus(STATUSES[slots.get(base + S_STATUS)]);
+        task.setAssignee(slot.assignee);
+        slotsById.put(task.getId(), slot);
+        snapshot.put(task, slot.blockers);
+    }
+
+    // Записывает задачу в ее слот; строки дописываются в файл переполнения, только если изменились
+    private void writeSlot(Task task) throws IOException {
+        Slot slot = slotsById.get(task.getId());
+        // В освобожденном слоте остались ссылки прежней задачи, поэтому новый слот пишется целиком
+        boolean fresh = slot == null;
+        if (fresh) {
+            slot = new Slot(allocateSlot(), task.getType());
+            slotsById.put(task.getId(), slot);
+        }
+        int base = HEADER_SIZE + slot.index * SLOT_SIZE;
+        if (fresh || !Objects.equals(slot.name, task.getName())) {
+            liveOverflowBytes -= stringBytes(slot.name);
+            writeString(base + S_NAME, task.getName());
+            slot.name = task.getName();
+        }
+        if (fresh || !Objects.equals(slot.description, task.getDescription())) {
+            liveOverflowBytes -= stringBytes(slot.description);
+            writeString(base + S_DESCRIPTION, task.getDescription());
+            slot.description = task.getDescription();
+        }
+        if (fresh || !Objects.equals(slot.assignee, task.getAssignee())) {
+            liveOverflowBytes -= stringBytes(slot.assignee);
+            writeString(base + S_ASSIGNEE, task.getAssignee());
+            slot.assignee = task.getAssignee();
+        }
+        List<Integer> blockers = task instanceof Subtask ? getBlockers(task.getId()) : List.of();
+        if (fresh || !slot.blockers.equals(blockers)) {
+            liveOverflowBytes -= (long) slot.blockers.size() * Integer.BYTES;
+            writeInts(base + S_BLOCKERS, blockers);
+            slot.blockers = blockers;
+        }
+
+        int parent = 0;
+        if (task instanceof Subtask) {
+            parent = ((Subtask) task).getEpicId();
+        } else if (task instanceof Epic) {
+            parent = ((Epic) task).getParentEpicId();
+        }
+        slots.put(base + S_TYPE, (byte) task.getType().ordinal());
+        slots.put(base + S_STATUS, (byte) task.getStatus().ordinal());
+        slots.putInt(base + S_ID, task.getId());
+        slots.putInt(base + S_PARENT, parent);
+        slots.putLong(base + S_DURATION, task.getDuration() != null ? task.getDuration().toMinutes() : NO_DURATION);
+        slots.putLong(base + S_START, toMinutes(task.getStartTime()));
+        if (task instanceof RecurringTask) {
+            RecurringTask recurring = (RecurringTask) task;
+            slots.putInt(base + S_EVERY_DAYS, recurring.getEveryDays());
+            slots.putLong(base + S_UNTIL, toMinutes(recurring.getUntil()));
+        }
+        // Слот становится занятым после записи всех полей
+        slots.put(base + S_USED, (byte) 1);
+    }
+
+    private void freeSlot(int id) {
+        Slot slot = slotsById.remove(id);
+        if (slot == null) {
+            return;
+        }
+        liveOverflowBytes -= stringBytes(slot.name) + stringBytes(slot.description)
+                + stringBytes(slot.assignee) + (long) slot.blockers.size() * Integer.BYTES;
+        int base = HEADER_SIZE + slot.index * SLOT_SIZE;
+        slots.put(base + S_USED, (byte) 0);
+        slots.putInt(base + S_NEXT_FREE, slots.getInt(H_FREE_HEAD));
+        slots.putInt(H_FREE_HEAD, slot.index);
+    }
+
+    private int allocateSlot() throws IOException {
+        int free = slots.getInt(H_FREE_HEAD);
+        if (free >= 0) {
+            slots.putInt(H_FREE_HEAD, slots.getInt(HEADER_SIZE + free * SLOT_SIZE + S_NEXT_FREE));
+            return free;
+        }
+        int highWater = slots.getInt(H_HIGH_WATER);
+        int capacity = slots.getInt(H_CAPACITY);
+        if (highWater == capacity) {
+            // Файл растет вдвое и отображается заново
+            capacity *= 2;
+            slots.force();
+            slots = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE + (long) capacity * SLOT_SIZE);
+            slots.putInt(H_CAPACITY, capacity);
+        }
+        slots.putInt(H_HIGH_WATER, highWater + 1);
+        return highWater;
+    }
+
+    private void writeString(int refPosition, String value) throws IOException {
+        if (value == null) {
+            slots.putLong(refPosition, 0);
+            slots.putInt(refPosition + Long.BYTES, -1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        slots.putLong(refPosition, append(ByteBuffer.wrap(bytes)));
+        slots.putInt(refPosition + Long.BYTES, bytes.length);
+    }
+
+    private void writeInts(int refPosition, List<Integer> values) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(values.size() * Integer.BYTES);
+        values.forEach(buffer::putInt);
+        buffer.flip();
+        slots.putLong(refPosition, values.isEmpty() ? 0 : append(buffer));
+        slots.putInt(refPosition + Long.BYTES, buffer.limit());
+    }
+
+    // Дописывает байты в конец файла переполнения и возвращает их смещение
+    private long append(ByteBuffer bytes) throws IOException {
+        long offset = overflowSize;
+        int length = bytes.remaining();
+        while (bytes.hasRemaining()) {
+            overflow.write(bytes, offset + bytes.position());
+        }
+        overflowSize += length;
+        liveOverflowBytes += length;
+        return offset;
+    }
+
+    private String readString(MappedByteBuffer strings, int refPosition) {
+        int length = slots.getInt(refPosition + Long.BYTES);
+        if (length < 0) {
+            return null;
+        }
+        liveOverflowBytes += length;
+        byte[] bytes = new byte[length];
+        if (length > 0) {
+            strings.get((int) slots.getLong(refPosition), bytes);
+        }
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private List<Integer> readInts(MappedByteBuffer strings, int refPosition) {
+        int length = slots.getInt(refPosition + Long.BYTES);
+        if (length <= 0) {
+            return List.of();
+        }
+        liveOverflowBytes += length;
+        int offset = (int) slots.getLong(refPosition);
+        List<Integer> values = new ArrayList<>(length / Integer.BYTES);
+        for (int i = 0; i < length; i += Integer.BYTES) {
+            values.add(strings.getInt(offset + i));
+        }
+        return values;
+    }
+
+    // Переписывает строки всех занятых слотов в новый файл переполнения без мусора
+    private void rewriteOverflow() throws IOException {
+        overflow.truncate(0);
+        overflowSize = 0;
+        liveOverflowBytes = 0;
+        for (Slot slot : slotsById.values()) {
+            int base = HEADER_SIZE + slot.index * SLOT_SIZE;
+            writeString(base + S_NAME, slot.name);
+            writeString(base + S_DESCRIPTION, slot.description);
+            writeString(base + S_ASSIGNEE, slot.assignee);
+            writeInts(base + S_BLOCKERS, slot.blockers);
+        }
+    }
+
+    private static long stringBytes(String value) {
+        return value == null ? 0 : value.getBytes(StandardCharsets.UTF_8).length;
+    }
+
+    private static long toMinutes(LocalDateTime time) {
+        return time == null ? NO_TIME : Math.floorDiv(time.toEpochSecond(ZoneOffset.UTC), 60);
+    }
+
+    private static LocalDateTime fromMinutes(long minutes) {
+        return minutes == NO_TIME ? null : LocalDateTime.ofEpochSecond(minutes * 60, 0, ZoneOffset.UTC);
+    }
+
+    // Сбрасывает отображенные страницы и файл переполнения на диск
+    public synchronized void force() {
+        slots.force();
+        try {
+            overflow.force(false);
+        } catch (IOException e) {
+            throw new ManagerSaveException("Не удалось сбросить хранилище на диск", e);
+        }
+    }
+
+    public synchronized void close() {
+        try {
+            force();
+            overflow.close();
+            channel.close();
+        } catch (IOException e) {
+            throw new ManagerSaveException("Не удалось закрыть хранилище", e);
+        }
+    }
+
+    private void store(Task task) {
+        if (task == null) {
+            return;
+        }
+        try {
+            writeSlot(task);
+        } catch (IOException e) {
+            throw new ManagerSaveException("Не удалось записать задачу в хранилище", e);
+        }
+    }
+
+    private void storeSubtasks(List<Integer> ids) {
+        ids.forEach(id -> store(subtasks.get(id)));
+    }
+
+    private void freeType(TaskType type) {
+        List<Integer> ids = new ArrayList<>();
+        slotsById.forEach((id, slot) -> {
+            if (slot.type == type) {
+                ids.add(id);
+            }
+        });
+        ids.forEach(this::freeSlot);
+    }
+
+    @Override
+    public synchronized int addTask(Task task) {
+        int id = super.addTask(task);
+        store(task);
+        return id;
+    }
+
+    @Override
+    public synchronized int addEpic(Epic epic) {
+        int id = super.addEpic(epic);
+        store(epic);
+        return id;
+    }
+
+    @Override
+    public synchronized int addSubtask(Subtask subtask) {
+        int id = super.addSubtask(subtask);
+        store(subtask);
+        return id;
+    }
+
+    @Override
+    public synchronized void updateTask(Task updatedTask) {
+        super.updateTask(updatedTask);
+        if (updatedTask != null) {
+            store(tasks.get(updatedTask.getId()));
+        }
+    }
+
+    @Override
+    public synchronized void updateEpic(Epic updatedEpic) {
+        super.updateEpic(updatedEpic);
+        store(epics.get(updatedEpic.getId()));
+    }
+
+    @Override
+    public synchronized void updateSubtask(Subtask updatedSubtask) {
+        super.updateSubtask(updatedSubtask);
+        if (updatedSubtask != null) {
+            store(subtasks.get(updatedSubtask.getId()));
+        }
+    }
+
+    @Override
+    public synchronized void deleteAllTasks() {
+        super.deleteAllTasks();
+        freeType(TaskType.TASK);
+        freeType(TaskType.RECURRING);
+    }
+
+    @Override
+    public synchronized void deleteAllEpics() {
+        super.deleteAllEpics();
+        freeType(TaskType.EPIC);
+        freeType(TaskType.SUBTASK);
+    }
+
+    @Override
+    public synchronized void deleteAllSubtasks() {
+        super.deleteAllSubtasks();
+        freeType(TaskType.SUBTASK);
+    }
+
+    @Override
+    public synchronized void deleteTaskById(int id) {
+        super.deleteTaskById(id);
+        freeSlot(id);
+    }
+
+    @Override
+    public synchronized void deleteEpicById(int id) {
+        List<Integer> removedEpics = new ArrayList<>();
+        Set<Integer> removedSubtasks = new HashSet<>();
+        collectSubtree(id, removedEpics, removedSubtasks);
+        List<Integer> dependents = dependents(removedSubtasks);
+
+        super.deleteEpicById(id);
+
+        removedEpics.forEach(this::freeSlot);
+        removedSubtasks.forEach(this::freeSlot);
+        storeSubtasks(dependents);
+    }
+
+    @Override
+    public synchronized void deleteSubtaskById(int id) {
+        List<Integer> dependents = dependents(Set.of(id));
+        super.deleteSubtaskById(id);
+        freeSlot(id);
+        storeSubtasks(dependents);
+    }
+
+    @Override
+    public synchronized void addDependency(int blockerId, int blockedId) {
+        super.addDependency(blockerId, blockedId);
+        store(subtasks.get(blockedId));
+    }
+
+    @Override
+    public synchronized void removeDependency(int blockerId, int blockedId) {
+        super.removeDependency(blockerId, blockedId);
+        store(subtasks.get(blockedId));
+    }
+
+    @Override
+    public synchronized List<Task> fireDueTriggers(LocalDateTime now) {
+        List<Task> changed = super.fireDueTriggers(now);
+        changed.forEach(this::store);
+        return changed;
+    }
+
+    @Override
+    public synchronized List<Task> scheduleBacklog(LocalDateTime from, LocalDateTime to,
+                                                   LocalTime workStart, LocalTime workEnd) {
+        List<Task> scheduled = super.scheduleBacklog(from, to, workStart, workEnd);
+        scheduled.forEach(this::store);
+        return scheduled;
+    }
+}
@@ -0,0 +1,175 @@
+package ru.practicum.task_tracker.service;
+
+import ru.practicum.task_tracker.model.Task;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.HashMap;
+
+// Календарь занятости на битовых картах: время делится на слоты фиксированной длины,
+// для каждого дня лениво создается страница битов. Задача, выровненная по сетке,
+// занимает все узлы сетки от начала до конца включительно, поэтому проверка
+// пересечения сводится к пословному просмотру битов ее слотов.
+// Невыровненные задачи проверяются точным интервальным индексом.
+public class SlotBitmapIndex implements TimeSlotIndex {
+    private static final int MINUTES_PER_DAY = 24 * 60;
+
+    private final long slotMinutes;
+    private final int slotsPerPage;
+    private final HashMap<Long, long[]> pages = new HashMap<>();
+    // id выровненной задачи -> {первый слот, последний слот}
+    private final HashMap<Integer, long[]> alignedSlots = new HashMap<>();
+    // Все задачи: точная проверка для невыровненных запросов
+    private final TimeIntervalIndex allTasks = new TimeIntervalIndex();
+    // Только невыровненные задачи: их битовая карта не учитывает
+    private final TimeIntervalIndex unalignedTasks = new TimeIntervalIndex();
+
+    public SlotBitmapIndex(Duration slot) {
+        checkSlot(slot);
+        this.slotMinutes = slot.toMinutes();
+        this.slotsPerPage = (int) (MINUTES_PER_DAY / slotMinutes);
+    }
+
+    public static void checkSlot(Duration slot) {
+        long minutes = slot.toMinutes();
+        if (minutes <= 0 || MINUTES_PER_DAY % minutes != 0 || !slot.equals(Duration.ofMinutes(minutes))) {
+            throw new IllegalArgumentException("Длина слота должна делить сутки на целое число минут: " + slot);
+        }
+    }
+
+    @Override
+    public void add(Task task) {
+        if (task == null || task.getStartTime() == null) {
+            return;
+        }
+        remove(task.getId());
+
+        LocalDateTime start = task.getStartTime();
+        LocalDateTime end = task.getEndTime() != null ? task.getEndTime() : start;
+        allTasks.add(task);
+        if (isAligned(start) && isAligned(end)) {
+            long first = toSlot(start);
+            long last = toSlot(end);
+            alignedSlots.put(task.getId(), new long[]{first, last});
+            setRange(first, last, true);
+        } else {
+            unalignedTasks.add(task);
+        }
+    }
+
+    @Override
+    public void remove(int id) {
+        allTasks.remove(id);
+        unalignedTasks.remove(id);
+        long[] slots = alignedSlots.remove(id);
+        if (slots != null) {
+            setRange(slots[0], slots[1], false);
+        }
+    }
+
+    @Override
+    public boolean hasOverlap(LocalDateTime start, LocalDateTime end, int excludedId) {
+        if (!isAligned(start) || !isAligned(end)) {
+            return allTasks.hasOverlap(start, end, excludedId);
+        }
+        if (unalignedTasks.hasOverlap(start, end, excludedId)) {
+            return true;
+        }
+
+        long first = toSlot(start);
+        long last = toSlot(end);
+        long[] excluded = alignedSlots.get(excludedId);
+        if (excluded == null || excluded[1] < first || excluded[0] > last) {
+            return anySet(first, last);
+        }
+        // Слоты исключаемой задачи заняты только ей самой
+        return anySet(first, excluded[0] - 1) || anySet(excluded[1] + 1, last);
+    }
+
+    @Override
+    public void clear() {
+        pages.clear();
+        alignedSlots.clear();
+        allTasks.clear();
+        unalignedTasks.clear();
+    }
+
+    private boolean isAligned(LocalDateTime time) {
+        return time.getSecond() == 0 && time.getNano() == 0 && epochMinutes(time) % slotMinutes == 0;
+    }
+
+    private long toSlot(LocalDateTime time) {
+        return epochMinutes(time) / slotMinutes;
+    }
+
+    private static long epochMinutes(LocalDateTime time) {
+        return Math.floorDiv(time.toEpochSecond(ZoneOffset.UTC), 60);
+    }
+
+    private void setRange(long first, long last, boolean busy) {
+        for (long slot = first; slot <= last; ) {
+            long pageNumber = Math.floorDiv(slot, slotsPerPage);
+            int from = (int) (slot - pageNumber * slotsPerPage);
+            int to = (int) Math.min(slotsPerPage - 1, last - pageNumber * slotsPerPage);
+
+            long[] page = pages.get(pageNumber);
+            if (page == null) {
+                if (!busy) {
+                    slot += to - from + 1;
+                    continue;
+                }
+                page = new long[(slotsPerPage + 63) / 64];
+                pages.put(pageNumber, page);
+            }
+            for (int word = from >> 6; word <= to >> 6; word++) {
+                long mask = wordMask(word, from, to);
+                if (busy) {
+                    page[word] |= mask;
+                } else {
+                    page[word] &= ~mask;
+                }
+            }
+            if (!busy && isEmpty(page)) {
+                pages.remove(pageNumber);
+            }
+            slot += to - from + 1;
+        }
+    }
+
+    private boolean anySet(long first, long last) {
+        for (long slot = first; slot <= last; ) {
+            long pageNumber = Math.floorDiv(slot, slotsPerPage);
+            int from = (int) (slot - pageNumber * slotsPerPage);
+            int to = (int) Math.min(slotsPerPage - 1, last - pageNumber * slotsPerPage);
+
+            long[] page = pages.get(pageNumber);
+            if (page != null) {
+                for (int word = from >> 6; word <= to >> 6; word++) {
+                    if ((page[word] & wordMask(word, from, to)) != 0) {
+                        return true;
+                    }
+                }
+            }
+            slot += to - from + 1;
+        }
+        return false;
+    }
+
+    // Маска битов слова word, попадающих в диапазон [from, to] внутри страницы
+    private static long wordMask(int word, int from, int to) {
+        int low = Math.max(from, word << 6) - (word << 6);
+        int high = Math.min(to, (word << 6) + 63) - (word << 6);
+        long upper = high == 63 ? -1L : (1L << (high + 1)) - 1;
+        return upper & (-1L << low);
+    }
+
+    private static boolean isEmpty(long[] page) {
+        for (long word : page) {
+            if (word != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,60 @@
+package ru.practicum.task_tracker.service;
+
+import ru.practicum.task_tracker.model.Task;
+import ru.practicum.task_tracker.model.TaskType;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+
+// Прочитанное из файла хранения состояние: задачи в порядке записи и зависимости подзадач.
+// На нем же проигрываются операции журнала перед восстановлением менеджера
+public class Snapshot {
+    private final LinkedHashMap<Integer, Task> tasks = new LinkedHashMap<>();
+    // id подзадачи -> id блокирующих ее подзадач
+    private final HashMap<Integer, List<Integer>> blockedBy = new HashMap<>();
+
+    public void put(Task task, List<Integer> blockers) {
+        tasks.put(task.getId(), task);
+        if (blockers.isEmpty()) {
+            blockedBy.remove(task.getId());
+        } else {
+            blockedBy.put(task.getId(), blockers);
+        }
+    }
+
+    // Переносит задачи другого снимка поверх текущих, как если бы его строки шли следом
+    public void putAll(Snapshot other) {
+        for (Task task : other.getTasks()) {
+            put(task, other.getBlockers(task.getId()));
+        }
+    }
+
+    public void remove(int id) {
+        tasks.remove(id);
+        blockedBy.remove(id);
+    }
+
+    public void clear(TaskType type) {
+        tasks.values().removeIf(task -> {
+            if (task.getType() != type) {
+                return false;
+            }
+            blockedBy.remove(task.getId());
+            return true;
+        });
+    }
+
+    public Collection<Task> getTasks() {
+        return tasks.values();
+    }
+
+    public List<Integer> getBlockers(int id) {
+        return blockedBy.getOrDefault(id, List.of());
+    }
+
+    public int size() {
+        return tasks.size();
+    }
+}
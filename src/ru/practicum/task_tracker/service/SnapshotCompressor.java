@@ -0,0 +1,169 @@
+package ru.practicum.task_tracker.service;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+// Фоновое сжатие снимков: изменение менеджера только ставит файл в очередь, а кодирование,
+// сжатие и запись идут в отдельном потоке. Для каждого файла в очереди хранится только последний
+// запрос: снимок пишется по состоянию на момент записи, поэтому пропущенные версии ничего не теряют.
+// Изменение возвращается раньше, чем его снимок окажется на диске; flush() дожидается записи.
+// Поток не фоновый (не daemon): поставленные снимки дописываются и при выходе из программы
+public class SnapshotCompressor {
+    // Пишет несжатый снимок в поток; вызывается в потоке сжатия
+    public interface SnapshotWriter {
+        void writeTo(OutputStream out) throws IOException;
+    }
+
+
+    private static final int BUFFER_SIZE = 1 << 16;
+    // Заголовок GZIP
+    private static final int GZIP_MAGIC = 0x1f8b;
+    // Вместо снимка в очереди: файл нужно удалить
+    private static final SnapshotWriter DELETE = out -> {
+    };
+
+    private final CompressionStats stats;
+    private final LinkedHashMap<File, SnapshotWriter> pending = new LinkedHashMap<>();
+    private Thread worker;
+    private boolean busy;
+    private IOException failure;
+
+    public SnapshotCompressor(CompressionStats stats) {
+        this.stats = stats;
+    }
+
+    // Проверяет по первым байтам, сжат ли файл
+    public static boolean isCompressed(File file) throws IOException {
+        if (file.length() < 2) {
+            return false;
+        }
+        try (InputStream in = new FileInputStream(file)) {
+            return ((in.read() << 8) | in.read()) == GZIP_MAGIC;
+        }
+    }
+
+    // Поток распакованных байтов файла
+    public static InputStream open(File file) throws IOException {
+        return new BufferedInputStream(new GZIPInputStream(new FileInputStream(file), BUFFER_SIZE), BUFFER_SIZE);
+    }
+
+    // Кодирует снимок прямо в поток сжатия во временный файл и атомарно подменяет им target
+    public static void write(File target, SnapshotWriter writer, CompressionStats stats) throws IOException {
+        long start = System.nanoTime();
+        File temp = new File(target.getPath() + ".tmp");
+        CountingOutputStream raw;
+        try (OutputStream out = new GZIPOutputStream(new FileOutputStream(temp), BUFFER_SIZE)) {
+            raw = new CountingOutputStream(out);
+            writer.writeTo(raw);
+        }
+        Files.move(temp.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+        stats.record(raw.count, target.length(), System.nanoTime() - start);
+    }
+
+    // Ставит снимок в очередь. Ошибка предыдущей фоновой записи сообщается здесь
+    public synchronized void submit(File target, SnapshotWriter writer) throws IOException {
+        throwFailure();
+        pending.remove(target);
+        pending.put(target, writer);
+        if (worker == null) {
+            worker = new Thread(this::run, "snapshot-compressor");
+            worker.start();
+        }
+        notifyAll();
+    }
+
+    // Удаление файла идет через ту же очередь, чтобы не обогнать его запись
+    public void delete(File target) throws IOException {
+        submit(target, DELETE);
+    }
+
+    // Дожидается записи всех поставленных снимков
+    public synchronized void flush() throws IOException {
+        try {
+            while (!pending.isEmpty() || busy) {
+                wait();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Ожидание записи снимков прервано");
+        }
+        throwFailure();
+    }
+
+    private void throwFailure() throws IOException {
+        if (failure != null) {
+            IOException error = failure;
+            failure = null;
+            throw error;
+        }
+    }
+
+    // Поток завершается, когда очередь пуста, и запускается заново следующей записью
+    private void run() {
+        while (true) {
+            File target;
+            SnapshotWriter writer;
+            synchronized (this) {
+                busy = false;
+                notifyAll();
+                if (pending.isEmpty()) {
+                    worker = null;
+                    return;
+                }
+                Iterator<Map.Entry<File, SnapshotWriter>> first = pending.entrySet().iterator();
+                Map.Entry<File, SnapshotWriter> entry = first.next();
+                first.remove();
+                target = entry.getKey();
+                writer = entry.getValue();
+                busy = true;
+            }
+            try {
+                if (writer == DELETE) {
+                    Files.deleteIfExists(target.toPath());
+                } else {
+                    write(target, writer, stats);
+                }
+            } catch (IOException e) {
+                synchronized (this) {
+                    failure = e;
+                }
+            }
+        }
+    }
+
+    // Считает несжатые байты для статистики
+    private static class CountingOutputStream extends FilterOutputStream {
+        private long count;
+
+        private CountingOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            count += len;
+        }
+    }
+}
@@ -0,0 +1,7 @@
+package ru.practicum.task_tracker.service;
+
+// Формат файла снимка; при загрузке формат определяется по первым байтам файла
+public enum SnapshotFormat {
+    CSV,
+    BINARY
+}
@@ -0,0 +1,111 @@
+package ru.practicum.task_tracker.service;
+
+// Настройки хранения FileBackedTaskManager. По умолчанию файл целиком
+// перезаписывается после каждого изменения
+public class StorageOptions {
+    private static final int DEFAULT_COMPACTION_THRESHOLD = 1000;
+    private static final int DEFAULT_LOAD_CHUNK_SIZE = 8 << 20;
+
+    private boolean journal;
+    private boolean sharded;
+    private int compactionThreshold = DEFAULT_COMPACTION_THRESHOLD;
+    private Durability durability = Durability.OS_BUFFERED;
+    private long syncIntervalMillis;
+    private SnapshotFormat format = SnapshotFormat.CSV;
+    private int loadChunkSize = DEFAULT_LOAD_CHUNK_SIZE;
+    private boolean compressed;
+
+    // Изменения дописываются в журнал рядом с файлом снимка
+    public StorageOptions withJournal(boolean journal) {
+        this.journal = journal;
+        return this;
+    }
+
+    // Файл хранения - каталог: задачи в файле tasks, каждый эпик с подзадачами в своем
+    // файле epic-<id>. Изменение перезаписывает только затронутые файлы. С журналом не совмещается
+    public StorageOptions withSharding(boolean sharded) {
+        this.sharded = sharded;
+        return this;
+    }
+
+    // Число записей журнала, после которого он сворачивается в снимок
+    public StorageOptions withCompactionThreshold(int compactionThreshold) {
+        if (compactionThreshold < 1) {
+            throw new IllegalArgumentException("Порог сжатия журнала должен быть положительным");
+        }
+        this.compactionThreshold = compactionThreshold;
+        return this;
+    }
+
+    // Режим сохранения записей журнала: EVERY_OP или OS_BUFFERED
+    public StorageOptions withDurability(Durability durability) {
+        if (durability == Durability.INTERVAL) {
+            throw new IllegalArgumentException("Для режима INTERVAL укажите интервал через withSyncInterval");
+        }
+        this.durability = durability;
+        return this;
+    }
+
+    // Журнал сбрасывается на диск раз в intervalMillis миллисекунд
+    public StorageOptions withSyncInterval(long intervalMillis) {
+        if (intervalMillis < 1) {
+            throw new IllegalArgumentException("Интервал сброса журнала должен быть положительным");
+        }
+        this.durability = Durability.INTERVAL;
+        this.syncIntervalMillis = intervalMillis;
+        return this;
+    }
+
+    // Формат, в котором записываются снимки; читаются оба формата
+    public StorageOptions withFormat(SnapshotFormat format) {
+        this.format = format;
+        return this;
+    }
+
+    // Снимки записываются сжатыми GZIP; при загрузке сжатие определяется по первым байтам
+    public StorageOptions withCompression(boolean compressed) {
+        this.compressed = compressed;
+        return this;
+    }
+
+    // Размер фрагмента в байтах, на которые делится CSV-снимок при параллельной загрузке
+    public StorageOptions withLoadChunkSize(int loadChunkSize) {
+        if (loadChunkSize < 1) {
+            throw new IllegalArgumentException("Размер фрагмента загрузки должен быть положительным");
+        }
+        this.loadChunkSize = loadChunkSize;
+        return this;
+    }
+
+    public boolean isJournal() {
+        return journal;
+    }
+
+    public boolean isSharded() {
+        return sharded;
+    }
+
+    public int getCompactionThreshold() {
+        return compactionThreshold;
+    }
+
+    public Durability getDurability() {
+        return durability;
+    }
+
+    public long getSyncIntervalMillis() {
+        return syncIntervalMillis;
+    }
+
+    public SnapshotFormat getFormat() {
+        return format;
+    }
+
+    public boolean isCompressed() {
+        return compressed;
+    }
+
+    public int getLoadChunkSize() {
+        return loadChunkSize;
+    }
+}
@@ -0,0 +1,330 @@
+package ru.practicum.task_tracker.service;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+// Журнал изменений: каждая операция менеджера дописывается в конец файла одной записью
+// [длина][CRC32][операции]. Оборванная при сбое последняя запись не проходит проверку
+// контрольной суммы и отрезается при чтении.
+// Запись групповая: enqueue только ставит запись в очередь, а первый ожидающий в awaitDurable
+// становится ведущим и одной записью (и одним fsync) сохраняет все накопившиеся записи.
+// Остальные ждут, пока их номер не окажется сохраненным.
+public class TaskJournal {
+    private static final int RECORD_HEADER = Integer.BYTES * 2;
+
+    private final File file;
+    private final Durability durability;
+    private FileChannel channel;
+    private int records;
+
+    // Очередь и номера записей защищены lock
+    private final Object lock = new Object();
+    private List<ByteBuffer> pending = new ArrayList<>();
+    private long enqueued;
+    private long durable;
+    // Запись в файл выполняет один поток: ведущий группы, фоновый поток или ротация
+    private boolean flushing;
+    private IOException failure;
+    private ScheduledExecutorService syncer;
+
+    // records - число записей, уже прочитанных из файла при восстановлении
+    public TaskJournal(File file, int records) throws IOException {
+        this(file, records, Durability.OS_BUFFERED, 0);
+    }
+
+    public TaskJournal(File file, int records, Durability durability, long syncIntervalMillis) throws IOException {
+        this.file = file;
+        this.records = records;
+        this.durability = durability;
+        open();
+        if (durability == Durability.INTERVAL) {
+            syncer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "journal-sync");
+                thread.setDaemon(true);
+                return thread;
+            });
+            syncer.scheduleWithFixedDelay(this::syncPending, syncIntervalMillis, syncIntervalMillis,
+                    TimeUnit.MILLISECONDS);
+        }
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    // Число записей в текущем файле журнала
+    public int records() {
+        return records;
+    }
+
+    // Ставит запись в очередь и возвращает ее номер для awaitDurable
+    public long enqueue(List<String> operations) {
+        ByteBuffer record = encode(operations);
+        synchronized (lock) {
+            pending.add(record);
+            records++;
+            return ++enqueued;
+        }
+    }
+
+    // Дожидается, пока запись с номером sequence не будет сохранена согласно режиму
+    public void awaitDurable(long sequence) throws IOException {
+        while (true) {
+            List<ByteBuffer> batch;
+            long batchEnd;
+            synchronized (lock) {
+                while (durable < sequence && failure == null
+                        && (flushing || durability == Durability.INTERVAL)) {
+                    waitForFlush();
+                }
+                if (failure != null) {
+                    throw new IOException("Журнал недоступен после ошибки записи", failure);
+                }
+                if (durable >= sequence) {
+                    return;
+                }
+                flushing = true;
+                batch = pending;
+                pending = new ArrayList<>();
+                batchEnd = enqueued;
+            }
+            flush(batch, batchEnd, durability == Durability.EVERY_OP);
+        }
+    }
+
+    public void append(List<String> operations) throws IOException {
+        awaitDurable(enqueue(operations));
+    }
+
+    private static ByteBuffer encode(List<String> operations) {
+        byte[][] encoded = new byte[operations.size()][];
+        int payloadLength = Integer.BYTES;
+        for (int i = 0; i < encoded.length; i++) {
+            encoded[i] = operations.get(i).getBytes(StandardCharsets.UTF_8);
+            payloadLength += Integer.BYTES + encoded[i].length;
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocate(RECORD_HEADER + payloadLength);
+        buffer.putInt(payloadLength);
+        buffer.putInt(0);
+        buffer.putInt(encoded.length);
+        for (byte[] operation : encoded) {
+            buffer.putInt(operation.length);
+            buffer.put(operation);
+        }
+        CRC32 crc = new CRC32();
+        crc.update(buffer.array(), RECORD_HEADER, payloadLength);
+        buffer.putInt(Integer.BYTES, (int) crc.getValue());
+        buffer.flip();
+        return buffer;
+    }
+
+    // Записывает группу одним вызовом и отмечает ее сохраненной
+    private void flush(List<ByteBuffer> batch, long batchEnd, boolean force) {
+        IOException error = null;
+        try {
+            write(batch, force);
+        } catch (IOException e) {
+            error = e;
+        }
+        synchronized (lock) {
+            flushing = false;
+            if (error != null) {
+                failure = error;
+            } else {
+                durable = Math.max(durable, batchEnd);
+            }
+            lock.notifyAll();
+        }
+    }
+
+    private void write(List<ByteBuffer> batch, boolean force) throws IOException {
+        if (!batch.isEmpty()) {
+            ByteBuffer[] buffers = batch.toArray(new ByteBuffer[0]);
+            ByteBuffer last = buffers[buffers.length - 1];
+            while (last.hasRemaining()) {
+                channel.write(buffers);
+            }
+        }
+        if (force) {
+            channel.force(false);
+        }
+    }
+
+    // Фоновый сброс в режиме INTERVAL
+    private void syncPending() {
+        List<ByteBuffer> batch;
+        long batchEnd;
+        synchronized (lock) {
+            if (flushing || failure != null || durable == enqueued) {
+                return;
+            }
+            flushing = true;
+            batch = pending;
+            pending = new ArrayList<>();
+            batchEnd = enqueued;
+        }
+        flush(batch, batchEnd, true);
+    }
+
+    // Дописывает очередь на диск и удерживает право записи за вызывающим
+    private void drain() throws IOException {
+        List<ByteBuffer> batch;
+        synchronized (lock) {
+            while (flushing) {
+                waitForFlush();
+            }
+            if (failure != null) {
+                throw new IOException("Журнал недоступен после ошибки записи", failure);
+            }
+            flushing = true;
+            batch = pending;
+            pending = new ArrayList<>();
+        }
+        try {
+            write(batch, durability != Durability.OS_BUFFERED);
+        } catch (IOException e) {
+            release(e);
+            throw e;
+        }
+    }
+
+    private void release(IOException error) {
+        synchronized (lock) {
+            flushing = false;
+            if (error != null) {
+                failure = error;
+            } else {
+                durable = enqueued;
+            }
+            lock.notifyAll();
+        }
+    }
+
+    private void waitForFlush() throws InterruptedIOException {
+        try {
+            lock.wait();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Ожидание записи журнала прервано");
+        }
+    }
+
+    // Переименовывает текущий журнал в segment и начинает новый пустой журнал.
+    // Вызывается под блокировкой менеджера, поэтому новых записей в очереди не появится
+    public void rotate(File segment) throws IOException {
+        drain();
+        IOException error = null;
+        try {
+            channel.close();
+            Files.move(file.toPath(), segment.toPath(), StandardCopyOption.ATOMIC_MOVE);
+            open();
+            records = 0;
+        } catch (IOException e) {
+            error = e;
+            throw e;
+        } finally {
+            release(error);
+        }
+    }
+
+    public void close() throws IOException {
+        if (syncer != null) {
+            syncer.shutdown();
+        }
+        if (!channel.isOpen()) {
+            return;
+        }
+        drain();
+        try {
+            channel.close();
+        } finally {
+            release(null);
+        }
+    }
+
+    // Читает записи журнала; хвост после первой поврежденной записи отрезается
+    public static List<List<String>> read(File file) throws IOException {
+        List<List<String>> result = new ArrayList<>();
+        if (!file.exists()) {
+            return result;
+        }
+        try (FileChannel input = FileChannel.open(file.toPath(), StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            long size = input.size();
+            long position = 0;
+            ByteBuffer header = ByteBuffer.allocate(RECORD_HEADER);
+            while (true) {
+                List<String> operations = readRecord(input, position, size, header);
+                if (operations == null) {
+                    break;
+                }
+                result.add(operations);
+                position = input.position();
+            }
+            if (position < size) {
+                input.truncate(position);
+                input.force(true);
+            }
+        }
+        return result;
+    }
+
+    private static List<String> readRecord(FileChannel input, long position, long size, ByteBuffer header)
+            throws IOException {
+        if (size - position < RECORD_HEADER) {
+            return null;
+        }
+        header.clear();
+        readFully(input, header, position);
+        int length = header.getInt(0);
+        int checksum = header.getInt(Integer.BYTES);
+        if (length < Integer.BYTES || length > size - position - RECORD_HEADER) {
+            return null;
+        }
+
+        ByteBuffer payload = ByteBuffer.allocate(length);
+        readFully(input, payload, position + RECORD_HEADER);
+        CRC32 crc = new CRC32();
+        crc.update(payload.array(), 0, length);
+        if ((int) crc.getValue() != checksum) {
+            return null;
+        }
+        input.position(position + RECORD_HEADER + length);
+
+        payload.flip();
+        int count = payload.getInt();
+        List<String> operations = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            int operationLength = payload.getInt();
+            operations.add(new String(payload.array(), payload.position(), operationLength, StandardCharsets.UTF_8));
+            payload.position(payload.position() + operationLength);
+        }
+        return operations;
+    }
+
+    private static void readFully(FileChannel input, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (input.read(buffer, position + buffer.position()) < 0) {
+                throw new IOException("Неожиданный конец журнала");
+            }
+        }
+    }
+
+    private void open() throws IOException {
+        channel = FileChannel.open(file.toPath(),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+    }
+}
@@ -3,8 +3,14 @@ package ru.practicum.task_tracker.service;
 import ru.practicum.task_tracker.model.Epic;
 import ru.practicum.task_tracker.model.Subtask;
 import ru.practicum.task_tracker.model.Task;
+import ru.practicum.task_tracker.model.TimeConflict;
 
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
 import java.util.List;
+import java.util.SortedMap;
 
 public interface TaskManager {
 
@@ -35,6 +41,12 @@ public interface TaskManager {
     // Возвращает подзадачи эпиков
     List<Subtask> getSubtasksByEpic(int epicId);
 
+    // Возвращает эпики, вложенные в эпик
+    List<Epic> getChildEpics(int epicId);
+
+    // Возвращает подзадачи эпика в порядке начала, подзадачи без времени - в конце
+    List<Subtask> getSubtasksByEpicSortedByStart(int epicId);
+
     // Возвращает подзадачу по Id
     Subtask getSubtaskById(int id);
 
@@ -70,4 +82,46 @@ public interface TaskManager {
 
     // Возвращает массив задач в заданном порядке
     List<Task> getPrioritizedTasks();
+
+    // Возвращает задачи по времени, пересекающиеся с окном [from, to); null - без ограничения
+    List<Task> getPrioritizedTasks(LocalDateTime from, LocalDateTime to);
+
+    // То же для расписания одного исполнителя; null - задачи без исполнителя
+    List<Task> getPrioritizedTasks(String assignee, LocalDateTime from, LocalDateTime to);
+
+    // Возвращает самое раннее время начала свободного окна заданной длины
+    // в диапазоне [notBefore, notAfter] или null, если окна нет; notAfter == null - без ограничения
+    LocalDateTime findFreeSlot(Duration duration, LocalDateTime notBefore, LocalDateTime notAfter);
+
+    // То же в расписании одного исполнителя
+    LocalDateTime findFreeSlot(String assignee, Duration duration, LocalDateTime notBefore, LocalDateTime notAfter);
+
+    // Раскладывает незапланированные задачи и подзадачи по свободному времени
+    // в диапазоне [from, to] внутри рабочих часов; возвращает размещенные задачи
+    List<Task> scheduleBacklog(LocalDateTime from, LocalDateTime to, LocalTime workStart, LocalTime workEnd);
+
+    // Возвращает сумму запланированных минут по дням в диапазоне [from, to]
+    SortedMap<LocalDate, Long> getDailyLoad(LocalDate from, LocalDate to);
+
+    // Возвращает все пары пересекающихся по времени задач
+    List<TimeConflict> findConflicts();
+
+    // Срабатывают триггеры, наступившие к моменту now: задачи переходят в IN_PROGRESS
+    // в момент начала и помечаются просроченными в момент окончания; возвращает измененные задачи
+    List<Task> fireDueTriggers(LocalDateTime now);
+
+    // Подзадача blockedId не может начаться раньше окончания blockerId;
+    // зависимость, замыкающая цикл, отклоняется
+    void addDependency(int blockerId, int blockedId);
+
+    void removeDependency(int blockerId, int blockedId);
+
+    // Возвращает id подзадач, блокирующих данную
+    List<Integer> getBlockers(int subtaskId);
+
+    // Самое раннее окончание эпика от начала работ с учетом зависимостей подзадач
+    Duration getEarliestFinish(int epicId);
+
+    // Цепочка зависимых подзадач, определяющая окончание эпика
+    List<Subtask> getCriticalPath(int epicId);
 }
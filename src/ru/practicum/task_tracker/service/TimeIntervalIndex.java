@@ -0,0 +1,192 @@
+package ru.practicum.task_tracker.service;
+
+import ru.practicum.task_tracker.model.Task;
+
+import java.time.LocalDateTime;
+import java.util.HashMap;
+
+// Индекс временных интервалов задач: AVL-дерево по (startTime, id),
+// в каждом узле хранится максимальный конец интервала в поддереве.
+// Проверка пересечения выполняется за O(log n) вместо обхода всех задач.
+public class TimeIntervalIndex implements TimeSlotIndex {
+    private final HashMap<Integer, Node> nodesById = new HashMap<>();
+    private Node root;
+
+    private static class Node {
+        private final int id;
+        private final LocalDateTime start;
+        private final LocalDateTime end;
+        private LocalDateTime maxEnd;
+        private int height;
+        private Node left;
+        private Node right;
+
+        private Node(int id, LocalDateTime start, LocalDateTime end) {
+            this.id = id;
+            this.start = start;
+            this.end = end;
+            this.maxEnd = end;
+            this.height = 1;
+        }
+    }
+
+    @Override
+    public void add(Task task) {
+        if (task == null || task.getStartTime() == null) {
+            return;
+        }
+        remove(task.getId());
+
+        LocalDateTime start = task.getStartTime();
+        LocalDateTime end = task.getEndTime() != null ? task.getEndTime() : start;
+        Node node = new Node(task.getId(), start, end);
+        root = insert(root, node);
+        nodesById.put(node.id, node);
+    }
+
+    // Используются сохраненные границы, поэтому удаление корректно,
+    // даже если объект задачи уже изменили
+    @Override
+    public void remove(int id) {
+        Node node = nodesById.remove(id);
+        if (node != null) {
+            root = delete(root, node);
+        }
+    }
+
+    @Override
+    public void clear() {
+        nodesById.clear();
+        root = null;
+    }
+
+    public int size() {
+        return nodesById.size();
+    }
+
+    @Override
+    public boolean hasOverlap(LocalDateTime start, LocalDateTime end, int excludedId) {
+        return findOverlap(root, start, end, excludedId);
+    }
+
+    private boolean findOverlap(Node node, LocalDateTime start, LocalDateTime end, int excludedId) {
+        while (node != null && !node.maxEnd.isBefore(start)) {
+            if (node.id != excludedId && !node.end.isBefore(start) && !node.start.isAfter(end)) {
+                return true;
+            }
+            if (node.left != null && !node.left.maxEnd.isBefore(start)
+                    && findOverlap(node.left, start, end, excludedId)) {
+                return true;
+            }
+            if (node.start.isAfter(end)) {
+                return false;
+            }
+            node = node.right;
+        }
+        return false;
+    }
+
+    private static int compare(Node a, Node b) {
+        int result = a.start.compareTo(b.start);
+        return result != 0 ? result : Integer.compare(a.id, b.id);
+    }
+
+    private Node insert(Node node, Node inserted) {
+        if (node == null) {
+            return inserted;
+        }
+        if (compare(inserted, node) < 0) {
+            node.left = insert(node.left, inserted);
+        } else {
+            node.right = insert(node.right, inserted);
+        }
+        return balance(node);
+    }
+
+    private Node delete(Node node, Node deleted) {
+        if (node == null) {
+            return null;
+        }
+        int cmp = compare(deleted, node);
+        if (cmp < 0) {
+            node.left = delete(node.left, deleted);
+        } else if (cmp > 0) {
+            node.right = delete(node.right, deleted);
+        } else {
+            if (node.left == null) {
+                return node.right;
+            }
+            if (node.right == null) {
+                return node.left;
+            }
+            Node successor = node.right;
+            while (successor.left != null) {
+                successor = successor.left;
+            }
+            successor.right = deleteMin(node.right);
+            successor.left = node.left;
+            node = successor;
+        }
+        return balance(node);
+    }
+
+    private Node deleteMin(Node node) {
+        if (node.left == null) {
+            return node.right;
+        }
+        node.left = deleteMin(node.left);
+        return balance(node);
+    }
+
+    private static int height(Node node) {
+        return node == null ? 0 : node.height;
+    }
+
+    private static void update(Node node) {
+        node.height = Math.max(height(node.left), height(node.right)) + 1;
+        LocalDateTime maxEnd = node.end;
+        if (node.left != null && node.left.maxEnd.isAfter(maxEnd)) {
+            maxEnd = node.left.maxEnd;
+        }
+        if (node.right != null && node.right.maxEnd.isAfter(maxEnd)) {
+            maxEnd = node.right.maxEnd;
+        }
+        node.maxEnd = maxEnd;
+    }
+
+    private Node balance(Node node) {
+        update(node);
+        int factor = height(node.left) - height(node.right);
+        if (factor > 1) {
+            if (height(node.left.left) < height(node.left.right)) {
+                node.left = rotateLeft(node.left);
+            }
+            return rotateRight(node);
+        }
+        if (factor < -1) {
+            if (height(node.right.right) < height(node.right.left)) {
+                node.right = rotateRight(node.right);
+            }
+            return rotateLeft(node);
+        }
+        return node;
+    }
+
+    private Node rotateRight(Node node) {
+        Node pivot = node.left;
+        node.left = pivot.right;
+        pivot.right = node;
+        update(node);
+        update(pivot);
+        return pivot;
+    }
+
+    private Node rotateLeft(Node node) {
+        Node pivot = node.right;
+        node.right = pivot.left;
+        pivot.left = node;
+        update(node);
+        update(pivot);
+        return pivot;
+    }
+}
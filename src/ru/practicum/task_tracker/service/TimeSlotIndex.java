@@ -0,0 +1,21 @@
+package ru.practicum.task_tracker.service;
+
+import ru.practicum.task_tracker.model.Task;
+
+import java.time.LocalDateTime;
+
+// Индекс занятых интервалов, по которому менеджер проверяет пересечения задач
+public interface TimeSlotIndex {
+
+    // Добавляет интервал задачи; задачи без времени начала не индексируются
+    void add(Task task);
+
+    // Удаляет интервал задачи по id
+    void remove(int id);
+
+    // Проверяет, пересекается ли отрезок [start, end] с какой-либо задачей, кроме excludedId
+    boolean hasOverlap(LocalDateTime start, LocalDateTime end, int excludedId);
+
+    // Очищает индекс
+    void clear();
+}
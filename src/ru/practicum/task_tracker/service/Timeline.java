@@ -0,0 +1,336 @@
+package ru.practicum.task_tracker.service;
+
+import ru.practicum.task_tracker.model.RecurringTask;
+import ru.practicum.task_tracker.model.Task;
+import ru.practicum.task_tracker.model.TimeConflict;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.NavigableSet;
+import java.util.PriorityQueue;
+import java.util.TreeSet;
+
+// Упорядоченное по времени расписание задач. Если задан индекс занятости,
+// расписание также отвечает на вопрос о пересечении интервалов.
+// Повторяющиеся серии хранятся отдельно одной записью: их вхождения
+// вычисляются только внутри запрошенного окна
+public class Timeline {
+    // Задачи, касающиеся границами, считаются пересекающимися,
+    // поэтому между соседними задачами нужен хотя бы такой зазор
+    public static final Duration MIN_GAP = Duration.ofMinutes(1);
+    // Ограничение на цикл повторения серий при поиске окна без верхней границы
+    private static final long MAX_CYCLE_DAYS = 100 * 366;
+
+    private static final Comparator<Task> ORDER = Comparator
+            .comparing(Task::getStartTime, Comparator.nullsLast(Comparator.naturalOrder()))
+            .thenComparing(Task::getId);
+
+    private final TreeSet<Task> tasks = new TreeSet<>(ORDER);
+    private final HashMap<Integer, RecurringTask> series = new HashMap<>();
+    private final TimeSlotIndex index;
+
+    public Timeline(TimeSlotIndex index) {
+        this.index = index;
+    }
+
+    public void add(Task task) {
+        if (task instanceof RecurringTask) {
+            series.put(task.getId(), (RecurringTask) task);
+            return;
+        }
+        tasks.add(task);
+        if (index != null) {
+            index.add(task);
+        }
+    }
+
+    // Массовое добавление при восстановлении: серии откладываются отдельно, разовые задачи
+    // добавляются в дерево и индекс одним проходом
+    public void addAll(Collection<? extends Task> added) {
+        List<Task> single = new ArrayList<>(added.size());
+        for (Task task : added) {
+            if (task instanceof RecurringTask) {
+                series.put(task.getId(), (RecurringTask) task);
+            } else {
+                single.add(task);
+            }
+        }
+        tasks.addAll(single);
+        if (index != null) {
+            for (Task task : single) {
+                index.add(task);
+            }
+        }
+    }
+
+    public void remove(Task task) {
+        if (series.remove(task.getId()) != null) {
+            return;
+        }
+        if (task.getStartTime() != null) {
+            tasks.remove(task);
+        }
+        if (index != null) {
+            index.remove(task.getId());
+        }
+    }
+
+    public boolean isEmpty() {
+        return tasks.isEmpty() && series.isEmpty();
+    }
+
+    // Разовые задачи и серии (каждая серия - одной записью) в порядке начала
+    public List<Task> getTasks() {
+        List<Task> result = new ArrayList<>(tasks);
+        if (!series.isEmpty()) {
+            result.addAll(series.values());
+            result.sort(ORDER);
+        }
+        return result;
+    }
+
+    // Проверяет, пересекается ли задача с какой-либо другой задачей расписания.
+    // Разовая задача сверяется с каждой серией за O(1)
+    public boolean hasOverlap(Task task) {
+        if (task instanceof RecurringTask) {
+            return seriesHasOverlap((RecurringTask) task);
+        }
+        return index.hasOverlap(task.getStartTime(), endOf(task), task.getId()) || hasSeriesOverlap(task);
+    }
+
+    // Пересечение разовой задачи только с вхождениями серий
+    public boolean hasSeriesOverlap(Task task) {
+        for (RecurringTask recurring : series.values()) {
+            if (recurring.getId() != task.getId()
+                    && recurring.occurrenceOverlapping(task.getStartTime(), endOf(task)) != null) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // Серия сверяется с разовыми задачами, лежащими в пределах ее вхождений, и с другими сериями
+    private boolean seriesHasOverlap(RecurringTask recurring) {
+        LocalDateTime lastEnd = recurring.getLastEndTime();
+        Task previous = tasks.lower(timeProbe(recurring.getStartTime()));
+        if (previous != null && previous.getId() != recurring.getId()
+                && recurring.occurrenceOverlapping(previous.getStartTime(), endOf(previous)) != null) {
+            return true;
+        }
+        for (Task task : tasks.tailSet(timeProbe(recurring.getStartTime()), true)) {
+            if (lastEnd != null && task.getStartTime().isAfter(lastEnd)) {
+                break;
+            }
+            if (task.getId() != recurring.getId()
+                    && recurring.occurrenceOverlapping(task.getStartTime(), endOf(task)) != null) {
+                return true;
+            }
+        }
+        for (RecurringTask other : series.values()) {
+            if (other.getId() != recurring.getId() && firstSeriesConflict(recurring, other) != null) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // Задачи, пересекающиеся с окном [from, to). Работаем с представлениями TreeSet:
+    // стоимость зависит только от задач внутри окна. Из начавшихся до окна берется только
+    // ближайшая задача, поэтому задачи расписания не должны пересекаться между собой
+    public List<Task> window(LocalDateTime from, LocalDateTime to) {
+        List<Task> result = new ArrayList<>();
+        NavigableSet<Task> window;
+        if (from == null) {
+            window = to == null ? tasks : tasks.headSet(timeProbe(to), false);
+        } else {
+            Task previous = tasks.lower(timeProbe(from));
+            if (previous != null && endOf(previous).isAfter(from)) {
+                result.add(previous);
+            }
+            window = to == null
+                    ? tasks.tailSet(timeProbe(from), true)
+                    : tasks.subSet(timeProbe(from), true, timeProbe(to), false);
+        }
+        result.addAll(window);
+        return withSeries(result, from, to);
+    }
+
+    // Окно по нескольким расписаниям без пересечений внутри каждого: задачи разных расписаний
+    // могут пересекаться, поэтому окна строятся по отдельности и сливаются в общем порядке
+    public static List<Task> window(Collection<Timeline> timelines, LocalDateTime from, LocalDateTime to) {
+        List<Task> result = new ArrayList<>();
+        for (Timeline timeline : timelines) {
+            result.addAll(timeline.window(from, to));
+        }
+        result.sort(ORDER);
+        return result;
+    }
+
+    // Дополняет разовые задачи окна [from, to) вхождениями серий в общем порядке расписания
+    public List<Task> withSeries(List<Task> window, LocalDateTime from, LocalDateTime to) {
+        if (!series.isEmpty()) {
+            for (RecurringTask recurring : series.values()) {
+                window.addAll(recurring.occurrencesBetween(from, to));
+            }
+            window.sort(ORDER);
+        }
+        return window;
+    }
+
+    // Проход по промежуткам между разовыми задачами, начиная с notBefore; если кандидат
+    // задевает вхождение серии, он сдвигается за это вхождение и проход продолжается
+    public LocalDateTime findFreeSlot(Duration duration, LocalDateTime notBefore, LocalDateTime notAfter) {
+        LocalDateTime limit = notAfter != null ? notAfter : searchHorizon(duration, notBefore);
+        LocalDateTime candidate = notBefore;
+        while (true) {
+            candidate = skipTasks(duration, candidate, limit);
+            if (candidate == null) {
+                return null;
+            }
+            LocalDateTime moved = candidate;
+            for (RecurringTask recurring : series.values()) {
+                Task occurrence = recurring.occurrenceOverlapping(moved, moved.plus(duration));
+                if (occurrence != null) {
+                    moved = endOf(occurrence).plus(MIN_GAP);
+                }
+            }
+            if (moved.equals(candidate)) {
+                return candidate;
+            }
+            candidate = moved;
+        }
+    }
+
+    // Расположение вхождений бесконечных серий повторяется с периодом НОК их шагов,
+    // поэтому дальше одного такого цикла после всех разовых задач искать бессмысленно
+    private LocalDateTime searchHorizon(Duration duration, LocalDateTime notBefore) {
+        LocalDateTime base = notBefore;
+        long cycleDays = 1;
+        Duration longest = Duration.ZERO;
+        boolean hasInfinite = false;
+        for (RecurringTask recurring : series.values()) {
+            if (recurring.isInfinite()) {
+                hasInfinite = true;
+                cycleDays = Math.min(MAX_CYCLE_DAYS, lcm(cycleDays, recurring.getEveryDays()));
+                if (recurring.getDuration() != null && recurring.getDuration().compareTo(longest) > 0) {
+                    longest = recurring.getDuration();
+                }
+            } else if (recurring.getLastEndTime().isAfter(base)) {
+                base = recurring.getLastEndTime();
+            }
+        }
+        if (!hasInfinite) {
+            return null;
+        }
+        if (!tasks.isEmpty() && endOf(tasks.last()).isAfter(base)) {
+            base = endOf(tasks.last());
+        }
+        return base.plusDays(cycleDays).plus(longest).plus(duration).plus(MIN_GAP);
+    }
+
+    // Сдвигает кандидата за разовые задачи; null, если окно не помещается до limit
+    private LocalDateTime skipTasks(Duration duration, LocalDateTime notBefore, LocalDateTime limit) {
+        LocalDateTime candidate = notBefore;
+        Task previous = tasks.lower(timeProbe(notBefore));
+        if (previous != null && !endOf(previous).isBefore(candidate)) {
+            candidate = endOf(previous).plus(MIN_GAP);
+        }
+
+        for (Task task : tasks.tailSet(timeProbe(notBefore), true)) {
+            if (limit != null && candidate.plus(duration).isAfter(limit)) {
+                return null;
+            }
+            if (task.getStartTime().isAfter(candidate.plus(duration))) {
+                break;
+            }
+            if (!endOf(task).isBefore(candidate)) {
+                candidate = endOf(task).plus(MIN_GAP);
+            }
+        }
+
+        if (limit != null && candidate.plus(duration).isAfter(limit)) {
+            return null;
+        }
+        return candidate;
+    }
+
+    // Сканирующая прямая по упорядоченному расписанию: O(n log n + k), где k - число найденных пар.
+    // Для серий сообщается первое пересечение с каждой задачей и с каждой другой серией
+    public void findConflicts(List<TimeConflict> conflicts) {
+        PriorityQueue<Task> active = new PriorityQueue<>(Comparator.comparing(Timeline::endOf));
+        for (Task task : tasks) {
+            while (!active.isEmpty() && endOf(active.peek()).isBefore(task.getStartTime())) {
+                active.poll();
+            }
+            for (Task other : active) {
+                conflicts.add(new TimeConflict(other, task));
+            }
+            active.add(task);
+        }
+
+        List<RecurringTask> allSeries = new ArrayList<>(series.values());
+        for (int i = 0; i < allSeries.size(); i++) {
+            RecurringTask recurring = allSeries.get(i);
+            LocalDateTime lastEnd = recurring.getLastEndTime();
+            for (Task task : tasks) {
+                if (lastEnd != null && task.getStartTime().isAfter(lastEnd)) {
+                    break;
+                }
+                Task occurrence = recurring.occurrenceOverlapping(task.getStartTime(), endOf(task));
+                if (occurrence != null) {
+                    conflicts.add(new TimeConflict(occurrence, task));
+                }
+            }
+            for (int j = i + 1; j < allSeries.size(); j++) {
+                TimeConflict conflict = firstSeriesConflict(recurring, allSeries.get(j));
+                if (conflict != null) {
+                    conflicts.add(conflict);
+                }
+            }
+        }
+    }
+
+    // Взаимное расположение вхождений двух серий повторяется с периодом НОК их шагов,
+    // поэтому достаточно проверить вхождения первой серии на одном таком цикле
+    private static TimeConflict firstSeriesConflict(RecurringTask first, RecurringTask second) {
+        LocalDateTime from = first.getStartTime().isAfter(second.getStartTime())
+                ? first.getStartTime() : second.getStartTime();
+        LocalDateTime to = from.plusDays(lcm(first.getEveryDays(), second.getEveryDays()))
+                .plus(first.getDuration()).plus(second.getDuration());
+        for (Task occurrence : first.occurrencesOverlapping(from, to)) {
+            Task other = second.occurrenceOverlapping(occurrence.getStartTime(), endOf(occurrence));
+            if (other != null) {
+                return new TimeConflict(occurrence, other);
+            }
+        }
+        return null;
+    }
+
+    private static long lcm(long a, long b) {
+        long x = a;
+        long y = b;
+        while (y != 0) {
+            long r = x % y;
+            x = y;
+            y = r;
+        }
+        return a / x * b;
+    }
+
+    // Задача-зонд для поиска в TreeSet: идет раньше всех задач с тем же временем начала
+    private static Task timeProbe(LocalDateTime time) {
+        Task probe = new Task("", "");
+        probe.setId(Integer.MIN_VALUE);
+        probe.setStartTime(time);
+        return probe;
+    }
+
+    public static LocalDateTime endOf(Task task) {
+        return task.getEndTime() != null ? task.getEndTime() : task.getStartTime();
+    }
+}
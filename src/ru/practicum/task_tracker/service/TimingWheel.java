@@ -0,0 +1,197 @@
+package ru.practicum.task_tracker.service;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+// Иерархическое хешированное колесо таймеров с шагом в одну минуту.
+// Четыре уровня по 64 ячейки покрывают около 32 лет; более далекие таймеры
+// лежат на верхнем уровне и перекладываются при его обороте.
+// Добавление и отмена таймера - O(1), продвижение времени - O(1) на непустой тик
+// плюс перекладывание таймеров при переходе на следующий оборот уровня.
+public class TimingWheel {
+    private static final int LEVELS = 4;
+    private static final int SLOT_BITS = 6;
+    private static final int SLOTS = 1 << SLOT_BITS;
+    private static final int SLOT_MASK = SLOTS - 1;
+
+    public enum Kind {
+        START,
+        END
+    }
+
+    public static class Timer {
+        private final int taskId;
+        private final Kind kind;
+        private final long deadline;
+        private Timer prev;
+        private Timer next;
+        private int level;
+        private int slot;
+
+        private Timer(int taskId, Kind kind, long deadline) {
+            this.taskId = taskId;
+            this.kind = kind;
+            this.deadline = deadline;
+        }
+
+        public int getTaskId() {
+            return taskId;
+        }
+
+        public Kind getKind() {
+            return kind;
+        }
+    }
+
+    private final Timer[][] wheels = new Timer[LEVELS][SLOTS];
+    // Число таймеров на каждом уровне: пустые уровни пропускаются при продвижении
+    private final int[] levelSizes = new int[LEVELS];
+    // id задачи -> таймеры начала и окончания
+    private final HashMap<Integer, Timer[]> timersByTask = new HashMap<>();
+    private long currentTick;
+    private int size;
+
+    public TimingWheel(LocalDateTime now) {
+        this.currentTick = toTick(now);
+    }
+
+    public void schedule(int taskId, Kind kind, LocalDateTime at) {
+        cancel(taskId, kind);
+        // Уже наступившие таймеры срабатывают на ближайшем тике
+        Timer timer = new Timer(taskId, kind, Math.max(toDeadline(at), currentTick + 1));
+        timersByTask.computeIfAbsent(taskId, id -> new Timer[Kind.values().length])[kind.ordinal()] = timer;
+        place(timer);
+        size++;
+    }
+
+    public void cancel(int taskId) {
+        for (Kind kind : Kind.values()) {
+            cancel(taskId, kind);
+        }
+    }
+
+    public void cancel(int taskId, Kind kind) {
+        Timer[] timers = timersByTask.get(taskId);
+        if (timers == null || timers[kind.ordinal()] == null) {
+            return;
+        }
+        unlink(timers[kind.ordinal()]);
+        timers[kind.ordinal()] = null;
+        if (timers[0] == null && timers[1] == null) {
+            timersByTask.remove(taskId);
+        }
+        size--;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    // Продвигает время до now и возвращает сработавшие таймеры в порядке наступления
+    public List<Timer> advance(LocalDateTime now) {
+        List<Timer> fired = new ArrayList<>();
+        long target = toTick(now);
+        if (size == 0) {
+            currentTick = Math.max(currentTick, target);
+            return fired;
+        }
+        while (currentTick < target) {
+            skipEmptyTicks(target);
+            if (currentTick == target) {
+                break;
+            }
+            currentTick++;
+            cascade();
+            Timer timer = wheels[0][(int) (currentTick & SLOT_MASK)];
+            while (timer != null) {
+                Timer next = timer.next;
+                cancel(timer.taskId, timer.kind);
+                fired.add(timer);
+                timer = next;
+            }
+            if (size == 0) {
+                currentTick = target;
+            }
+        }
+        return fired;
+    }
+
+    // Если нижние уровни пусты, до ближайшей границы следующего уровня ничего
+    // не сработает и не переложится, поэтому время сдвигается сразу к ней
+    private void skipEmptyTicks(long target) {
+        int level = 0;
+        while (level < LEVELS - 1 && levelSizes[level] == 0) {
+            level++;
+        }
+        if (level == 0) {
+            return;
+        }
+        int bits = SLOT_BITS * level;
+        long boundary = ((currentTick >>> bits) + 1) << bits;
+        currentTick = Math.max(currentTick, Math.min(target, boundary - 1));
+    }
+
+    // На границе оборота нижнего уровня таймеры из очередной ячейки верхнего
+    // уровня перекладываются ниже
+    private void cascade() {
+        for (int level = 1; level < LEVELS; level++) {
+            if ((currentTick & ((1L << (SLOT_BITS * level)) - 1)) != 0) {
+                return;
+            }
+            int slot = (int) ((currentTick >>> (SLOT_BITS * level)) & SLOT_MASK);
+            Timer timer = wheels[level][slot];
+            wheels[level][slot] = null;
+            while (timer != null) {
+                Timer next = timer.next;
+                levelSizes[level]--;
+                timer.prev = null;
+                timer.next = null;
+                place(timer);
+                timer = next;
+            }
+        }
+    }
+
+    private void place(Timer timer) {
+        long delta = timer.deadline - currentTick;
+        int level = 0;
+        while (level < LEVELS - 1 && delta >= 1L << (SLOT_BITS * (level + 1))) {
+            level++;
+        }
+        timer.level = level;
+        levelSizes[level]++;
+        timer.slot = (int) ((timer.deadline >>> (SLOT_BITS * level)) & SLOT_MASK);
+        Timer head = wheels[level][timer.slot];
+        timer.next = head;
+        if (head != null) {
+            head.prev = timer;
+        }
+        wheels[level][timer.slot] = timer;
+    }
+
+    private void unlink(Timer timer) {
+        levelSizes[timer.level]--;
+        if (timer.prev != null) {
+            timer.prev.next = timer.next;
+        } else if (wheels[timer.level][timer.slot] == timer) {
+            wheels[timer.level][timer.slot] = timer.next;
+        }
+        if (timer.next != null) {
+            timer.next.prev = timer.prev;
+        }
+        timer.prev = null;
+        timer.next = null;
+    }
+
+    private static long toTick(LocalDateTime time) {
+        return Math.floorDiv(time.toEpochSecond(ZoneOffset.UTC), 60);
+    }
+
+    // Таймер срабатывает в первую минуту, когда его время уже наступило
+    private static long toDeadline(LocalDateTime time) {
+        return Math.floorDiv(time.toEpochSecond(ZoneOffset.UTC) + 59, 60);
+    }
+}
@@ -7,6 +7,10 @@ import ru.practicum.task_tracker.service.InMemoryTaskManager;
 import ru.practicum.task_tracker.service.Managers;
 import ru.practicum.task_tracker.service.TaskManager;
 
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+
 import static org.junit.jupiter.api.Assertions.*;
 
 class EpicTest {
@@ -145,4 +149,78 @@ class EpicTest {
         assertEquals(Status.IN_PROGRESS, epicAfterAdd.getStatus(),
                 "Статус эпика должен обновиться при добавлении подзадачи");
     }
-}
\ No newline at end of file
+
+    @Test
+    void shouldKeepStatusCountersWhenSubtasksChangeInPlace() {
+        Subtask subtask1 = new Subtask("Subtask 1", "Description 1", epic.getId());
+        Subtask subtask2 = new Subtask("Subtask 2", "Description 2", epic.getId());
+        taskManager.addSubtask(subtask1);
+        taskManager.addSubtask(subtask2);
+
+        subtask1.setStatus(Status.DONE);
+        taskManager.updateSubtask(subtask1);
+        assertEquals(Status.IN_PROGRESS, taskManager.getEpicById(epic.getId()).getStatus());
+
+        subtask2.setStatus(Status.DONE);
+        taskManager.updateSubtask(subtask2);
+        assertEquals(Status.DONE, taskManager.getEpicById(epic.getId()).getStatus());
+
+        subtask1.setStatus(Status.NEW);
+        taskManager.updateSubtask(subtask1);
+        taskManager.deleteSubtaskById(subtask2.getId());
+        assertEquals(Status.NEW, taskManager.getEpicById(epic.getId()).getStatus(),
+                "Удаленная подзадача должна вычитаться в том статусе, в котором была учтена");
+    }
+
+    @Test
+    void shouldKeepTimeAggregatesOnSubtaskChanges() {
+        LocalDateTime start = LocalDateTime.of(2024, 1, 1, 10, 0);
+        Subtask early = new Subtask("Early", "Description", epic.getId(), Duration.ofMinutes(30), start);
+        Subtask late = new Subtask("Late", "Description", epic.getId(), Duration.ofHours(1), start.plusHours(5));
+        Subtask unscheduled = new Subtask("Unscheduled", "Description", epic.getId());
+        taskManager.addSubtask(late);
+        taskManager.addSubtask(unscheduled);
+        taskManager.addSubtask(early);
+
+        Epic current = taskManager.getEpicById(epic.getId());
+        assertEquals(start, current.getStartTime());
+        assertEquals(Duration.ofMinutes(90), current.getDuration());
+        assertEquals(start.plusHours(6), current.getEndTime());
+        assertEquals(List.of(early, late, unscheduled), taskManager.getSubtasksByEpicSortedByStart(epic.getId()));
+
+        late.setStartTime(start.minusHours(2));
+        taskManager.updateSubtask(late);
+        taskManager.deleteSubtaskById(early.getId());
+
+        assertEquals(start.minusHours(2), current.getStartTime());
+        assertEquals(Duration.ofHours(1), current.getDuration());
+        assertEquals(start.minusHours(1), current.getEndTime());
+        assertEquals(List.of(late, unscheduled), taskManager.getSubtasksByEpicSortedByStart(epic.getId()));
+    }
+
+    @Test
+    void shouldIgnoreMissingSubtaskIdsAndExposeReadOnlyList() {
+        Epic standalone = new Epic("Epic", "Description");
+        Subtask first = new Subtask("First", "Description", 1);
+        first.setId(10);
+        Subtask second = new Subtask("Second", "Description", 1);
+        second.setId(11);
+        Subtask missing = new Subtask("Missing", "Description", 1);
+        missing.setId(12);
+        standalone.addSubtask(first);
+        standalone.addSubtask(second);
+
+        standalone.deleteSubtaskById(missing);
+        standalone.updateSubtaskById(missing);
+        assertEquals(List.of(first, second), standalone.getSubtasksList(),
+                "Отсутствующий id не должен удалять или добавлять подзадачи");
+
+        Subtask renamed = new Subtask("Renamed", "Description", 1);
+        renamed.setId(10);
+        standalone.updateSubtaskById(renamed);
+        assertEquals("Renamed", standalone.getSubtasksList().get(0).getName(), "Замена сохраняет место подзадачи");
+
+        assertThrows(UnsupportedOperationException.class, () -> standalone.getSubtasksList().add(missing));
+        assertThrows(UnsupportedOperationException.class, () -> standalone.getSubtasksList().clear());
+    }
+}
@@ -0,0 +1,50 @@
+package ru.practicum.task_tracker.model;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RecurringTaskTest {
+    private final LocalDateTime start = LocalDateTime.of(2024, 1, 1, 10, 0);
+
+    @Test
+    void shouldExpandOccurrencesOnlyInsideWindow() {
+        RecurringTask standUp = new RecurringTask("Стендап", "Описание", Duration.ofMinutes(15), start, 1, null);
+        standUp.setId(1);
+
+        List<Task> occurrences = standUp.occurrencesBetween(start.plusDays(10), start.plusDays(13));
+
+        assertEquals(3, occurrences.size());
+        assertEquals(start.plusDays(10), occurrences.get(0).getStartTime());
+        assertEquals(start.plusDays(12), occurrences.get(2).getStartTime());
+        assertEquals(1, occurrences.get(0).getId(), "Вхождение должно нести id серии");
+        assertEquals(1, standUp.occurrencesBetween(start.plusDays(100), null).size(),
+                "Бесконечная серия без верхней границы дает ближайшее вхождение");
+    }
+
+    @Test
+    void shouldFindOverlappingOccurrence() {
+        RecurringTask review = new RecurringTask("Ревью", "Описание", Duration.ofHours(1), start, 7, null);
+
+        assertNotNull(review.occurrenceOverlapping(start.plusDays(70).plusMinutes(30), start.plusDays(70).plusHours(2)));
+        assertEquals(start.plusDays(70),
+                review.occurrenceOverlapping(start.plusDays(70).plusHours(1), start.plusDays(70).plusHours(2))
+                        .getStartTime(), "Касание границей считается пересечением");
+        assertNull(review.occurrenceOverlapping(start.plusDays(71), start.plusDays(76)));
+        assertNull(review.occurrenceOverlapping(start.minusDays(1), start.minusMinutes(1)));
+    }
+
+    @Test
+    void shouldStopAtUntil() {
+        RecurringTask sprint = new RecurringTask("Спринт", "Описание", Duration.ofHours(1), start, 14,
+                start.plusDays(28));
+
+        assertEquals(3, sprint.occurrencesBetween(null, null).size());
+        assertEquals(start.plusDays(28).plusHours(1), sprint.getLastEndTime());
+        assertNull(sprint.occurrenceOverlapping(start.plusDays(42), start.plusDays(42).plusHours(1)));
+    }
+}
@@ -2,13 +2,17 @@ package ru.practicum.task_tracker.server;
 
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
 import com.google.gson.reflect.TypeToken;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import ru.practicum.task_tracker.adapter.DurationAdapter;
+import ru.practicum.task_tracker.adapter.EpicAdapterFactory;
 import ru.practicum.task_tracker.adapter.LocalDateTimeAdapter;
 import ru.practicum.task_tracker.model.Epic;
+import ru.practicum.task_tracker.model.RecurringTask;
 import ru.practicum.task_tracker.model.Status;
 import ru.practicum.task_tracker.model.Subtask;
 import ru.practicum.task_tracker.model.Task;
@@ -24,6 +28,7 @@ import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
 import java.time.Duration;
 import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
 import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -34,6 +39,7 @@ class HttpTaskServerTest {
     private final Gson gson = new GsonBuilder()
             .registerTypeAdapter(LocalDateTime.class, new LocalDateTimeAdapter())
             .registerTypeAdapter(Duration.class, new DurationAdapter())
+            .registerTypeAdapterFactory(new EpicAdapterFactory())
             .create();
     private HttpTaskServer server;
     private HttpClient client;
@@ -203,6 +209,49 @@ class HttpTaskServerTest {
         assertEquals("Для получения", retrieved.getName());
     }
 
+    @Test
+    public void testEpicSubtasksSerializedAsList() throws IOException, InterruptedException {
+        int epicId = manager.addEpic(new Epic("Эпик", ""));
+        int subtaskId = manager.addSubtask(new Subtask("S1", "", epicId));
+
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create(BASE_URL + "/epics/" + epicId))
+                .GET()
+                .build();
+        HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+
+        assertEquals(200, response.statusCode());
+        JsonObject json = JsonParser.parseString(response.body()).getAsJsonObject();
+        assertFalse(json.has("subtasks"));
+        assertEquals(1, json.getAsJsonArray("subtasksList").size());
+        Epic retrieved = gson.fromJson(response.body(), Epic.class);
+        assertEquals(subtaskId, retrieved.getSubtasksList().get(0).getId());
+    }
+
+    @Test
+    public void testDirtyEpicSerializedWithFreshAggregates() throws IOException, InterruptedException {
+        ((InMemoryTaskManager) manager).setLazyEpics(true);
+        int epicId = manager.addEpic(new Epic("Эпик", ""));
+        manager.getEpicById(epicId);
+        LocalDateTime start = LocalDateTime.now().plusDays(1).truncatedTo(ChronoUnit.MINUTES);
+        Subtask subtask = new Subtask("S1", "", epicId, Duration.ofMinutes(30), start);
+        subtask.setStatus(Status.DONE);
+        manager.addSubtask(subtask);
+
+        // История отдает эпик, не вызывая его геттеров: эпик сериализуется непересчитанным
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create(BASE_URL + "/history"))
+                .GET()
+                .build();
+        HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+
+        assertEquals(200, response.statusCode());
+        JsonObject epic = JsonParser.parseString(response.body()).getAsJsonArray().get(0).getAsJsonObject();
+        assertEquals("DONE", epic.get("status").getAsString());
+        assertEquals(start, gson.fromJson(epic.get("startTime"), LocalDateTime.class));
+        assertEquals(start.plusMinutes(30), gson.fromJson(epic.get("endTime"), LocalDateTime.class));
+    }
+
     @Test
     public void testDeleteEpic() throws IOException, InterruptedException {
         Epic epic = new Epic("Для удаления", "");
@@ -297,6 +346,30 @@ class HttpTaskServerTest {
         assertEquals("S2", subtasks.get(1).getName());
     }
 
+    @Test
+    public void testGetEpicSubtasksSortedByStart() throws IOException, InterruptedException {
+        int epicId = manager.addEpic(new Epic("Epic", "Description"));
+        manager.addSubtask(new Subtask("Late", "", epicId, Duration.ofMinutes(30), LocalDateTime.of(2030, 1, 2, 10, 0)));
+        manager.addSubtask(new Subtask("Early", "", epicId, Duration.ofMinutes(30), LocalDateTime.of(2030, 1, 1, 10, 0)));
+
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create(BASE_URL + "/epics/" + epicId + "/subtasks?sort=start"))
+                .GET()
+                .build();
+        HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+
+        assertEquals(200, response.statusCode());
+        Subtask[] subtasks = gson.fromJson(response.body(), Subtask[].class);
+        assertEquals("Early", subtasks[0].getName());
+        assertEquals("Late", subtasks[1].getName());
+
+        HttpRequest unknownSort = HttpRequest.newBuilder()
+                .uri(URI.create(BASE_URL + "/epics/" + epicId + "/subtasks?sort=name"))
+                .GET()
+                .build();
+        assertEquals(400, client.send(unknownSort, HttpResponse.BodyHandlers.ofString()).statusCode());
+    }
+
     @Test
     public void testDeleteSubtask() throws IOException, InterruptedException {
         Epic epic = new Epic("Эпик", "");
@@ -318,4 +391,83 @@ class HttpTaskServerTest {
         // Убедимся, что эпик остался
         assertNotNull(manager.getEpicById(epicId));
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testFindFreeSlot() throws IOException, InterruptedException {
+        manager.addTask(new Task("Busy", "", Duration.ofMinutes(60), LocalDateTime.of(2030, 1, 1, 10, 0)));
+
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create(BASE_URL + "/prioritized/free?duration=30&from=2030-01-01T10:00&to=2030-01-01T12:00"))
+                .GET()
+                .build();
+
+        HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+
+        assertEquals(200, response.statusCode());
+        assertTrue(response.body().contains("2030-01-01 11:01"), "Окно должно начинаться после занятой задачи");
+
+        HttpRequest noSlot = HttpRequest.newBuilder()
+                .uri(URI.create(BASE_URL + "/prioritized/free?duration=300&from=2030-01-01T10:00&to=2030-01-01T12:00"))
+                .GET()
+                .build();
+        assertEquals(404, client.send(noSlot, HttpResponse.BodyHandlers.ofString()).statusCode());
+    }
+
+    @Test
+    public void testAddRecurringTaskAndExpandInWindow() throws IOException, InterruptedException {
+        RecurringTask standUp = new RecurringTask("Стендап", "", Duration.ofMinutes(15),
+                LocalDateTime.of(2030, 1, 1, 10, 0), 1, null);
+
+        HttpRequest post = HttpRequest.newBuilder()
+                .uri(URI.create(BASE_URL + "/tasks"))
+                .POST(HttpRequest.BodyPublishers.ofString(gson.toJson(standUp)))
+                .build();
+        assertEquals(201, client.send(post, HttpResponse.BodyHandlers.ofString()).statusCode());
+        assertTrue(manager.getAllTasks().get(0) instanceof RecurringTask);
+
+        HttpRequest window = HttpRequest.newBuilder()
+                .uri(URI.create(BASE_URL + "/prioritized?from=2030-02-01T00:00&to=2030-02-08T00:00"))
+                .GET()
+                .build();
+        HttpResponse<String> response = client.send(window, HttpResponse.BodyHandlers.ofString());
+
+        assertEquals(200, response.statusCode());
+        Task[] occurrences = gson.fromJson(response.body(), Task[].class);
+        assertEquals(7, occurrences.length);
+        assertEquals(LocalDateTime.of(2030, 2, 1, 10, 0), occurrences[0].getStartTime());
+    }
+
+    @Test
+    public void testGetPrioritizedInWindow() throws IOException, InterruptedException {
+        manager.addTask(new Task("Inside", "", Duration.ofMinutes(30), LocalDateTime.of(2030, 1, 1, 10, 0)));
+        manager.addTask(new Task("Outside", "", Duration.ofMinutes(30), LocalDateTime.of(2030, 1, 8, 10, 0)));
+
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create(BASE_URL + "/prioritized?from=2030-01-01T00:00&to=2030-01-08T00:00"))
+                .GET()
+                .build();
+
+        HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+
+        assertEquals(200, response.statusCode());
+        Task[] tasks = gson.fromJson(response.body(), Task[].class);
+        assertEquals(1, tasks.length);
+        assertEquals("Inside", tasks[0].getName());
+    }
+
+    @Test
+    public void testGetDailyLoad() throws IOException, InterruptedException {
+        manager.addTask(new Task("Day 1", "", Duration.ofMinutes(30), LocalDateTime.of(2030, 1, 1, 10, 0)));
+        manager.addTask(new Task("Day 2", "", Duration.ofMinutes(45), LocalDateTime.of(2030, 1, 2, 10, 0)));
+
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create(BASE_URL + "/prioritized/load?from=2030-01-01&to=2030-01-01"))
+                .GET()
+                .build();
+
+        HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+
+        assertEquals(200, response.statusCode());
+        assertEquals("{\"2030-01-01\":30}", response.body());
+    }
+}
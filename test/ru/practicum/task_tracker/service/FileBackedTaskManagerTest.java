@@ -4,15 +4,21 @@ import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import ru.practicum.task_tracker.model.Epic;
+import ru.practicum.task_tracker.model.RecurringTask;
 import ru.practicum.task_tracker.model.Status;
 import ru.practicum.task_tracker.model.Subtask;
 import ru.practicum.task_tracker.model.Task;
+import ru.practicum.task_tracker.model.TimeConflict;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
 import java.nio.file.Files;
 import java.time.Duration;
 import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.Arrays;
+import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -269,4 +275,292 @@ public class FileBackedTaskManagerTest extends TaskManagerTest<FileBackedTaskMan
         assertEquals(updatedTaskStartTime.plus(updatedTaskDuration), finalTask.getEndTime());
     }
 
-}
\ No newline at end of file
+    @Test
+    void shouldFindConflictsInHandEditedFile() throws IOException {
+        Files.writeString(testFile.toPath(), "id,type,name,status,description,epicId,startTime,duration\n" +
+                "1,TASK,Long,NEW,Desc,,120,2023-01-01T10:00\n" +
+                "2,TASK,Inside,NEW,Desc,,30,2023-01-01T10:30\n" +
+                "3,TASK,Tail,NEW,Desc,,60,2023-01-01T11:30\n" +
+                "4,TASK,Separate,NEW,Desc,,60,2023-01-01T15:00\n");
+
+        FileBackedTaskManager loadedManager = loadManager();
+        List<TimeConflict> conflicts = loadedManager.findConflicts();
+
+        assertEquals(2, conflicts.size());
+        assertEquals(1, conflicts.get(0).getFirst().getId());
+        assertEquals(2, conflicts.get(0).getSecond().getId());
+        assertEquals(1, conflicts.get(1).getFirst().getId());
+        assertEquals(3, conflicts.get(1).getSecond().getId());
+        assertTrue(taskManager.findConflicts().isEmpty());
+    }
+
+    @Test
+    void shouldSaveAllTasksFiredInOneTick() throws IOException {
+        LocalDateTime start = LocalDateTime.now().truncatedTo(ChronoUnit.MINUTES).plusDays(100);
+        Files.writeString(testFile.toPath(), "id,type,name,status,description,epicId,startTime,duration\n" +
+                "1,TASK,First,NEW,Desc,,30," + start + "\n" +
+                "2,EPIC,Epic,NEW,Desc,\n" +
+                "3,SUBTASK,Second,NEW,Desc,2,30," + start.plusHours(1) + "\n" +
+                "4,TASK,Done,DONE,Desc,,30," + start.plusHours(2) + "\n");
+        FileBackedTaskManager loadedManager = loadManager();
+
+        List<Task> fired = loadedManager.fireDueTriggers(start.plusHours(1));
+
+        assertEquals(List.of(1, 3), fired.stream().map(Task::getId).distinct().sorted().toList());
+        FileBackedTaskManager reloaded = loadManager();
+        assertEquals(Status.IN_PROGRESS, reloaded.getTaskById(1).getStatus());
+        assertEquals(Status.IN_PROGRESS, reloaded.getSubtaskById(3).getStatus());
+        assertEquals(Status.IN_PROGRESS, reloaded.getEpicById(2).getStatus());
+        assertEquals(Status.DONE, reloaded.getTaskById(4).getStatus());
+    }
+
+    @Test
+    void shouldSaveAndLoadAssignee() {
+        Task task = new Task("Task", "Description", Duration.ofHours(1), LocalDateTime.of(2023, 1, 1, 10, 0));
+        task.setAssignee("alice");
+        int taskId = taskManager.addTask(task);
+
+        FileBackedTaskManager loadedManager = loadManager();
+
+        assertEquals("alice", loadedManager.getTaskById(taskId).getAssignee());
+        assertEquals(1, loadedManager.getPrioritizedTasks("alice", null, null).size());
+        assertTrue(loadedManager.getPrioritizedTasks(null, null, null).isEmpty());
+    }
+
+    @Test
+    void shouldSaveRecurringTaskAsSingleRow() throws IOException {
+        LocalDateTime start = LocalDateTime.of(2024, 1, 1, 10, 0);
+        RecurringTask review = new RecurringTask("Ревью", "Описание", Duration.ofHours(1), start, 7,
+                start.plusDays(70));
+        int reviewId = taskManager.addTask(review);
+
+        List<String> lines = Files.readAllLines(testFile.toPath());
+        assertEquals(2, lines.size(), "Серия должна сохраняться одной строкой");
+
+        FileBackedTaskManager loadedManager = loadManager();
+        RecurringTask loaded = (RecurringTask) loadedManager.getTaskById(reviewId);
+        assertEquals(7, loaded.getEveryDays());
+        assertEquals(start.plusDays(70), loaded.getUntil());
+        assertEquals(11, loadedManager.getPrioritizedTasks(start, start.plusYears(1)).size());
+    }
+
+    @Test
+    void shouldSaveAndLoadNestedEpics() {
+        int parentId = taskManager.addEpic(new Epic("Parent", "Description"));
+        Epic child = new Epic("Child", "Description");
+        child.setParentEpicId(parentId);
+        int childId = taskManager.addEpic(child);
+        Subtask subtask = new Subtask("Subtask", "Description", childId, Duration.ofHours(1),
+                LocalDateTime.of(2024, 1, 1, 10, 0));
+        subtask.setStatus(Status.DONE);
+        taskManager.addSubtask(subtask);
+
+        FileBackedTaskManager loadedManager = loadManager();
+
+        assertEquals(parentId, loadedManager.getEpicById(childId).getParentEpicId());
+        assertEquals(List.of(loadedManager.getEpicById(childId)), loadedManager.getChildEpics(parentId));
+        assertEquals(Status.DONE, loadedManager.getEpicById(parentId).getStatus());
+        assertEquals(Duration.ofHours(1), loadedManager.getEpicById(parentId).getDuration());
+    }
+
+    @Test
+    void shouldSaveAndLoadDependencies() {
+        int epicId = taskManager.addEpic(new Epic("Epic", "Description"));
+        int firstId = taskManager.addSubtask(new Subtask("First", "Description", epicId, Duration.ofMinutes(30), null));
+        int secondId = taskManager.addSubtask(new Subtask("Second", "Description", epicId, Duration.ofMinutes(45), null));
+        int thirdId = taskManager.addSubtask(new Subtask("Third", "Description", epicId, Duration.ofMinutes(15), null));
+        taskManager.addDependency(firstId, thirdId);
+        taskManager.addDependency(secondId, thirdId);
+
+        FileBackedTaskManager loadedManager = loadManager();
+
+        assertEquals(List.of(firstId, secondId), loadedManager.getBlockers(thirdId));
+        assertEquals(Duration.ofMinutes(60), loadedManager.getEarliestFinish(epicId));
+    }
+
+    @Test
+    void shouldSaveAndLoadBinarySnapshot() throws IOException {
+        FileBackedTaskManager manager = new FileBackedTaskManager(Managers.getDefaultHistory(), testFile,
+                new StorageOptions().withFormat(SnapshotFormat.BINARY));
+        LocalDateTime start = LocalDateTime.of(2024, 1, 1, 10, 0);
+        Task task = new Task("Задача, с запятой", null, Duration.ofMinutes(30), start);
+        task.setAssignee("alice");
+        int taskId = manager.addTask(task);
+        int recurringId = manager.addTask(new RecurringTask("Standup", "Daily", Duration.ofMinutes(15),
+                start.plusHours(1), 1, start.plusDays(5)));
+        int parentId = manager.addEpic(new Epic("Parent", "Description"));
+        Epic child = new Epic("Child", "Description");
+        child.setParentEpicId(parentId);
+        int childId = manager.addEpic(child);
+        int firstId = manager.addSubtask(new Subtask("First", "Description", childId, Duration.ofMinutes(20), null));
+        Subtask second = new Subtask("Second", "Description", childId, Duration.ofMinutes(40), start.plusDays(1));
+        second.setStatus(Status.DONE);
+        int secondId = manager.addSubtask(second);
+        manager.addDependency(firstId, secondId);
+
+        assertTrue(BinarySnapshotCodec.isBinary(testFile));
+        FileBackedTaskManager loaded = loadManager();
+
+        Task loadedTask = loaded.getTaskById(taskId);
+        assertEquals("Задача, с запятой", loadedTask.getName());
+        assertNull(loadedTask.getDescription());
+        assertEquals("alice", loadedTask.getAssignee());
+        assertEquals(start, loadedTask.getStartTime());
+        RecurringTask recurring = (RecurringTask) loaded.getTaskById(recurringId);
+        assertEquals(start.plusDays(5), recurring.getUntil());
+        assertEquals(1, recurring.getEveryDays());
+        assertEquals(parentId, loaded.getEpicById(childId).getParentEpicId());
+        assertEquals(Status.IN_PROGRESS, loaded.getEpicById(parentId).getStatus());
+        assertNull(loaded.getSubtaskById(firstId).getStartTime());
+        assertEquals(List.of(firstId), loaded.getBlockers(secondId));
+        assertEquals(Duration.ofMinutes(60), loaded.getEarliestFinish(childId));
+    }
+
+    @Test
+    void shouldAttachSubtasksWhenChunksAreParsedInParallel() throws IOException {
+        // Подзадачи записаны раньше своих эпиков, фрагменты по 16 байт делят файл почти построчно
+        Files.writeString(testFile.toPath(), "id,type,name,status,description,epicId,startTime,duration\n" +
+                "4,SUBTASK,Second,DONE,Desc,3,60,2024-01-01T12:00,bob\n" +
+                "1,TASK,Task,NEW,Desc,,30,2024-01-01T09:00,alice\n" +
+                "3,EPIC,Child,NEW,Desc,2\n" +
+                "5,SUBTASK,First,NEW,Desc,3,30,2024-01-01T10:00,alice,,,4\n" +
+                "2,EPIC,Parent,NEW,Desc,\n");
+
+        FileBackedTaskManager loaded = FileBackedTaskManager.loadFromFile(testFile,
+                new StorageOptions().withLoadChunkSize(16));
+
+        assertEquals(List.of(4, 5), loaded.getEpicById(3).getSubtasksList().stream().map(Subtask::getId).toList());
+        assertEquals(Status.IN_PROGRESS, loaded.getEpicById(2).getStatus());
+        assertEquals(LocalDateTime.of(2024, 1, 1, 10, 0), loaded.getEpicById(2).getStartTime());
+        assertEquals(Duration.ofMinutes(90), loaded.getEpicById(2).getDuration());
+        assertEquals(List.of(1, 5, 4), loaded.getPrioritizedTasks().stream().map(Task::getId).toList());
+        assertEquals(List.of(1, 5), loaded.getPrioritizedTasks("alice", null, null).stream()
+                .map(Task::getId).toList());
+        assertEquals(List.of(4), loaded.getBlockers(5));
+        assertEquals(6, loaded.addTask(new Task("Next", "Desc")));
+    }
+
+    @Test
+    void shouldLoadSameStateForAnyChunkSize() {
+        LocalDateTime start = LocalDateTime.of(2024, 1, 1, 0, 0);
+        for (int i = 0; i < 20; i++) {
+            int epicId = taskManager.addEpic(new Epic("Epic " + i, "Описание"));
+            for (int j = 0; j < 5; j++) {
+                Subtask subtask = new Subtask("Subtask " + j, "Описание", epicId, Duration.ofMinutes(10),
+                        start.plusHours(i * 5L + j));
+                subtask.setStatus(j % 2 == 0 ? Status.DONE : Status.NEW);
+                taskManager.addSubtask(subtask);
+            }
+            taskManager.addTask(new Task("Task " + i, "Описание", Duration.ofMinutes(10), start.plusDays(10 + i)));
+        }
+
+        FileBackedTaskManager whole = loadManager();
+        FileBackedTaskManager chunked = FileBackedTaskManager.loadFromFile(testFile,
+                new StorageOptions().withLoadChunkSize(64));
+
+        assertEquals(whole.getPrioritizedTasks(), chunked.getPrioritizedTasks());
+        assertEquals(whole.getAllSubtasks(), chunked.getAllSubtasks());
+        for (Epic epic : whole.getAllEpics()) {
+            Epic loaded = chunked.getEpicById(epic.getId());
+            assertEquals(epic.getStatus(), loaded.getStatus());
+            assertEquals(epic.getStartTime(), loaded.getStartTime());
+            assertEquals(epic.getEndTime(), loaded.getEndTime());
+            assertEquals(epic.getSubtasksList(), loaded.getSubtasksList());
+        }
+    }
+
+    @Test
+    void shouldQuoteFieldsWithDelimitersAndNewlines() throws IOException {
+        LocalDateTime start = LocalDateTime.of(2024, 1, 1, 10, 0, 30, 500_000_000);
+        Task quoted = new Task("Купить молоко, хлеб", "Сказал \"срочно\"\nи ушел", Duration.ofMinutes(15), start);
+        quoted.setAssignee("alice,bob");
+        int quotedId = taskManager.addTask(quoted);
+        int emptyId = taskManager.addTask(new Task("", null));
+        int epicId = taskManager.addEpic(new Epic("Epic\r\nс переводом строки", "Описание"));
+        int subtaskId = taskManager.addSubtask(new Subtask("Подзадача", "\"", epicId));
+
+        assertEquals(7, Files.readAllLines(testFile.toPath()).size(), "Переводы строк внутри кавычек пишутся как есть");
+        // Мелкие фрагменты не должны резать поле в кавычках по переводу строки
+        FileBackedTaskManager loaded = FileBackedTaskManager.loadFromFile(testFile,
+                new StorageOptions().withLoadChunkSize(8));
+
+        Task loadedTask = loaded.getTaskById(quotedId);
+        assertEquals("Купить молоко, хлеб", loadedTask.getName());
+        assertEquals("Сказал \"срочно\"\nи ушел", loadedTask.getDescription());
+        assertEquals("alice,bob", loadedTask.getAssignee());
+        assertEquals(start, loadedTask.getStartTime());
+        assertEquals("", loaded.getTaskById(emptyId).getName());
+        assertNull(loaded.getTaskById(emptyId).getDescription());
+        assertEquals("Epic\r\nс переводом строки", loaded.getEpicById(epicId).getName());
+        assertEquals("\"", loaded.getSubtaskById(subtaskId).getDescription());
+        assertEquals(epicId, loaded.getSubtaskById(subtaskId).getEpicId());
+    }
+
+    @Test
+    void shouldSaveAndLoadCompressedSnapshot() throws IOException {
+        FileBackedTaskManager manager = new FileBackedTaskManager(Managers.getDefaultHistory(), testFile,
+                new StorageOptions().withCompression(true));
+        for (int i = 0; i < 50; i++) {
+            manager.addTask(new Task("Задача " + i, "Одинаковое описание, \"с кавычками\""));
+        }
+        int epicId = manager.addEpic(new Epic("Epic", "Description"));
+        int subtaskId = manager.addSubtask(new Subtask("Subtask", "Строка 1\nстрока 2", epicId));
+        manager.close();
+
+        byte[] header = Arrays.copyOf(Files.readAllBytes(testFile.toPath()), 2);
+        assertArrayEquals(new byte[]{(byte) 0x1f, (byte) 0x8b}, header);
+        CompressionStats stats = manager.getCompressionStats();
+        assertTrue(stats.getSnapshots() > 0);
+        assertTrue(stats.getRatio() > 1, stats.toString());
+
+        // Формат определяется по первым байтам, мелкие блоки делят распакованный текст
+        FileBackedTaskManager loaded = FileBackedTaskManager.loadFromFile(testFile,
+                new StorageOptions().withLoadChunkSize(64));
+        assertEquals(50, loaded.getAllTasks().size());
+        assertEquals("Одинаковое описание, \"с кавычками\"", loaded.getTaskById(1).getDescription());
+        assertEquals("Строка 1\nстрока 2", loaded.getSubtaskById(subtaskId).getDescription());
+        assertEquals(List.of(loaded.getSubtaskById(subtaskId)), loaded.getEpicById(epicId).getSubtasksList());
+    }
+
+    @Test
+    void shouldSaveAndLoadCompressedBinarySnapshot() {
+        FileBackedTaskManager manager = new FileBackedTaskManager(Managers.getDefaultHistory(), testFile,
+                new StorageOptions().withFormat(SnapshotFormat.BINARY).withCompression(true));
+        int epicId = manager.addEpic(new Epic("Epic", "Description"));
+        Subtask subtask = new Subtask("Subtask", "Description", epicId);
+        subtask.setStatus(Status.DONE);
+        int subtaskId = manager.addSubtask(subtask);
+        manager.close();
+
+        FileBackedTaskManager loaded = loadManager();
+
+        assertEquals(Status.DONE, loaded.getEpicById(epicId).getStatus());
+        assertEquals(epicId, loaded.getSubtaskById(subtaskId).getEpicId());
+    }
+
+    @Test
+    void shouldStreamQueuedSnapshotOnNonDaemonThread() throws IOException {
+        FileBackedTaskManager manager = new FileBackedTaskManager(Managers.getDefaultHistory(), testFile,
+                new StorageOptions().withCompression(true));
+        int taskId;
+        // Пока блокировка у теста, поток сжатия ждет ее, чтобы закодировать снимок
+        synchronized (manager) {
+            taskId = manager.addTask(new Task("Task", "Description"));
+            Thread worker = Thread.getAllStackTraces().keySet().stream()
+                    .filter(thread -> thread.getName().equals("snapshot-compressor"))
+                    .findFirst()
+                    .orElseThrow();
+            assertFalse(worker.isDaemon());
+        }
+        manager.close();
+
+        long raw;
+        try (InputStream in = SnapshotCompressor.open(testFile)) {
+            raw = in.readAllBytes().length;
+        }
+        CompressionStats stats = manager.getCompressionStats();
+        assertEquals(1, stats.getSnapshots());
+        assertEquals(raw, stats.getRawBytes());
+        assertEquals("Task", loadManager().getTaskById(taskId).getName());
+    }
+}
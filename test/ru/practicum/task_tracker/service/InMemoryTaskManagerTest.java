@@ -3,13 +3,19 @@ package ru.practicum.task_tracker.service;
 
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import ru.practicum.task_tracker.exceptions.ManagerValidationException;
+import ru.practicum.task_tracker.model.Epic;
+import ru.practicum.task_tracker.model.Status;
+import ru.practicum.task_tracker.model.Subtask;
 import ru.practicum.task_tracker.model.Task;
 
 import java.time.Duration;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Map;
 
-import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.*;
 
 public class InMemoryTaskManagerTest extends TaskManagerTest<InMemoryTaskManager> {
 
@@ -53,4 +59,140 @@ public class InMemoryTaskManagerTest extends TaskManagerTest<InMemoryTaskManager
         assertEquals(LocalDateTime.of(2023, 1, 1, 11, 0), prioritizedTasks.get(1).getStartTime());
         assertEquals(LocalDateTime.of(2023, 1, 1, 12, 0), prioritizedTasks.get(2).getStartTime());
     }
-}
\ No newline at end of file
+
+    @Test
+    void shouldRejectOverlappingTask() {
+        Task task1 = new Task("Task 1", "Description",
+                Duration.ofMinutes(60), LocalDateTime.of(2023, 1, 1, 10, 0));
+        Task task2 = new Task("Task 2", "Description",
+                Duration.ofMinutes(30), LocalDateTime.of(2023, 1, 1, 12, 0));
+        taskManager.addTask(task1);
+        taskManager.addTask(task2);
+
+        Task inside = new Task("Inside", "Description",
+                Duration.ofMinutes(10), LocalDateTime.of(2023, 1, 1, 10, 20));
+        Task covering = new Task("Covering", "Description",
+                Duration.ofMinutes(240), LocalDateTime.of(2023, 1, 1, 9, 0));
+        Task between = new Task("Between", "Description",
+                Duration.ofMinutes(30), LocalDateTime.of(2023, 1, 1, 11, 10));
+
+        assertThrows(ManagerValidationException.class, () -> taskManager.addTask(inside));
+        assertThrows(ManagerValidationException.class, () -> taskManager.addTask(covering));
+        assertDoesNotThrow(() -> taskManager.addTask(between), "Задача в свободном окне должна добавляться");
+        assertEquals(3, taskManager.getPrioritizedTasks().size());
+    }
+
+    @Test
+    void shouldIgnoreOwnSlotOnUpdateAndFreeSlotOnDelete() {
+        Task task = new Task("Task", "Description",
+                Duration.ofMinutes(60), LocalDateTime.of(2023, 1, 1, 10, 0));
+        int id = taskManager.addTask(task);
+
+        Task moved = new Task("Task", "Description",
+                Duration.ofMinutes(60), LocalDateTime.of(2023, 1, 1, 10, 30));
+        moved.setId(id);
+        assertDoesNotThrow(() -> taskManager.updateTask(moved), "Задача не должна конфликтовать сама с собой");
+
+        Task atOldSlot = new Task("Old slot", "Description",
+                Duration.ofMinutes(10), LocalDateTime.of(2023, 1, 1, 10, 0));
+        assertDoesNotThrow(() -> taskManager.addTask(atOldSlot), "Старый интервал должен освободиться");
+
+        taskManager.deleteTaskById(id);
+        Task atNewSlot = new Task("New slot", "Description",
+                Duration.ofMinutes(10), LocalDateTime.of(2023, 1, 1, 11, 0));
+        assertDoesNotThrow(() -> taskManager.addTask(atNewSlot), "Интервал удаленной задачи должен освободиться");
+    }
+
+    @Test
+    void shouldFindFirstFreeSlotBetweenTasks() {
+        taskManager.addTask(new Task("9:00", "Description",
+                Duration.ofMinutes(60), LocalDateTime.of(2023, 1, 1, 9, 0)));
+        taskManager.addTask(new Task("10:30", "Description",
+                Duration.ofMinutes(60), LocalDateTime.of(2023, 1, 1, 10, 30)));
+        taskManager.addTask(new Task("12:00", "Description",
+                Duration.ofMinutes(60), LocalDateTime.of(2023, 1, 1, 12, 0)));
+
+        LocalDateTime dayStart = LocalDateTime.of(2023, 1, 1, 9, 30);
+        LocalDateTime dayEnd = LocalDateTime.of(2023, 1, 1, 18, 0);
+
+        assertEquals(LocalDateTime.of(2023, 1, 1, 10, 1),
+                taskManager.findFreeSlot(Duration.ofMinutes(20), dayStart, dayEnd));
+        assertEquals(LocalDateTime.of(2023, 1, 1, 13, 1),
+                taskManager.findFreeSlot(Duration.ofMinutes(60), dayStart, dayEnd));
+        assertNull(taskManager.findFreeSlot(Duration.ofHours(6), dayStart, dayEnd),
+                "Окно не помещается в диапазон поиска");
+
+        Task found = new Task("Found", "Description", Duration.ofMinutes(20),
+                taskManager.findFreeSlot(Duration.ofMinutes(20), dayStart, dayEnd));
+        assertDoesNotThrow(() -> taskManager.addTask(found), "Найденное окно должно проходить проверку пересечений");
+    }
+
+    @Test
+    void shouldGetPrioritizedTasksInWindow() {
+        Task overnight = new Task("Overnight", "Description",
+                Duration.ofHours(4), LocalDateTime.of(2023, 1, 1, 22, 0));
+        Task monday = new Task("Monday", "Description",
+                Duration.ofHours(1), LocalDateTime.of(2023, 1, 2, 10, 0));
+        Task nextWeek = new Task("Next week", "Description",
+                Duration.ofHours(1), LocalDateTime.of(2023, 1, 9, 0, 0));
+        taskManager.addTask(overnight);
+        taskManager.addTask(monday);
+        taskManager.addTask(nextWeek);
+
+        List<Task> week = taskManager.getPrioritizedTasks(
+                LocalDateTime.of(2023, 1, 2, 0, 0), LocalDateTime.of(2023, 1, 9, 0, 0));
+
+        assertEquals(List.of(overnight, monday), week, "В окно попадают задачи, пересекающие его");
+        assertEquals(List.of(nextWeek), taskManager.getPrioritizedTasks(LocalDateTime.of(2023, 1, 3, 0, 0), null));
+        assertEquals(3, taskManager.getPrioritizedTasks(null, null).size());
+    }
+
+    @Test
+    void shouldMaintainDailyLoad() {
+        Task overnight = new Task("Overnight", "Description",
+                Duration.ofHours(3), LocalDateTime.of(2023, 1, 1, 22, 0));
+        Task morning = new Task("Morning", "Description",
+                Duration.ofMinutes(30), LocalDateTime.of(2023, 1, 2, 9, 0));
+        taskManager.addTask(overnight);
+        int morningId = taskManager.addTask(morning);
+
+        assertEquals(Map.of(LocalDate.of(2023, 1, 1), 120L, LocalDate.of(2023, 1, 2), 90L),
+                taskManager.getDailyLoad(LocalDate.of(2023, 1, 1), LocalDate.of(2023, 3, 31)));
+
+        Task moved = new Task("Morning", "Description",
+                Duration.ofMinutes(45), LocalDateTime.of(2023, 1, 3, 9, 0));
+        moved.setId(morningId);
+        taskManager.updateTask(moved);
+        taskManager.deleteTaskById(overnight.getId());
+
+        assertEquals(Map.of(LocalDate.of(2023, 1, 3), 45L), taskManager.getDailyLoad(null, null));
+    }
+
+    @Test
+    void shouldRecalculateEpicOnceInLazyMode() {
+        taskManager.setLazyEpics(true);
+        Epic epic = new Epic("Epic", "Description");
+        int epicId = taskManager.addEpic(epic);
+        LocalDateTime start = LocalDateTime.of(2023, 1, 1, 10, 0);
+        for (int i = 0; i < 10; i++) {
+            Subtask subtask = new Subtask("Subtask " + i, "Description", epicId,
+                    Duration.ofMinutes(30), start.plusHours(i));
+            subtask.setStatus(i % 2 == 0 ? Status.DONE : Status.NEW);
+            taskManager.addSubtask(subtask);
+        }
+
+        assertTrue(epic.isDirty(), "В отложенном режиме эпик только помечается");
+        Epic loaded = taskManager.getEpicById(epicId);
+        assertFalse(loaded.isDirty());
+        assertEquals(Status.IN_PROGRESS, loaded.getStatus());
+        assertEquals(start, loaded.getStartTime());
+        assertEquals(Duration.ofHours(5), loaded.getDuration());
+        assertEquals(start.plusHours(9).plusMinutes(30), loaded.getEndTime());
+
+        taskManager.deleteAllSubtasks();
+        taskManager.setLazyEpics(false);
+        assertFalse(epic.isDirty(), "Выключение режима пересчитывает помеченные эпики");
+        assertEquals(Status.NEW, epic.getStatus());
+        assertNull(epic.getStartTime());
+    }
+}
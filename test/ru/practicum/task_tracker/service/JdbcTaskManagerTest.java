@@ -0,0 +1,211 @@
+package ru.practicum.task_tracker.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import ru.practicum.task_tracker.exceptions.ManagerValidationException;
+import ru.practicum.task_tracker.model.Epic;
+import ru.practicum.task_tracker.model.RecurringTask;
+import ru.practicum.task_tracker.model.Status;
+import ru.practicum.task_tracker.model.Subtask;
+import ru.practicum.task_tracker.model.Task;
+
+import java.io.File;
+import java.io.IOException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Нужен драйвер H2 в classpath
+public class JdbcTaskManagerTest extends TaskManagerTest<JdbcTaskManager> {
+    private File testFile;
+
+    @Override
+    protected JdbcTaskManager createTaskManager() {
+        try {
+            testFile = File.createTempFile("tasks", "");
+            testFile.delete();
+            return new JdbcTaskManager(Managers.getDefaultHistory(), url());
+        } catch (IOException e) {
+            throw new RuntimeException("", e);
+        }
+    }
+
+    private String url() {
+        return "jdbc:h2:file:" + testFile.getAbsolutePath();
+    }
+
+    @AfterEach
+    void tearDown() {
+        taskManager.close();
+        new File(testFile.getPath() + ".mv.db").delete();
+        new File(testFile.getPath() + ".trace.db").delete();
+    }
+
+    private JdbcTaskManager reload() {
+        taskManager.close();
+        taskManager = new JdbcTaskManager(Managers.getDefaultHistory(), url());
+        return taskManager;
+    }
+
+    @Test
+    void shouldRestoreTasksFromDatabase() {
+        LocalDateTime start = LocalDateTime.of(2024, 1, 1, 10, 0);
+        Task task = new Task("Task", null, Duration.ofMinutes(30), start);
+        task.setAssignee("alice");
+        int taskId = taskManager.addTask(task);
+        int parentId = taskManager.addEpic(new Epic("Parent", "Description"));
+        Epic child = new Epic("Child", "Description");
+        child.setParentEpicId(parentId);
+        int childId = taskManager.addEpic(child);
+        int firstId = taskManager.addSubtask(new Subtask("First", "Description", childId, Duration.ofMinutes(10), null));
+        Subtask second = new Subtask("Second", "Description", childId, Duration.ofMinutes(20), start.plusDays(1));
+        second.setStatus(Status.DONE);
+        int secondId = taskManager.addSubtask(second);
+        taskManager.addDependency(firstId, secondId);
+        int seriesId = taskManager.addTask(new RecurringTask("Standup", "Description", Duration.ofMinutes(15),
+                start.plusHours(2), 1, null));
+
+        JdbcTaskManager loaded = reload();
+
+        Task loadedTask = loaded.getTaskById(taskId);
+        assertEquals("Task", loadedTask.getName());
+        assertNull(loadedTask.getDescription());
+        assertEquals("alice", loadedTask.getAssignee());
+        assertEquals(start, loadedTask.getStartTime());
+        assertEquals(List.of(loaded.getEpicById(childId)), loaded.getChildEpics(parentId));
+        assertEquals(Status.IN_PROGRESS, loaded.getEpicById(parentId).getStatus());
+        assertEquals(List.of(firstId), loaded.getBlockers(secondId));
+        assertEquals(1, ((RecurringTask) loaded.getTaskById(seriesId)).getEveryDays());
+    }
+
+    @Test
+    void shouldStoreLongTextFields() {
+        String description = "d".repeat(10_000);
+        String assignee = "a".repeat(1_000);
+        Task task = new Task("n".repeat(5_000), description);
+        task.setAssignee(assignee);
+        int taskId = taskManager.addTask(task);
+
+        Task loaded = reload().getTaskById(taskId);
+
+        assertEquals(5_000, loaded.getName().length());
+        assertEquals(description, loaded.getDescription());
+        assertEquals(assignee, loaded.getAssignee());
+    }
+
+    @Test
+    void shouldCheckOverlapsInDatabaseAfterReload() {
+        LocalDateTime start = LocalDateTime.of(2024, 1, 1, 10, 0);
+        Task meeting = new Task("Meeting", "Description", Duration.ofHours(3), start);
+        meeting.setAssignee("alice");
+        taskManager.addTask(meeting);
+        Task other = new Task("Other", "Description", Duration.ofHours(3), start);
+        other.setAssignee("bob");
+        taskManager.addTask(other);
+
+        JdbcTaskManager loaded = reload();
+
+        Task inside = new Task("Inside", "Description", Duration.ofMinutes(10), start.plusHours(1));
+        inside.setAssignee("alice");
+        assertThrows(ManagerValidationException.class, () -> loaded.addTask(inside));
+        Task touching = new Task("Touching", "Description", Duration.ofMinutes(10), start.minusMinutes(10));
+        touching.setAssignee("alice");
+        assertThrows(ManagerValidationException.class, () -> loaded.addTask(touching));
+        Task free = new Task("Free", "Description", Duration.ofMinutes(10), start.plusHours(3).plusMinutes(1));
+        free.setAssignee("alice");
+        loaded.addTask(free);
+
+        assertEquals(3, loaded.getPrioritizedTasks().size());
+    }
+
+    @Test
+    void shouldCheckTouchingTasksLikeTimeline() {
+        LocalDateTime start = LocalDateTime.of(2024, 1, 1, 10, 0);
+        InMemoryTaskManager memory = new InMemoryTaskManager(Managers.getDefaultHistory());
+        for (TaskManager manager : List.of(taskManager, memory)) {
+            manager.addTask(assigned("Busy", Duration.ofHours(1), start));
+        }
+        JdbcTaskManager loaded = reload();
+
+        // Касание с любой стороны - пересечение, зазор в минуту - уже нет
+        List<Task> candidates = List.of(
+                assigned("Ends at start", Duration.ofHours(1), start.minusHours(1)),
+                assigned("Starts at end", Duration.ofMinutes(30), start.plusHours(1)),
+                assigned("Gap before", Duration.ofHours(1), start.minusHours(1).minusMinutes(1)),
+                assigned("Gap after", Duration.ofMinutes(30), start.plusHours(1).plusMinutes(1)));
+        for (Task candidate : candidates) {
+            boolean inMemory = accepts(memory, candidate);
+            assertEquals(inMemory, accepts(loaded, candidate), candidate.getName());
+        }
+        assertEquals(List.of(false, false, true, true),
+                candidates.stream().map(candidate -> accepts(memory, candidate)).toList());
+    }
+
+    private static Task assigned(String name, Duration duration, LocalDateTime start) {
+        Task task = new Task(name, "Description", duration, start);
+        task.setAssignee("x");
+        return task;
+    }
+
+    // Проверяет копию кандидата и удаляет ее, чтобы кандидаты не мешали друг другу
+    private static boolean accepts(TaskManager manager, Task candidate) {
+        try {
+            int id = manager.addTask(assigned(candidate.getName(), candidate.getDuration(), candidate.getStartTime()));
+            manager.deleteTaskById(id);
+            return true;
+        } catch (ManagerValidationException e) {
+            return false;
+        }
+    }
+
+    @Test
+    void shouldScanWindowInDatabase() {
+        LocalDateTime start = LocalDateTime.of(2024, 1, 1, 10, 0);
+        int beforeId = taskManager.addTask(new Task("Before", "Description", Duration.ofHours(2), start));
+        int insideId = taskManager.addTask(new Task("Inside", "Description", Duration.ofMinutes(30),
+                start.plusHours(3)));
+        taskManager.addTask(new Task("After", "Description", Duration.ofMinutes(30), start.plusHours(5)));
+        Task alice = new Task("Alice", "Description", Duration.ofMinutes(30), start.plusHours(3));
+        alice.setAssignee("alice");
+        int aliceId = taskManager.addTask(alice);
+
+        JdbcTaskManager loaded = reload();
+
+        List<Task> window = loaded.getPrioritizedTasks(start.plusHours(1), start.plusHours(4));
+        assertEquals(List.of(beforeId, insideId, aliceId), window.stream().map(Task::getId).toList());
+        assertEquals(List.of(loaded.getTaskById(aliceId)), loaded.getPrioritizedTasks("alice", start, null));
+    }
+
+    @Test
+    void shouldScanEveryAssigneeRunningIntoWindow() {
+        LocalDateTime start = LocalDateTime.of(2024, 1, 1, 10, 0);
+        Task bob = new Task("Bob", "Description", Duration.ofHours(2), start);
+        bob.setAssignee("bob");
+        int bobId = taskManager.addTask(bob);
+        Task alice = new Task("Alice", "Description", Duration.ofMinutes(15), start.plusMinutes(30));
+        alice.setAssignee("alice");
+        taskManager.addTask(alice);
+
+        List<Task> window = reload().getPrioritizedTasks(start.plusHours(1), start.plusHours(4));
+
+        assertEquals(List.of(bobId), window.stream().map(Task::getId).toList());
+    }
+
+    @Test
+    void shouldDeleteRowsInBatches() {
+        int epicId = taskManager.addEpic(new Epic("Epic", "Description"));
+        for (int i = 0; i < 100; i++) {
+            taskManager.addSubtask(new Subtask("Subtask " + i, "Description", epicId));
+        }
+        taskManager.addTask(new Task("Task", "Description"));
+
+        taskManager.deleteAllSubtasks();
+
+        JdbcTaskManager loaded = reload();
+        assertTrue(loaded.getAllSubtasks().isEmpty());
+        assertEquals(Status.NEW, loaded.getEpicById(epicId).getStatus());
+        assertEquals(1, loaded.getAllTasks().size());
+    }
+}
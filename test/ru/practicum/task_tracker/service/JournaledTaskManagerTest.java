@@ -0,0 +1,165 @@
+package ru.practicum.task_tracker.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import ru.practicum.task_tracker.model.Epic;
+import ru.practicum.task_tracker.model.Status;
+import ru.practicum.task_tracker.model.Subtask;
+import ru.practicum.task_tracker.model.Task;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class JournaledTaskManagerTest extends TaskManagerTest<FileBackedTaskManager> {
+    private File testFile;
+
+    @Override
+    protected FileBackedTaskManager createTaskManager() {
+        try {
+            testFile = File.createTempFile("journaled", ".csv");
+            return new FileBackedTaskManager(Managers.getDefaultHistory(), testFile, options());
+        } catch (IOException e) {
+            throw new RuntimeException("", e);
+        }
+    }
+
+    private static StorageOptions options() {
+        return new StorageOptions().withJournal(true).withCompactionThreshold(5);
+    }
+
+    @AfterEach
+    void tearDown() {
+        taskManager.close();
+        testFile.delete();
+        FileBackedTaskManager.journalFile(testFile).delete();
+        FileBackedTaskManager.segmentFile(testFile).delete();
+    }
+
+    // Файлы журнала принадлежат одному менеджеру, поэтому текущий закрывается перед загрузкой
+    private FileBackedTaskManager reload() {
+        taskManager.close();
+        return FileBackedTaskManager.loadFromFile(testFile, options());
+    }
+
+    @Test
+    void shouldReplayJournalOverSnapshot() {
+        int epicId = taskManager.addEpic(new Epic("Epic", "Description"));
+        Subtask subtask = new Subtask("Subtask", "Description", epicId);
+        int subtaskId = taskManager.addSubtask(subtask);
+        int taskId = taskManager.addTask(new Task("Task", "Description"));
+        subtask.setStatus(Status.DONE);
+        taskManager.updateSubtask(subtask);
+        taskManager.deleteTaskById(taskId);
+
+        FileBackedTaskManager loaded = reload();
+
+        assertTrue(loaded.getAllTasks().isEmpty());
+        assertEquals(Status.DONE, loaded.getSubtaskById(subtaskId).getStatus());
+        assertEquals(Status.DONE, loaded.getEpicById(epicId).getStatus());
+        loaded.close();
+    }
+
+    @Test
+    void shouldReplayQuotedRows() {
+        Task task = new Task("Задача, с запятой", "Строка 1\nстрока \"2\"");
+        int taskId = taskManager.addTask(task);
+
+        FileBackedTaskManager loaded = reload();
+
+        assertEquals("Задача, с запятой", loaded.getTaskById(taskId).getName());
+        assertEquals("Строка 1\nстрока \"2\"", loaded.getTaskById(taskId).getDescription());
+        loaded.close();
+    }
+
+    @Test
+    void shouldCompactJournalIntoSnapshot() throws IOException {
+        for (int i = 0; i < 12; i++) {
+            taskManager.addTask(new Task("Task " + i, "Description"));
+        }
+        taskManager.compact();
+
+        assertFalse(FileBackedTaskManager.segmentFile(testFile).exists());
+        assertEquals(0, Files.size(FileBackedTaskManager.journalFile(testFile).toPath()));
+        assertEquals(13, Files.readAllLines(testFile.toPath()).size(), "Снимок содержит все задачи");
+
+        taskManager.deleteAllTasks();
+        assertTrue(reload().getAllTasks().isEmpty());
+    }
+
+    @Test
+    void shouldCompactJournalIntoCompressedSnapshot() throws IOException {
+        taskManager.close();
+        StorageOptions compressed = options().withCompression(true);
+        FileBackedTaskManager manager = new FileBackedTaskManager(Managers.getDefaultHistory(), testFile, compressed);
+        for (int i = 0; i < 12; i++) {
+            manager.addTask(new Task("Task " + i, "Description"));
+        }
+        manager.compact();
+        manager.close();
+
+        assertEquals((byte) 0x1f, Files.readAllBytes(testFile.toPath())[0]);
+        assertTrue(manager.getCompressionStats().getSnapshots() > 0);
+        FileBackedTaskManager loaded = FileBackedTaskManager.loadFromFile(testFile, compressed);
+        assertEquals(12, loaded.getAllTasks().size());
+        loaded.close();
+    }
+
+    @Test
+    void shouldTruncateTornLastRecord() throws IOException {
+        int firstId = taskManager.addTask(new Task("First", "Description"));
+        taskManager.addTask(new Task("Second", "Description"));
+        taskManager.close();
+
+        File journal = FileBackedTaskManager.journalFile(testFile);
+        long size = journal.length();
+        try (RandomAccessFile raf = new RandomAccessFile(journal, "rw")) {
+            raf.setLength(size - 3);
+        }
+
+        FileBackedTaskManager loaded = reload();
+        assertEquals(List.of(firstId), loaded.getAllTasks().stream().map(Task::getId).toList(),
+                "Оборванная запись отбрасывается");
+        assertTrue(journal.length() < size - 3, "Хвост журнала отрезан");
+
+        int thirdId = loaded.addTask(new Task("Third", "Description", Duration.ofMinutes(5), null));
+        loaded.close();
+        assertEquals(List.of(firstId, thirdId), reload().getAllTasks().stream().map(Task::getId).toList());
+    }
+
+    @Test
+    void shouldGroupConcurrentCommits() throws Exception {
+        for (StorageOptions options : List.of(
+                new StorageOptions().withJournal(true).withDurability(Durability.EVERY_OP),
+                new StorageOptions().withJournal(true).withSyncInterval(5))) {
+            taskManager.close();
+            testFile.delete();
+            taskManager = new FileBackedTaskManager(Managers.getDefaultHistory(), testFile, options);
+
+            ExecutorService executor = Executors.newFixedThreadPool(8);
+            List<Future<Integer>> ids = new ArrayList<>();
+            for (int i = 0; i < 200; i++) {
+                Task task = new Task("Task " + i, "Description");
+                ids.add(executor.submit(() -> taskManager.addTask(task)));
+            }
+            for (Future<Integer> id : ids) {
+                id.get();
+            }
+            executor.shutdown();
+
+            taskManager.close();
+            FileBackedTaskManager loaded = FileBackedTaskManager.loadFromFile(testFile, options);
+            assertEquals(200, loaded.getAllTasks().size(), "Каждое подтвержденное изменение сохранено");
+            loaded.close();
+        }
+    }
+}
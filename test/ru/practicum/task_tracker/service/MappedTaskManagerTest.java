@@ -0,0 +1,124 @@
+package ru.practicum.task_tracker.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import ru.practicum.task_tracker.model.Epic;
+import ru.practicum.task_tracker.model.Status;
+import ru.practicum.task_tracker.model.Subtask;
+import ru.practicum.task_tracker.model.Task;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class MappedTaskManagerTest extends TaskManagerTest<MappedTaskManager> {
+    private File testFile;
+
+    @Override
+    protected MappedTaskManager createTaskManager() {
+        try {
+            testFile = File.createTempFile("mapped", ".tasks");
+            return new MappedTaskManager(Managers.getDefaultHistory(), testFile);
+        } catch (IOException e) {
+            throw new RuntimeException("", e);
+        }
+    }
+
+    @AfterEach
+    void tearDown() {
+        taskManager.close();
+        testFile.delete();
+        MappedTaskManager.overflowFile(testFile).delete();
+    }
+
+    private MappedTaskManager reload() {
+        taskManager.close();
+        taskManager = MappedTaskManager.loadFromFile(testFile);
+        return taskManager;
+    }
+
+    @Test
+    void shouldRestoreTasksFromSlots() {
+        LocalDateTime start = LocalDateTime.of(2024, 1, 1, 10, 0);
+        Task task = new Task("Task", null, Duration.ofMinutes(30), start);
+        task.setAssignee("alice");
+        int taskId = taskManager.addTask(task);
+        int epicId = taskManager.addEpic(new Epic("Epic", "Description"));
+        int firstId = taskManager.addSubtask(new Subtask("First", "Description", epicId, Duration.ofMinutes(10), null));
+        Subtask second = new Subtask("Second", "Description", epicId, Duration.ofMinutes(20), start.plusDays(1));
+        second.setStatus(Status.DONE);
+        int secondId = taskManager.addSubtask(second);
+        taskManager.addDependency(firstId, secondId);
+
+        MappedTaskManager loaded = reload();
+
+        Task loadedTask = loaded.getTaskById(taskId);
+        assertEquals("Task", loadedTask.getName());
+        assertNull(loadedTask.getDescription());
+        assertEquals("alice", loadedTask.getAssignee());
+        assertEquals(start, loadedTask.getStartTime());
+        assertEquals(Status.IN_PROGRESS, loaded.getEpicById(epicId).getStatus());
+        assertEquals(List.of(firstId), loaded.getBlockers(secondId));
+        assertEquals(List.of(loaded.getTaskById(taskId)), loaded.getPrioritizedTasks().subList(0, 1));
+    }
+
+    @Test
+    void shouldUpdateStatusInPlace() {
+        Task task = new Task("Task", "Description");
+        int taskId = taskManager.addTask(task);
+        long slotsSize = testFile.length();
+        long overflowSize = MappedTaskManager.overflowFile(testFile).length();
+
+        task.setStatus(Status.DONE);
+        taskManager.updateTask(task);
+
+        assertEquals(slotsSize, testFile.length());
+        assertEquals(overflowSize, MappedTaskManager.overflowFile(testFile).length(),
+                "Неизмененные строки не дописываются");
+        assertEquals(Status.DONE, reload().getTaskById(taskId).getStatus());
+    }
+
+    @Test
+    void shouldReuseFreedSlotsAndGrow() {
+        for (int i = 0; i < 1500; i++) {
+            taskManager.addTask(new Task("Task " + i, "Description"));
+        }
+        taskManager.deleteTaskById(1);
+        long size = testFile.length();
+        int reusedId = taskManager.addTask(new Task("Reused", "Description"));
+        assertEquals(size, testFile.length(), "Освобожденный слот используется повторно");
+
+        MappedTaskManager loaded = reload();
+        assertEquals(1500, loaded.getAllTasks().size());
+        assertNull(loaded.getTaskById(1));
+        assertEquals("Reused", loaded.getTaskById(reusedId).getName());
+    }
+
+    @Test
+    void shouldRecoverSlotLostBeforeItWasWritten() throws IOException {
+        taskManager.addTask(new Task("First", "Description"));
+        int lostId = taskManager.addTask(new Task("Lost", "Description"));
+        taskManager.addTask(new Task("Third", "Description"));
+        taskManager.deleteTaskById(lostId);
+        taskManager.close();
+        // Падение после снятия слота со списка свободных, но до его записи
+        try (RandomAccessFile raw = new RandomAccessFile(testFile, "rw")) {
+            raw.seek(16);
+            raw.writeInt(-1);
+        }
+
+        taskManager = MappedTaskManager.loadFromFile(testFile);
+        taskManager.addTask(new Task("Reused", "Description"));
+
+        try (RandomAccessFile raw = new RandomAccessFile(testFile, "r")) {
+            raw.seek(12);
+            assertEquals(3, raw.readInt(), "Потерянный слот используется повторно");
+        }
+        assertEquals(3, reload().getAllTasks().size());
+    }
+}
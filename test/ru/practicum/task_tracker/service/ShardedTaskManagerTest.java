@@ -0,0 +1,144 @@
+package ru.practicum.task_tracker.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import ru.practicum.task_tracker.model.Epic;
+import ru.practicum.task_tracker.model.Status;
+import ru.practicum.task_tracker.model.Subtask;
+import ru.practicum.task_tracker.model.Task;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ShardedTaskManagerTest extends TaskManagerTest<FileBackedTaskManager> {
+    private File directory;
+
+    @Override
+    protected FileBackedTaskManager createTaskManager() {
+        try {
+            directory = Files.createTempDirectory("sharded").toFile();
+            return new FileBackedTaskManager(Managers.getDefaultHistory(), directory, options());
+        } catch (IOException e) {
+            throw new RuntimeException("", e);
+        }
+    }
+
+    private static StorageOptions options() {
+        return new StorageOptions().withSharding(true);
+    }
+
+    @AfterEach
+    void tearDown() {
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        directory.delete();
+    }
+
+    private FileBackedTaskManager reload() {
+        return FileBackedTaskManager.loadFromFile(directory, options());
+    }
+
+    @Test
+    void shouldSaveEachEpicToOwnFile() {
+        int taskId = taskManager.addTask(new Task("Task", "Description"));
+        int parentId = taskManager.addEpic(new Epic("Parent", "Description"));
+        Epic child = new Epic("Child", "Description");
+        child.setParentEpicId(parentId);
+        int childId = taskManager.addEpic(child);
+        int firstId = taskManager.addSubtask(new Subtask("First", "Description", parentId,
+                Duration.ofMinutes(30), LocalDateTime.of(2024, 1, 1, 10, 0)));
+        Subtask second = new Subtask("Second", "Description", childId);
+        second.setStatus(Status.DONE);
+        int secondId = taskManager.addSubtask(second);
+        taskManager.addDependency(firstId, secondId);
+
+        assertTrue(FileBackedTaskManager.shardFile(directory, 0).exists());
+        assertTrue(FileBackedTaskManager.shardFile(directory, parentId).exists());
+        assertTrue(FileBackedTaskManager.shardFile(directory, childId).exists());
+
+        FileBackedTaskManager loaded = reload();
+
+        assertEquals("Task", loaded.getTaskById(taskId).getName());
+        assertEquals(List.of(loaded.getEpicById(childId)), loaded.getChildEpics(parentId));
+        assertEquals(Status.IN_PROGRESS, loaded.getEpicById(parentId).getStatus());
+        assertEquals(List.of(firstId), loaded.getBlockers(secondId));
+        assertEquals(1, loaded.getPrioritizedTasks().size());
+    }
+
+    @Test
+    void shouldRewriteOnlyTouchedShard() throws IOException {
+        taskManager.addTask(new Task("Task", "Description"));
+        int epicId = taskManager.addEpic(new Epic("Epic", "Description"));
+        int otherEpicId = taskManager.addEpic(new Epic("Other", "Description"));
+        Subtask subtask = new Subtask("Subtask", "Description", epicId);
+        taskManager.addSubtask(subtask);
+        Files.delete(FileBackedTaskManager.shardFile(directory, 0).toPath());
+        Files.delete(FileBackedTaskManager.shardFile(directory, otherEpicId).toPath());
+
+        subtask.setStatus(Status.DONE);
+        taskManager.updateSubtask(subtask);
+
+        assertFalse(FileBackedTaskManager.shardFile(directory, 0).exists());
+        assertFalse(FileBackedTaskManager.shardFile(directory, otherEpicId).exists());
+        assertEquals(Status.DONE, reload().getEpicById(epicId).getStatus());
+    }
+
+    @Test
+    void shouldDeleteEpicFile() {
+        int taskId = taskManager.addTask(new Task("Task", "Description"));
+        int epicId = taskManager.addEpic(new Epic("Epic", "Description"));
+        taskManager.addSubtask(new Subtask("Subtask", "Description", epicId));
+
+        taskManager.deleteEpicById(epicId);
+
+        assertFalse(FileBackedTaskManager.shardFile(directory, epicId).exists());
+        FileBackedTaskManager loaded = reload();
+        assertTrue(loaded.getAllEpics().isEmpty());
+        assertTrue(loaded.getAllSubtasks().isEmpty());
+        assertEquals("Task", loaded.getTaskById(taskId).getName());
+    }
+
+    @Test
+    void shouldReplaceStaleShardsOnFirstSave() throws IOException {
+        Files.writeString(FileBackedTaskManager.shardFile(directory, 42).toPath(),
+                "id,type,name,status,description,epicId\n42,EPIC,Stale,NEW,Description,\n");
+
+        taskManager.addTask(new Task("Task", "Description"));
+
+        assertFalse(FileBackedTaskManager.shardFile(directory, 42).exists());
+        assertTrue(reload().getAllEpics().isEmpty());
+    }
+
+    @Test
+    void shouldCompressShardsInBackground() {
+        FileBackedTaskManager manager = new FileBackedTaskManager(Managers.getDefaultHistory(), directory,
+                options().withCompression(true));
+        int keptId = manager.addEpic(new Epic("Kept", "Description"));
+        int deletedId = manager.addEpic(new Epic("Deleted", "Description"));
+        manager.addSubtask(new Subtask("Subtask", "Description", keptId));
+        manager.deleteEpicById(deletedId);
+        manager.close();
+
+        assertFalse(FileBackedTaskManager.shardFile(directory, deletedId).exists());
+        assertTrue(manager.getCompressionStats().getSnapshots() > 0);
+        FileBackedTaskManager loaded = reload();
+        assertEquals(1, loaded.getAllEpics().size());
+        assertEquals(1, loaded.getEpicById(keptId).getSubtasksList().size());
+    }
+
+    @Test
+    void shouldRejectJournalInDirectory() {
+        assertThrows(IllegalArgumentException.class, () -> new FileBackedTaskManager(
+                Managers.getDefaultHistory(), directory, options().withJournal(true)));
+    }
+}
@@ -0,0 +1,72 @@
+package ru.practicum.task_tracker.service;
+
+import org.junit.jupiter.api.Test;
+import ru.practicum.task_tracker.exceptions.ManagerValidationException;
+import ru.practicum.task_tracker.model.Task;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SlotCalendarTaskManagerTest extends TaskManagerTest<TaskManager> {
+
+    @Override
+    protected TaskManager createTaskManager() {
+        return Managers.getSlotCalendar();
+    }
+
+    @Test
+    void shouldRejectOverlappingAlignedTasks() {
+        taskManager.addTask(new Task("Day 1", "Description",
+                Duration.ofHours(2), LocalDateTime.of(2023, 1, 1, 23, 0)));
+
+        Task touching = new Task("Touching", "Description",
+                Duration.ofMinutes(15), LocalDateTime.of(2023, 1, 2, 1, 0));
+        Task nextDay = new Task("Next day", "Description",
+                Duration.ofMinutes(15), LocalDateTime.of(2023, 1, 2, 0, 30));
+        Task free = new Task("Free", "Description",
+                Duration.ofMinutes(15), LocalDateTime.of(2023, 1, 2, 1, 15));
+
+        assertThrows(ManagerValidationException.class, () -> taskManager.addTask(touching),
+                "Задачи, касающиеся границами, пересекаются");
+        assertThrows(ManagerValidationException.class, () -> taskManager.addTask(nextDay),
+                "Занятость должна переходить через полночь");
+        assertDoesNotThrow(() -> taskManager.addTask(free));
+    }
+
+    @Test
+    void shouldCheckUnalignedTasksExactly() {
+        taskManager.addTask(new Task("Aligned", "Description",
+                Duration.ofMinutes(30), LocalDateTime.of(2023, 1, 1, 10, 0)));
+        taskManager.addTask(new Task("Unaligned", "Description",
+                Duration.ofMinutes(7), LocalDateTime.of(2023, 1, 1, 11, 3)));
+
+        Task insideAligned = new Task("Inside aligned", "Description",
+                Duration.ofMinutes(5), LocalDateTime.of(2023, 1, 1, 10, 5));
+        Task coveringUnaligned = new Task("Covering unaligned", "Description",
+                Duration.ofMinutes(15), LocalDateTime.of(2023, 1, 1, 11, 0));
+        Task betweenSlots = new Task("Between slots", "Description",
+                Duration.ofMinutes(5), LocalDateTime.of(2023, 1, 1, 10, 35));
+
+        assertThrows(ManagerValidationException.class, () -> taskManager.addTask(insideAligned));
+        assertThrows(ManagerValidationException.class, () -> taskManager.addTask(coveringUnaligned));
+        assertDoesNotThrow(() -> taskManager.addTask(betweenSlots));
+    }
+
+    @Test
+    void shouldIgnoreOwnSlotsOnUpdate() {
+        Task task = new Task("Task", "Description",
+                Duration.ofHours(1), LocalDateTime.of(2023, 1, 1, 10, 0));
+        int id = taskManager.addTask(task);
+
+        Task moved = new Task("Task", "Description",
+                Duration.ofHours(1), LocalDateTime.of(2023, 1, 1, 10, 30));
+        moved.setId(id);
+        assertDoesNotThrow(() -> taskManager.updateTask(moved));
+
+        Task atOldSlot = new Task("Old slot", "Description",
+                Duration.ofMinutes(15), LocalDateTime.of(2023, 1, 1, 10, 0));
+        assertDoesNotThrow(() -> taskManager.addTask(atOldSlot), "Старые слоты должны освободиться");
+    }
+}
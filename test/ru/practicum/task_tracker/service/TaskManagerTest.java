@@ -2,14 +2,23 @@ package ru.practicum.task_tracker.service;
 
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import ru.practicum.task_tracker.exceptions.ManagerValidationException;
+
 import static org.junit.jupiter.api.Assertions.*;
 
 import ru.practicum.task_tracker.model.Epic;
+import ru.practicum.task_tracker.model.RecurringTask;
 import ru.practicum.task_tracker.model.Status;
 import ru.practicum.task_tracker.model.Subtask;
 import ru.practicum.task_tracker.model.Task;
 
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.temporal.ChronoUnit;
 import java.util.List;
+import java.util.Map;
 
 public abstract class TaskManagerTest<T extends TaskManager> {
     protected T taskManager;
@@ -339,5 +348,253 @@ public abstract class TaskManagerTest<T extends TaskManager> {
         assertEquals(Status.DONE, taskManager.getEpicById(epicId).getStatus());
     }
 
+    @Test
+    void shouldScheduleBacklogIntoFreeTime() {
+        LocalDateTime day = LocalDateTime.of(2023, 1, 2, 0, 0);
+        taskManager.addTask(new Task("Meeting", "Busy", Duration.ofMinutes(60), day.withHour(10)));
+
+        Task longTask = new Task("Long", "Backlog");
+        longTask.setDuration(Duration.ofMinutes(90));
+        Task shortTask = new Task("Short", "Backlog");
+        shortTask.setDuration(Duration.ofMinutes(30));
+        Task tooLong = new Task("Too long", "Backlog");
+        tooLong.setDuration(Duration.ofHours(10));
+        taskManager.addTask(shortTask);
+        taskManager.addTask(longTask);
+        taskManager.addTask(tooLong);
+
+        Epic epic = new Epic("Epic", "Description");
+        int epicId = taskManager.addEpic(epic);
+        Subtask subtask = new Subtask("Subtask", "Backlog", epicId);
+        subtask.setDuration(Duration.ofMinutes(45));
+        taskManager.addSubtask(subtask);
+
+        List<Task> scheduled = taskManager.scheduleBacklog(day, day.plusDays(2),
+                LocalTime.of(9, 0), LocalTime.of(12, 0));
+
+        assertEquals(3, scheduled.size(), "Задача длиннее рабочего дня не должна размещаться");
+        assertNull(taskManager.getTaskById(tooLong.getId()).getStartTime());
+        assertEquals(4, taskManager.getPrioritizedTasks().size());
+        assertEquals(subtask.getStartTime(), taskManager.getEpicById(epicId).getStartTime());
+
+        List<Task> timeline = taskManager.getPrioritizedTasks();
+        for (int i = 1; i < timeline.size(); i++) {
+            assertTrue(timeline.get(i).getStartTime().isAfter(timeline.get(i - 1).getEndTime()),
+                    "Размещенные задачи не должны пересекаться");
+        }
+        for (Task task : scheduled) {
+            assertFalse(task.getStartTime().toLocalTime().isBefore(LocalTime.of(9, 0)));
+            assertFalse(task.getEndTime().toLocalTime().isAfter(LocalTime.of(12, 0)));
+        }
+    }
+
+    @Test
+    void shouldNotScheduleBacklogTouchingTaskStartingAtWindowEnd() {
+        LocalDateTime day = LocalDateTime.of(2023, 1, 2, 0, 0);
+        Task busy = new Task("Busy", "Description", Duration.ofMinutes(30), day.withHour(10));
+        busy.setAssignee("x");
+        taskManager.addTask(busy);
+        Task backlog = new Task("Backlog", "Description");
+        backlog.setDuration(Duration.ofMinutes(60));
+        backlog.setAssignee("x");
+        int backlogId = taskManager.addTask(backlog);
+
+        List<Task> scheduled = taskManager.scheduleBacklog(day.withHour(9), day.withHour(10),
+                LocalTime.of(8, 0), LocalTime.of(18, 0));
+
+        assertTrue(scheduled.isEmpty(), "Задача до 10:00 касается занятой с 10:00");
+        assertNull(taskManager.getTaskById(backlogId).getStartTime());
+    }
+
+    @Test
+    void shouldScheduleBacklogAfterTaskEndingAtWindowStart() {
+        LocalDateTime day = LocalDateTime.of(2023, 1, 2, 0, 0);
+        Task busy = new Task("Busy", "Description", Duration.ofMinutes(60), day.withHour(8));
+        busy.setAssignee("x");
+        taskManager.addTask(busy);
+        Task backlog = new Task("Backlog", "Description");
+        backlog.setDuration(Duration.ofMinutes(30));
+        backlog.setAssignee("x");
+        int backlogId = taskManager.addTask(backlog);
+
+        taskManager.scheduleBacklog(day.withHour(9), day.withHour(12), LocalTime.of(8, 0), LocalTime.of(18, 0));
+
+        assertEquals(day.withHour(9).plus(Timeline.MIN_GAP), taskManager.getTaskById(backlogId).getStartTime());
+    }
 
-}
\ No newline at end of file
+    @Test
+    void shouldValidateOverlapsPerAssignee() {
+        LocalDateTime start = LocalDateTime.of(2023, 1, 2, 10, 0);
+        Task alice = new Task("Alice", "Description", Duration.ofHours(1), start);
+        alice.setAssignee("alice");
+        Task bob = new Task("Bob", "Description", Duration.ofHours(1), start);
+        bob.setAssignee("bob");
+        Task aliceAgain = new Task("Alice again", "Description", Duration.ofMinutes(30), start.plusMinutes(30));
+        aliceAgain.setAssignee("alice");
+
+        taskManager.addTask(alice);
+        assertDoesNotThrow(() -> taskManager.addTask(bob), "Разные исполнители могут работать одновременно");
+        assertThrows(ManagerValidationException.class, () -> taskManager.addTask(aliceAgain));
+
+        assertEquals(List.of(bob), taskManager.getPrioritizedTasks("bob", null, null));
+        assertEquals(2, taskManager.getPrioritizedTasks().size());
+        assertEquals(start.plusHours(1).plusMinutes(1),
+                taskManager.findFreeSlot("alice", Duration.ofMinutes(30), start, null));
+        assertTrue(taskManager.findConflicts().isEmpty());
+    }
+
+    @Test
+    void shouldReturnEarlierTaskOfOtherAssigneeRunningIntoWindow() {
+        LocalDateTime start = LocalDateTime.of(2023, 1, 2, 8, 0);
+        Task alice = new Task("Alice", "Description", Duration.ofHours(4), start);
+        alice.setAssignee("alice");
+        taskManager.addTask(alice);
+        Task bob = new Task("Bob", "Description", Duration.ofMinutes(30), start.plusHours(1));
+        bob.setAssignee("bob");
+        taskManager.addTask(bob);
+
+        assertEquals(List.of(alice), taskManager.getPrioritizedTasks(start.plusHours(2), start.plusHours(3)));
+        assertEquals(List.of(alice, bob), taskManager.getPrioritizedTasks(start.plusMinutes(30), start.plusHours(3)));
+    }
+
+    @Test
+    void shouldFireStartAndEndTriggers() {
+        LocalDateTime start = LocalDateTime.now().truncatedTo(ChronoUnit.MINUTES).plusDays(100);
+        Task task = new Task("Task", "Description", Duration.ofHours(1), start);
+        taskManager.addTask(task);
+        Task done = new Task("Done", "Description", Duration.ofMinutes(10), start.plusHours(4));
+        done.setStatus(Status.DONE);
+        taskManager.addTask(done);
+        Task deleted = new Task("Deleted", "Description", Duration.ofMinutes(10), start.plusHours(5));
+        taskManager.addTask(deleted);
+        taskManager.deleteTaskById(deleted.getId());
+        int epicId = taskManager.addEpic(new Epic("Epic", "Description"));
+        Subtask subtask = new Subtask("Subtask", "Description", epicId, Duration.ofMinutes(30), start.plusHours(2));
+        taskManager.addSubtask(subtask);
+
+        assertTrue(taskManager.fireDueTriggers(start.minusMinutes(1)).isEmpty());
+        assertEquals(List.of(task), taskManager.fireDueTriggers(start));
+        assertEquals(Status.IN_PROGRESS, taskManager.getTaskById(task.getId()).getStatus());
+        assertFalse(taskManager.getTaskById(task.getId()).isOverdue());
+
+        assertEquals(List.of(task, subtask, subtask), taskManager.fireDueTriggers(start.plusHours(3)));
+        assertTrue(taskManager.getTaskById(task.getId()).isOverdue());
+        assertEquals(Status.IN_PROGRESS, taskManager.getSubtaskById(subtask.getId()).getStatus());
+        assertTrue(taskManager.getSubtaskById(subtask.getId()).isOverdue());
+        assertEquals(Status.IN_PROGRESS, taskManager.getEpicById(epicId).getStatus());
+
+        assertTrue(taskManager.fireDueTriggers(start.plusDays(1)).isEmpty(),
+                "Выполненные и удаленные задачи не должны срабатывать");
+        assertEquals(Status.DONE, taskManager.getTaskById(done.getId()).getStatus());
+        assertFalse(taskManager.getTaskById(done.getId()).isOverdue());
+    }
+
+    @Test
+    void shouldExpandRecurringTaskInsideWindow() {
+        LocalDateTime start = LocalDateTime.of(2024, 1, 1, 10, 0);
+        RecurringTask standUp = new RecurringTask("Стендап", "Описание", Duration.ofMinutes(15), start, 1, null);
+        taskManager.addTask(standUp);
+        Task task = new Task("Task", "Description", Duration.ofMinutes(30), start.plusDays(500).plusHours(1));
+        taskManager.addTask(task);
+
+        assertEquals(List.of(standUp, task), taskManager.getPrioritizedTasks(), "Серия хранится одной записью");
+        List<Task> window = taskManager.getPrioritizedTasks(start.plusDays(500), start.plusDays(502));
+        assertEquals(3, window.size());
+        assertEquals(start.plusDays(500), window.get(0).getStartTime());
+        assertEquals(task, window.get(1));
+        assertEquals(start.plusDays(501), window.get(2).getStartTime());
+
+        Task clash = new Task("Clash", "Description", Duration.ofMinutes(30), start.plusDays(1000).minusMinutes(20));
+        assertThrows(ManagerValidationException.class, () -> taskManager.addTask(clash));
+        RecurringTask weekly = new RecurringTask("Weekly", "Description", Duration.ofMinutes(30),
+                start.plusDays(3).plusHours(1), 7, null);
+        assertThrows(ManagerValidationException.class, () -> taskManager.addTask(weekly),
+                "Серия не должна пересекаться с разовой задачей");
+        RecurringTask tooLong = new RecurringTask("Too long", "Description", Duration.ofDays(2),
+                start.plusHours(12), 1, null);
+        assertThrows(IllegalArgumentException.class, () -> taskManager.addTask(tooLong));
+
+        assertEquals(start.plusDays(7).plusMinutes(16),
+                taskManager.findFreeSlot(Duration.ofHours(1), start.plusDays(7).plusMinutes(5), null));
+        LocalDate day = LocalDate.of(2024, 3, 1);
+        assertEquals(Map.of(day, 15L), taskManager.getDailyLoad(day, day));
+        assertTrue(taskManager.findConflicts().isEmpty());
+    }
+
+    @Test
+    void shouldRollUpNestedEpics() {
+        LocalDateTime start = LocalDateTime.of(2024, 1, 1, 10, 0);
+        int programmeId = taskManager.addEpic(new Epic("Programme", "Description"));
+        Epic project = new Epic("Project", "Description");
+        project.setParentEpicId(programmeId);
+        int projectId = taskManager.addEpic(project);
+        Epic stage = new Epic("Stage", "Description");
+        stage.setParentEpicId(projectId);
+        int stageId = taskManager.addEpic(stage);
+
+        Subtask deep = new Subtask("Deep", "Description", stageId, Duration.ofHours(1), start);
+        taskManager.addSubtask(deep);
+        Subtask shallow = new Subtask("Shallow", "Description", projectId, Duration.ofHours(2), start.plusDays(1));
+        taskManager.addSubtask(shallow);
+
+        Epic programme = taskManager.getEpicById(programmeId);
+        assertEquals(start, programme.getStartTime());
+        assertEquals(Duration.ofHours(3), programme.getDuration());
+        assertEquals(start.plusDays(1).plusHours(2), programme.getEndTime());
+        assertEquals(Status.NEW, programme.getStatus());
+
+        deep.setStatus(Status.DONE);
+        taskManager.updateSubtask(deep);
+        assertEquals(Status.DONE, taskManager.getEpicById(stageId).getStatus());
+        assertEquals(Status.IN_PROGRESS, taskManager.getEpicById(programmeId).getStatus());
+
+        Epic cycle = new Epic("Programme", "Description");
+        cycle.setId(programmeId);
+        cycle.setParentEpicId(stageId);
+        assertThrows(IllegalArgumentException.class, () -> taskManager.updateEpic(cycle),
+                "Эпик нельзя вложить в собственное поддерево");
+
+        taskManager.deleteEpicById(projectId);
+        assertEquals(List.of(programme), taskManager.getAllEpics(), "Удаление каскадно удаляет поддерево");
+        assertTrue(taskManager.getAllSubtasks().isEmpty());
+        assertTrue(taskManager.getChildEpics(programmeId).isEmpty());
+        assertNull(taskManager.getEpicById(programmeId).getStartTime());
+        assertEquals(Status.NEW, taskManager.getEpicById(programmeId).getStatus());
+    }
+
+    @Test
+    void shouldComputeCriticalPathWithDependencies() {
+        int epicId = taskManager.addEpic(new Epic("Epic", "Description"));
+        Subtask design = new Subtask("Design", "Description", epicId, Duration.ofMinutes(30), null);
+        int designId = taskManager.addSubtask(design);
+        int buildId = taskManager.addSubtask(new Subtask("Build", "Description", epicId, Duration.ofMinutes(60), null));
+        int docsId = taskManager.addSubtask(new Subtask("Docs", "Description", epicId, Duration.ofMinutes(20), null));
+        int releaseId = taskManager.addSubtask(new Subtask("Release", "Description", epicId, Duration.ofMinutes(10), null));
+
+        assertEquals(Duration.ofMinutes(60), taskManager.getEarliestFinish(epicId), "Без зависимостей - самая длинная");
+
+        taskManager.addDependency(designId, buildId);
+        taskManager.addDependency(buildId, releaseId);
+        taskManager.addDependency(docsId, releaseId);
+        assertEquals(Duration.ofMinutes(100), taskManager.getEarliestFinish(epicId));
+        assertEquals(List.of(designId, buildId, releaseId), taskManager.getCriticalPath(epicId).stream()
+                .map(Subtask::getId).toList());
+        assertEquals(List.of(buildId, docsId), taskManager.getBlockers(releaseId));
+
+        assertThrows(ManagerValidationException.class, () -> taskManager.addDependency(releaseId, designId),
+                "Зависимость, замыкающая цикл, отклоняется");
+        assertThrows(IllegalArgumentException.class, () -> taskManager.addDependency(designId, 999));
+
+        design.setDuration(Duration.ofMinutes(90));
+        taskManager.updateSubtask(design);
+        assertEquals(Duration.ofMinutes(160), taskManager.getEarliestFinish(epicId),
+                "Изменение длительности распространяется по цепочке");
+
+        taskManager.removeDependency(buildId, releaseId);
+        assertEquals(List.of(designId, buildId), taskManager.getCriticalPath(epicId).stream()
+                .map(Subtask::getId).toList());
+
+        taskManager.deleteSubtaskById(buildId);
+        assertEquals(Duration.ofMinutes(90), taskManager.getEarliestFinish(epicId));
+    }
+}